@@ -1,8 +1,28 @@
 import javax.swing.*;
+import data.Stores;
+import server.ScheduleServer;
 import ui.LoginFrame;
 
 public class Main {
     public static void main(String[] args) {
+        // 启动参数 --store=embedded 使用嵌入式存储（无需 MySQL），默认 mysql
+        // 启动参数 --server[=端口] 以无界面服务模式运行，默认端口 8080
+        int serverPort = -1;
+        for (String arg : args) {
+            if (arg.startsWith("--store=")) {
+                Stores.init(arg.substring("--store=".length()));
+            } else if (arg.equals("--server")) {
+                serverPort = ScheduleServer.DEFAULT_PORT;
+            } else if (arg.startsWith("--server=")) {
+                serverPort = Integer.parseInt(arg.substring("--server=".length()));
+            }
+        }
+
+        if (serverPort >= 0) {
+            startServer(serverPort);
+            return;
+        }
+
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -18,4 +38,16 @@ public class Main {
             }
         });
     }
-}
\ No newline at end of file
+
+    private static void startServer(int port) {
+        ScheduleServer server = new ScheduleServer(port);
+        try {
+            server.start();
+        } catch (java.io.IOException e) {
+            System.err.println("课表服务启动失败: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "server-shutdown"));
+    }
+}
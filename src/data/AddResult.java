@@ -0,0 +1,10 @@
+package data;
+
+/**
+ * 批量添加课程时每一行的结果
+ */
+public enum AddResult {
+    SUCCESS,   // 插入成功
+    CONFLICT,  // 该周该时间段已有课程
+    FAILED     // 其他数据库错误
+}
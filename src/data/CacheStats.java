@@ -0,0 +1,45 @@
+package data;
+
+/**
+ * 课程缓存统计快照
+ */
+public class CacheStats {
+    private final int size;            // 当前条目数
+    private final int maxEntries;      // 最大条目数
+    private final long hits;           // 命中次数
+    private final long misses;         // 未命中次数
+    private final long evictions;      // 因容量淘汰的条目数
+    private final long expirations;    // 因 TTL 过期的条目数
+    private final long invalidations;  // 因写操作失效的条目数
+
+    public CacheStats(int size, int maxEntries, long hits, long misses,
+                      long evictions, long expirations, long invalidations) {
+        this.size = size;
+        this.maxEntries = maxEntries;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.invalidations = invalidations;
+    }
+
+    public int getSize() { return size; }
+    public int getMaxEntries() { return maxEntries; }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getEvictions() { return evictions; }
+    public long getExpirations() { return expirations; }
+    public long getInvalidations() { return invalidations; }
+
+    // 命中率（0-1）
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats{size=%d/%d, hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d, expirations=%d, invalidations=%d}",
+                size, maxEntries, hits, misses, getHitRate() * 100, evictions, expirations, invalidations);
+    }
+}
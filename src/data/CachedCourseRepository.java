@@ -0,0 +1,219 @@
+package data;
+
+import model.Course;
+import model.User;
+import model.WeekMask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 带读穿透 LRU 缓存的 CourseRepository
+ * 以 (userId, week) 为键缓存 getCoursesByWeek 的结果，按条目数限制容量，条目超过 TTL 后失效；
+ * 添加、删除课程时只让受影响的周次失效。
+ *
+ * 未命中时在锁外查询数据库；查询期间若该键被 invalidate，查到的可能是修改前的数据，不能写入缓存。
+ * 为此正在加载的键记录一个代数，invalidate 时加一，查询完成后代数不变才写入。
+ */
+public class CachedCourseRepository extends CourseRepository {
+    static final int DEFAULT_MAX_ENTRIES = 256;
+    static final long DEFAULT_TTL_MILLIS = 5 * 60_000;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<Long, CacheEntry> cache;
+    private final Map<Long, PendingLoad> loading = new HashMap<>(); // 正在加载的键，与 cache 共用锁
+
+    // 统计信息（在 synchronized(cache) 内更新）
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    public CachedCourseRepository() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    public CachedCourseRepository(int maxEntries, long ttlMillis) {
+        this(Stores.courseStore(), maxEntries, ttlMillis);
+    }
+
+    public CachedCourseRepository(CourseStore store, int maxEntries, long ttlMillis) {
+        super(store);
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        // accessOrder = true：按访问顺序排列，最久未使用的在最前
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry> eldest) {
+                if (size() > CachedCourseRepository.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public List<Course> getCoursesByWeek(int userId, int week) {
+        long key = key(userId, week);
+        PendingLoad pending;
+        long generation;
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            if (entry != null) {
+                if (System.currentTimeMillis() - entry.loadedAt <= ttlMillis) {
+                    hits++;
+                    return new ArrayList<>(entry.courses);
+                }
+                cache.remove(key);
+                expirations++;
+            }
+            misses++;
+            pending = loading.computeIfAbsent(key, k -> new PendingLoad());
+            pending.loaders++;
+            generation = pending.generation;
+        }
+
+        // 未命中时查询数据库（不持有锁，避免阻塞其他周次的读取）
+        List<Course> courses = null;
+        try {
+            courses = super.getCoursesByWeek(userId, week);
+            return courses;
+        } finally {
+            synchronized (cache) {
+                // 查询期间被 invalidate 过的结果可能已过期，只返回给本次调用，不写入缓存
+                if (courses != null && pending.generation == generation) {
+                    cache.put(key, new CacheEntry(new ArrayList<>(courses), System.currentTimeMillis()));
+                }
+                if (--pending.loaders == 0) {
+                    loading.remove(key);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean addCourse(Course course, User user) {
+        boolean success = super.addCourse(course, user);
+        invalidate(user.getId(), course.getWeek());
+        return success;
+    }
+
+    @Override
+    public List<AddResult> addCourses(List<Course> courses, User user) {
+        List<AddResult> results = super.addCourses(courses, user);
+        for (Course course : courses) {
+            invalidate(user.getId(), course.getWeek());
+        }
+        return results;
+    }
+
+    @Override
+    public boolean removeCourse(String name, String dayOfWeek, String timeSlot, User user, int week) {
+        boolean removed = super.removeCourse(name, dayOfWeek, timeSlot, user, week);
+        invalidate(user.getId(), week);
+        return removed;
+    }
+
+    @Override
+    public List<Course> removeCourses(Collection<Integer> courseIds, User user) {
+        List<Course> removed = super.removeCourses(courseIds, user);
+        invalidateAll(user.getId(), removed);
+        return removed;
+    }
+
+    @Override
+    public List<Course> removeCourseFromWeeks(int courseId, long weekMask, User user) {
+        List<Course> removed = super.removeCourseFromWeeks(courseId, weekMask, user);
+        invalidateAll(user.getId(), removed);
+        return removed;
+    }
+
+    /**
+     * 同步到的变更可能来自其他客户端，缓存中这些周次的结果已经过期
+     * 整体删除的课程无法得知周次、落后太多改为全量同步时无法得知哪些周次变了，此时让该用户的全部缓存失效
+     */
+    @Override
+    public CourseDelta sync(int userId, long sinceVersion) {
+        CourseDelta delta = super.sync(userId, sinceVersion);
+        if (!delta.getDeletedIds().isEmpty() || (delta.isFull() && sinceVersion > 0)) {
+            for (int week = 1; week <= WeekMask.MAX_WEEK; week++) {
+                invalidate(userId, week);
+            }
+        } else if (!delta.isFull()) {
+            invalidateAll(userId, delta.getCourses());
+        }
+        return delta;
+    }
+
+    private void invalidateAll(int userId, List<Course> courses) {
+        for (Course course : courses) {
+            invalidate(userId, course.getWeek());
+        }
+    }
+
+    /**
+     * 使某个用户某一周的缓存失效
+     */
+    public void invalidate(int userId, int week) {
+        long key = key(userId, week);
+        synchronized (cache) {
+            if (cache.remove(key) != null) {
+                invalidations++;
+            }
+            PendingLoad pending = loading.get(key);
+            if (pending != null) {
+                pending.generation++;
+            }
+        }
+    }
+
+    /**
+     * 清空全部缓存
+     */
+    public void clear() {
+        synchronized (cache) {
+            invalidations += cache.size();
+            cache.clear();
+            for (PendingLoad pending : loading.values()) {
+                pending.generation++;
+            }
+        }
+    }
+
+    /**
+     * 获取缓存命中、未命中、淘汰等统计
+     */
+    public CacheStats getStats() {
+        synchronized (cache) {
+            return new CacheStats(cache.size(), maxEntries, hits, misses, evictions, expirations, invalidations);
+        }
+    }
+
+    private static long key(int userId, int week) {
+        return ((long) userId << 32) | (week & 0xFFFFFFFFL);
+    }
+
+    // 一个键正在进行的加载：generation 由 invalidate 递增，loaders 为正在加载该键的线程数
+    private static class PendingLoad {
+        long generation;
+        int loaders;
+    }
+
+    private static class CacheEntry {
+        final List<Course> courses;
+        final long loadedAt;
+
+        CacheEntry(List<Course> courses, long loadedAt) {
+            this.courses = courses;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 简单的 JDBC 连接池
+ * 特性：最大连接数限制、空闲连接回收、借出时校验、借出超时、连接泄漏检测
+ *
+ * 借出的连接是一个代理对象，调用 close() 时并不会真正关闭物理连接，而是归还到池中，
+ * 因此仓库类里的 try-with-resources 写法无需任何修改。
+ */
+public class ConnectionPool {
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private final int maxSize;                // 最大连接数（空闲 + 借出）
+    private final long borrowTimeoutMillis;   // 借出等待超时
+    private final long idleTimeoutMillis;     // 空闲超过该时间的连接会被回收
+    private final long leakThresholdMillis;   // 借出超过该时间未归还视为泄漏
+    private final int validationTimeoutSeconds = 2;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    private volatile String initSql;          // 新建物理连接后执行一次（如设置会话变量），可为 null
+
+    // 统计信息
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password, int maxSize,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        // 后台线程：定期回收空闲连接、检查泄漏
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, leakThresholdMillis) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 设置新建物理连接后执行的初始化语句，只影响之后创建的连接
+     */
+    public void setInitSql(String initSql) {
+        this.initSql = initSql;
+    }
+
+    /**
+     * 从池中借出一个连接，超过 borrowTimeout 仍无可用连接时抛出 SQLException
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("连接池已关闭");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("获取数据库连接超时（" + borrowTimeoutMillis + "ms），当前借出 "
+                        + active.size() + "/" + maxSize);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待数据库连接时被中断", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeValidIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(openPhysical());
+                createdCount.incrementAndGet();
+            }
+            pooled.lease();
+            active.add(pooled);
+            borrowCount.incrementAndGet();
+            return pooled.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, user, password);
+        String sql = initSql;
+        if (sql != null) {
+            try (Statement stmt = raw.createStatement()) {
+                stmt.execute(sql);
+            } catch (SQLException e) {
+                raw.close();
+                throw e;
+            }
+        }
+        return raw;
+    }
+
+    /**
+     * 取出一个可用的空闲连接（借出时校验），无可用连接返回 null
+     */
+    private PooledConnection takeValidIdle() {
+        while (true) {
+            PooledConnection candidate;
+            synchronized (idle) {
+                candidate = idle.pollFirst(); // 后进先出，优先复用最“热”的连接
+            }
+            if (candidate == null) {
+                return null;
+            }
+            if (candidate.isUsable()) {
+                return candidate;
+            }
+            evictedCount.incrementAndGet();
+            candidate.closePhysical();
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        if (!active.remove(pooled)) {
+            return; // 重复 close，忽略
+        }
+        boolean reusable = !closed && pooled.reset();
+        if (reusable) {
+            synchronized (idle) {
+                idle.addFirst(pooled);
+            }
+        } else {
+            pooled.closePhysical();
+        }
+        permits.release();
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        // 回收空闲过久的连接
+        synchronized (idle) {
+            Iterator<PooledConnection> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                if (now - pooled.lastReturnedAt > idleTimeoutMillis) {
+                    it.remove();
+                    evictedCount.incrementAndGet();
+                    pooled.closePhysical();
+                }
+            }
+        }
+
+        // 泄漏检测：每个连接只报告一次
+        for (PooledConnection pooled : active) {
+            if (!pooled.leakReported && now - pooled.borrowedAt > leakThresholdMillis) {
+                pooled.leakReported = true;
+                leakCount.incrementAndGet();
+                System.err.println("疑似数据库连接泄漏：连接已借出 " + (now - pooled.borrowedAt) + "ms 未归还，借出位置：");
+                pooled.borrowSite.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 获取连接池运行时统计
+     */
+    public PoolStats getStats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+        return new PoolStats(active.size(), idleCount, maxSize, permits.getQueueLength(),
+                borrowCount.get(), totalWaitNanos.get(), maxWaitNanos.get(),
+                createdCount.get(), evictedCount.get(), timeoutCount.get(), leakCount.get());
+    }
+
+    /**
+     * 关闭连接池：关闭所有空闲连接，借出中的连接在归还时关闭
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        synchronized (idle) {
+            for (PooledConnection pooled : idle) {
+                pooled.closePhysical();
+            }
+            idle.clear();
+        }
+    }
+
+    /**
+     * 池中的一个物理连接及其借用状态
+     */
+    private class PooledConnection implements InvocationHandler {
+        private final Connection physical;
+        private Connection proxy;
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt;
+        private volatile Throwable borrowSite;
+        private volatile boolean leakReported;
+        private volatile boolean leased;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.lastReturnedAt = System.currentTimeMillis();
+        }
+
+        void lease() {
+            borrowedAt = System.currentTimeMillis();
+            borrowSite = new Throwable("连接借出位置");
+            leakReported = false;
+            leased = true;
+            // 每次借出生成新的代理，避免归还后旧引用继续操作物理连接
+            proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        boolean isUsable() {
+            try {
+                return !physical.isClosed() && physical.isValid(validationTimeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * 归还前恢复连接的默认状态，失败则丢弃该连接
+         */
+        boolean reset() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback(); // 未提交的事务一律回滚
+                    physical.setAutoCommit(true);
+                }
+                if (physical.isReadOnly()) {
+                    physical.setReadOnly(false);
+                }
+                physical.clearWarnings();
+                lastReturnedAt = System.currentTimeMillis();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+                // 关闭失败无需处理
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxyObj, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                if (leased && proxyObj == proxy) {
+                    leased = false;
+                    release(this);
+                }
+                return null;
+            }
+            if ("isClosed".equals(name)) {
+                return !leased || proxyObj != proxy || physical.isClosed();
+            }
+            if (!leased || proxyObj != proxy) {
+                throw new SQLException("连接已归还到连接池，不能继续使用");
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
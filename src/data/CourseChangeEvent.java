@@ -0,0 +1,46 @@
+package data;
+
+import model.Course;
+
+/**
+ * 课程变更事件：由 CourseRepository 在写操作成功后发布，
+ * ScheduleIndex.refresh 合并其他设备上的修改时也按格子发布（格子内容被替换时为 UPDATED）
+ * 携带变更类型和受影响的格子 (周次, 星期, 节次)，订阅方据此只刷新对应格子
+ */
+public class CourseChangeEvent {
+    public enum Type {
+        ADDED,    // 新增课程
+        REMOVED,  // 删除课程
+        UPDATED   // 同一格子的课程被替换
+    }
+
+    private final Type type;
+    private final int userId;
+    private final Course course;   // ADDED/UPDATED 为新课程；REMOVED 为被删课程（可能只有名称和位置）
+    private final Course previous; // UPDATED 时为被替换的课程，其他类型为 null
+
+    public CourseChangeEvent(Type type, int userId, Course course) {
+        this(type, userId, course, null);
+    }
+
+    public CourseChangeEvent(Type type, int userId, Course course, Course previous) {
+        this.type = type;
+        this.userId = userId;
+        this.course = course;
+        this.previous = previous;
+    }
+
+    public Type getType() { return type; }
+    public int getUserId() { return userId; }
+    public Course getCourse() { return course; }
+    public Course getPrevious() { return previous; }
+    public int getWeek() { return course.getWeek(); }
+    public String getDayOfWeek() { return course.getDayOfWeek(); }
+    public String getTimeSlot() { return course.getTimeSlot(); }
+
+    @Override
+    public String toString() {
+        return type + " 用户" + userId + " 第" + getWeek() + "周 " + getDayOfWeek() + " " + getTimeSlot()
+                + " " + course.getName();
+    }
+}
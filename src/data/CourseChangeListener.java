@@ -0,0 +1,9 @@
+package data;
+
+/**
+ * 课程变更监听器，通过 CourseRepository.addChangeListener 注册
+ * 回调在执行写操作的线程上同步调用，界面代码需要自行切换到事件分发线程
+ */
+public interface CourseChangeListener {
+    void onCourseChanged(CourseChangeEvent event);
+}
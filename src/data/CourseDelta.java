@@ -0,0 +1,91 @@
+package data;
+
+import model.Course;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 增量同步结果：某个版本号之后发生变更的课程
+ *
+ * 以课程ID为单位整体替换：客户端先删除本地所有属于 getChangedIds() 的每周课程，
+ * 再加入 getCourses() 中的课程。一门课只减少了部分周次时，它会出现在 getCourses() 中（剩余周次）；
+ * 所有周次都被删除时，它只出现在 getDeletedIds() 中。
+ * 同一个结果重复合并不会改变本地课表，网络重试时可以放心重放。
+ *
+ * 删除墓碑只保留最近 TOMBSTONE_RETENTION 个版本：客户端落后更多时，它需要的墓碑可能已被清理，
+ * 此时返回全量结果（isFull 为 true），客户端清空本地课表后整体替换。
+ */
+public class CourseDelta {
+    public static final long TOMBSTONE_RETENTION = 1000; // 墓碑保留的版本数
+
+    private final long sinceVersion;       // 请求时客户端持有的版本号
+    private final long version;            // 合并后客户端应保存的版本号，下次同步时传入
+    private final List<Course> courses;    // 变更课程当前的全部每周课程
+    private final Set<Integer> deletedIds; // 已被整体删除的课程ID
+    private final boolean full;            // 是否为全量结果
+
+    public CourseDelta(long sinceVersion, long version, List<Course> courses, Set<Integer> deletedIds) {
+        this(sinceVersion, version, courses, deletedIds, sinceVersion == 0);
+    }
+
+    private CourseDelta(long sinceVersion, long version, List<Course> courses, Set<Integer> deletedIds, boolean full) {
+        this.sinceVersion = sinceVersion;
+        this.version = version;
+        this.courses = courses;
+        this.deletedIds = deletedIds;
+        this.full = full;
+    }
+
+    /**
+     * 按课程汇总一批变更行，新版本号取 sinceVersion 与各行版本号中的最大值
+     */
+    static CourseDelta of(long sinceVersion, List<Course> courses, Set<Integer> deletedIds, long maxVersion) {
+        return new CourseDelta(sinceVersion, Math.max(sinceVersion, maxVersion), courses, deletedIds);
+    }
+
+    /**
+     * 客户端落后超过墓碑保留范围时的全量结果：courses 为用户当前的全部课程，version 为当前版本号
+     */
+    static CourseDelta resync(long sinceVersion, List<Course> courses, long version) {
+        return new CourseDelta(sinceVersion, Math.max(sinceVersion, version), courses, new LinkedHashSet<>(), true);
+    }
+
+    /**
+     * 客户端持有的版本号是否已落后于墓碑保留范围（currentVersion 为当前最新版本号）
+     */
+    static boolean needsResync(long sinceVersion, long currentVersion) {
+        return sinceVersion > 0 && sinceVersion < currentVersion - TOMBSTONE_RETENTION;
+    }
+
+    public long getSinceVersion() { return sinceVersion; }
+    public long getVersion() { return version; }
+    public List<Course> getCourses() { return courses; }
+    public Set<Integer> getDeletedIds() { return deletedIds; }
+
+    // 是否为全量结果（sinceVersion 为 0，或客户端落后太多需要整体替换）
+    public boolean isFull() {
+        return full;
+    }
+
+    public boolean isEmpty() {
+        return courses.isEmpty() && deletedIds.isEmpty();
+    }
+
+    /**
+     * 本次需要在客户端整体替换的课程ID
+     */
+    public Set<Integer> getChangedIds() {
+        Set<Integer> ids = new LinkedHashSet<>(deletedIds);
+        for (Course course : courses) {
+            ids.add(course.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public String toString() {
+        return "版本 " + sinceVersion + " -> " + version + "，变更课时 " + courses.size() + "，删除课程 " + deletedIds.size();
+    }
+}
@@ -4,31 +4,84 @@ import model.Course;
 
 import javax.swing.*;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * 课程数据文件工具类：读写 CSV 文件
  * 格式：name,teacher,dayOfWeek,timeSlot,location
+ * 读取使用内存映射（CsvMappedReader），写入使用通道缓冲（CsvChannelWriter）
+ *
+ * 日常保存使用快照 + 追加日志（CourseJournal）：saveChanges 只追加本次的增删，
+ * loadCourses 读取快照并重放日志；CSV 仅用于导入导出。
  */
 public class CourseFileUtil {
     private static final String FILE_PATH = "courses.csv";
+    private static final String SNAPSHOT_PATH = "courses.snapshot";
+    private static final String JOURNAL_PATH = "courses.journal";
+
+    private static CourseJournal journal;
+
+    /**
+     * 加载课程：读取快照并重放日志
+     * 首次使用时若存在旧的 courses.csv，把其中的课程作为初始数据写入日志
+     */
+    public static synchronized List<Course> loadCourses() {
+        try {
+            return openJournal().getCourses();
+        } catch (RuntimeException e) {
+            System.err.println("读取课程日志失败: " + e.getMessage());
+            JOptionPane.showMessageDialog(null, "读取课程数据失败，将使用默认数据。", "警告", JOptionPane.WARNING_MESSAGE);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 保存一次修改：只把新增和删除的课程追加到日志，I/O 与变更条数成正比
+     */
+    public static synchronized void saveChanges(List<Course> added, List<Course> removed) {
+        try {
+            openJournal().append(added, removed);
+        } catch (RuntimeException e) {
+            System.err.println("保存课程日志失败: " + e.getMessage());
+            JOptionPane.showMessageDialog(null, "保存课程数据失败！", "错误", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private static CourseJournal openJournal() {
+        if (journal == null) {
+            Path snapshot = Paths.get(SNAPSHOT_PATH);
+            Path log = Paths.get(JOURNAL_PATH);
+            boolean fresh = !Files.exists(snapshot) && !Files.exists(log);
+            journal = CourseJournal.open(snapshot, log);
+            if (fresh && new File(FILE_PATH).exists()) {
+                List<Course> legacy = loadFromFile();
+                journal.append(legacy, new ArrayList<>());
+                journal.compact();
+                System.out.println("已将 " + FILE_PATH + " 中的 " + legacy.size() + " 条课程迁移到快照");
+            }
+        }
+        return journal;
+    }
 
     /**
-     * 保存所有课程到 CSV 文件
+     * 导出所有课程到 CSV 文件（整文件重写）
      */
     public static void saveToFile(List<Course> courses) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH))) {
+        try (CsvChannelWriter writer = new CsvChannelWriter(Paths.get(FILE_PATH))) {
             // 写入表头
-            writer.println("课程名,教师,星期,节次,地点");
+            writer.writeRow("课程名", "教师", "星期", "节次", "地点");
             // 写入数据
             for (Course course : courses) {
-                writer.printf("%s,%s,%s,%s,%s%n",
-                        escapeCsv(course.getName()),
-                        escapeCsv(course.getTeacher()),
-                        escapeCsv(course.getDayOfWeek()),
-                        escapeCsv(course.getTimeSlot()),
-                        escapeCsv(course.getLocation()));
+                writer.writeRow(
+                        course.getName(),
+                        course.getTeacher(),
+                        course.getDayOfWeek(),
+                        course.getTimeSlot(),
+                        course.getLocation());
             }
             System.out.println("课程数据已保存到: " + FILE_PATH);
         } catch (IOException e) {
@@ -50,20 +103,11 @@ public class CourseFileUtil {
             return courses;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            reader.readLine(); // 跳过表头
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] parts = splitCsvLine(line);
+        try {
+            // 跳过表头；字段已去除首尾空白，空行已跳过
+            for (String[] parts : CsvMappedReader.readAll(file.toPath(), true)) {
                 if (parts.length == 5) {
-                    courses.add(new Course(
-                            parts[0].trim(),
-                            parts[1].trim(),
-                            parts[2].trim(),
-                            parts[3].trim(),
-                            parts[4].trim()
-                    ));
+                    courses.add(new Course(parts[0], parts[1], parts[2], parts[3], parts[4]));
                 }
             }
             System.out.println("从 " + FILE_PATH + " 加载了 " + courses.size() + " 条课程数据。");
@@ -75,20 +119,10 @@ public class CourseFileUtil {
         return courses;
     }
 
-    /**
-     * 简单 CSV 转义（处理含逗号的字段）
-     */
-    private static String escapeCsv(String field) {
-        if (field.contains(",") || field.contains("\"")) {
-            return "\"" + field.replace("\"", "\"\"") + "\"";
-        }
-        return field;
-    }
-
     /**
      * 分割 CSV 行（支持带引号的字段）
      */
-    private static String[] splitCsvLine(String line) {
+    static String[] splitCsvLine(String line) {
         List<String> result = new ArrayList<>();
         boolean inQuotes = false;
         StringBuilder current = new StringBuilder();
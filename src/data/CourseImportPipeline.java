@@ -0,0 +1,328 @@
+package data;
+
+import model.Course;
+import model.OccupancyMatrix;
+import model.Timetable;
+import model.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 流式批量导入课程 CSV
+ *
+ * 三个阶段各占一个线程，之间用有界队列连接，内存占用与文件大小无关：
+ *   解析（逐行读取、拆分字段）→ 校验（格式、用户、文件内冲突）→ 批量写入（CourseRepository.addCourses）
+ *
+ * CSV 格式：课程名,教师,星期,节次,地点[,周次[,用户名]]，第一行为表头。
+ * 周次缺省为第 1 周；用户名缺省时导入到调用方指定的默认用户。
+ */
+public class CourseImportPipeline {
+    private static final int ROW_QUEUE_CAPACITY = 4096;
+    private static final int BATCH_QUEUE_CAPACITY = 8;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+    private static final int MAX_REPORTED_REJECTS = 20;
+
+    private static final ParsedRow END_OF_ROWS = new ParsedRow(-1, null);
+    private static final Batch END_OF_BATCHES = new Batch(null, null);
+
+    private final CourseRepository courseRepository;
+    private final UserRepository userRepository;
+    private final int batchSize;
+    private Consumer<ImportStats> progressListener = stats -> {};
+
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicBoolean aborted = new AtomicBoolean();
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private long startMillis;
+
+    public CourseImportPipeline(CourseRepository courseRepository, UserRepository userRepository) {
+        this(courseRepository, userRepository, DEFAULT_BATCH_SIZE);
+    }
+
+    public CourseImportPipeline(CourseRepository courseRepository, UserRepository userRepository, int batchSize) {
+        this.courseRepository = courseRepository;
+        this.userRepository = userRepository;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 设置进度回调，约每秒调用一次，结束时再调用一次
+     */
+    public void setProgressListener(Consumer<ImportStats> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * 执行导入，阻塞直到全部完成
+     *
+     * @param file        CSV 文件
+     * @param defaultUser 行内未指定用户名时导入到该用户，可为 null（此时必须每行指定用户名）
+     */
+    public ImportStats run(Path file, User defaultUser) throws IOException {
+        startMillis = System.currentTimeMillis();
+        BlockingQueue<ParsedRow> rows = new ArrayBlockingQueue<>(ROW_QUEUE_CAPACITY);
+        BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(BATCH_QUEUE_CAPACITY);
+
+        Thread parser = new Thread(() -> parse(file, rows), "import-parser");
+        Thread validator = new Thread(() -> validate(rows, batches, defaultUser), "import-validator");
+        parser.setDaemon(true);
+        validator.setDaemon(true);
+        parser.start();
+        validator.start();
+
+        try {
+            insert(batches);
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            aborted.compareAndSet(false, error.get() != null);
+            joinQuietly(parser);
+            joinQuietly(validator);
+        }
+
+        ImportStats stats = snapshot(true);
+        progressListener.accept(stats);
+
+        Throwable cause = error.get();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause != null) {
+            throw new IOException("导入中断: " + cause.getMessage(), cause);
+        }
+        return stats;
+    }
+
+    // ===================== 阶段一：解析 =====================
+
+    private void parse(Path file, BlockingQueue<ParsedRow> rows) {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine(); // 跳过表头
+            long lineNo = 1;
+            while (!aborted.get() && (line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.trim().isEmpty()) continue;
+                parsed.incrementAndGet();
+                put(rows, new ParsedRow(lineNo, CourseFileUtil.splitCsvLine(line)));
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        } finally {
+            put(rows, END_OF_ROWS);
+        }
+    }
+
+    // ===================== 阶段二：校验与分批 =====================
+
+    private void validate(BlockingQueue<ParsedRow> rows, BlockingQueue<Batch> batches, User defaultUser) {
+        Map<String, User> users = new HashMap<>();                       // 用户名 -> 用户（查不到时缓存 null）
+        Map<Integer, OccupancyMatrix> occupied = new HashMap<>();        // 文件内已出现的格子，按用户
+        Map<Integer, Batch> pending = new LinkedHashMap<>();            // 各用户未满的批次
+        int pendingRows = 0;
+        try {
+            while (true) {
+                ParsedRow row = take(rows);
+                if (row == null || row == END_OF_ROWS) {
+                    break;
+                }
+
+                String[] parts = row.parts;
+                if (parts.length < 5 || parts.length > 7) {
+                    reject(row, "列数应为 5-7 列，实际 " + parts.length);
+                    continue;
+                }
+                String name = parts[0].trim();
+                String day = parts[2].trim();
+                String slot = parts[3].trim();
+                if (name.isEmpty() || Timetable.dayIndex(day) < 0 || Timetable.slotIndex(slot) < 0) {
+                    reject(row, "课程名为空或星期、节次无法识别");
+                    continue;
+                }
+                int week = 1;
+                if (parts.length >= 6 && !parts[5].trim().isEmpty()) {
+                    try {
+                        week = Integer.parseInt(parts[5].trim());
+                    } catch (NumberFormatException e) {
+                        week = -1;
+                    }
+                }
+                if (!Timetable.isValidWeek(week)) {
+                    reject(row, "周次无效: " + parts[5].trim());
+                    continue;
+                }
+
+                User user = defaultUser;
+                if (parts.length == 7 && !parts[6].trim().isEmpty()) {
+                    String username = parts[6].trim();
+                    if (!users.containsKey(username)) {
+                        users.put(username, userRepository.findByUsername(username));
+                    }
+                    user = users.get(username);
+                }
+                if (user == null) {
+                    reject(row, "用户不存在");
+                    continue;
+                }
+
+                // 文件内部的冲突：同一用户同一 (周次, 星期, 节次) 只保留第一行
+                OccupancyMatrix matrix = occupied.computeIfAbsent(user.getId(), id -> new OccupancyMatrix());
+                int dayIndex = Timetable.dayIndex(day);
+                int slotIndex = Timetable.slotIndex(slot);
+                if (matrix.test(week, dayIndex, slotIndex)) {
+                    reject(row, "与文件中前面的行时间冲突");
+                    continue;
+                }
+                matrix.set(week, dayIndex, slotIndex);
+
+                Course course = new Course(name, parts[1].trim(), day, slot, parts[4].trim());
+                course.setWeek(week);
+                User owner = user;
+                Batch batch = pending.computeIfAbsent(user.getId(), id -> new Batch(owner, new ArrayList<>()));
+                batch.courses.add(course);
+                pendingRows++;
+
+                if (batch.courses.size() >= batchSize) {
+                    pending.remove(user.getId());
+                    pendingRows -= batch.courses.size();
+                    put(batches, batch);
+                } else if (pendingRows >= batchSize * 4) {
+                    // 用户很多、每人行数很少时，整体刷出，避免未满批次积压
+                    for (Batch partial : pending.values()) {
+                        put(batches, partial);
+                    }
+                    pending.clear();
+                    pendingRows = 0;
+                }
+            }
+            for (Batch partial : pending.values()) {
+                put(batches, partial);
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            put(batches, END_OF_BATCHES);
+        }
+    }
+
+    // ===================== 阶段三：批量写入 =====================
+
+    private void insert(BlockingQueue<Batch> batches) {
+        long lastReport = System.currentTimeMillis();
+        while (true) {
+            Batch batch = take(batches);
+            if (batch == null || batch == END_OF_BATCHES) {
+                return;
+            }
+            List<AddResult> results = courseRepository.addCourses(batch.courses, batch.user);
+            for (AddResult result : results) {
+                switch (result) {
+                    case SUCCESS: inserted.incrementAndGet(); break;
+                    case CONFLICT: conflicts.incrementAndGet(); break;
+                    default: failed.incrementAndGet(); break;
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= PROGRESS_INTERVAL_MILLIS) {
+                lastReport = now;
+                progressListener.accept(snapshot(false));
+            }
+        }
+    }
+
+    // ===================== 工具方法 =====================
+
+    private void reject(ParsedRow row, String reason) {
+        if (rejected.incrementAndGet() <= MAX_REPORTED_REJECTS) {
+            System.err.println("第 " + row.lineNo + " 行被拒绝：" + reason);
+        }
+    }
+
+    private void fail(Throwable e) {
+        error.compareAndSet(null, e);
+        aborted.set(true);
+    }
+
+    /**
+     * 放入有界队列；下游已中止时放弃，避免永久阻塞
+     */
+    private <T> void put(BlockingQueue<T> queue, T item) {
+        try {
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if (aborted.get() && item != END_OF_ROWS && item != END_OF_BATCHES) {
+                    return;
+                }
+                if (aborted.get()) {
+                    queue.clear(); // 中止时腾出位置让结束标记能放进去
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+    }
+
+    private <T> T take(BlockingQueue<T> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+            return null;
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ImportStats snapshot(boolean finished) {
+        return new ImportStats(parsed.get(), rejected.get(), inserted.get(), conflicts.get(), failed.get(),
+                System.currentTimeMillis() - startMillis, finished);
+    }
+
+    private static class ParsedRow {
+        final long lineNo;
+        final String[] parts;
+
+        ParsedRow(long lineNo, String[] parts) {
+            this.lineNo = lineNo;
+            this.parts = parts;
+        }
+    }
+
+    private static class Batch {
+        final User user;
+        final List<Course> courses;
+
+        Batch(User user, List<Course> courses) {
+            this.user = user;
+            this.courses = courses;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package data;
+
+import model.Course;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * 课程文件的追加日志：快照 + 变更日志
+ *
+ * 每次保存只把本次的增删追加到日志并 fsync 一次，代价与变更条数成正比：
+ *   日志文件头：magic(int) + version(int) + 快照已包含的序号 baseSeq(long)
+ *   记录：      length(int) + payload + crc32(int)，payload = seq(long) + op(byte) + 课程字段
+ * 加载时先读快照（CourseSnapshotReader 格式），再按序号重放日志中 seq > baseSeq 的记录；
+ * 末尾不完整或校验失败的记录（写入中途崩溃）会被截断。
+ *
+ * 日志记录数超过阈值时压缩：当前全部课程写成新快照（临时文件 + 原子替换），
+ * 再换上一个只有文件头的新日志。两步之间崩溃时，旧日志会在新快照上再重放一遍，
+ * 由于增删都按 (周次, 星期, 节次) 覆盖，重放是幂等的，结果不变。
+ */
+public class CourseJournal {
+    private static final int MAGIC = 0x434A4E4C; // "CJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int DEFAULT_COMPACT_THRESHOLD = 1000;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final int compactThreshold;
+    private FileChannel channel;
+
+    // (周次, 星期, 节次) -> 课程，保持加入顺序
+    private final Map<String, Course> courses = new LinkedHashMap<>();
+    private long lastSeq;
+    private long journalRecords;
+
+    private CourseJournal(Path snapshotFile, Path journalFile, int compactThreshold) {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * 打开快照和日志（不存在则创建），恢复出当前课程
+     */
+    public static CourseJournal open(Path snapshotFile, Path journalFile) {
+        return open(snapshotFile, journalFile, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    public static CourseJournal open(Path snapshotFile, Path journalFile, int compactThreshold) {
+        CourseJournal journal = new CourseJournal(snapshotFile, journalFile, compactThreshold);
+        try {
+            journal.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开课程日志失败: " + journalFile, e);
+        }
+        return journal;
+    }
+
+    /**
+     * 当前全部课程（副本）
+     */
+    public synchronized List<Course> getCourses() {
+        List<Course> result = new ArrayList<>(courses.size());
+        for (Course course : courses.values()) {
+            result.add(copy(course));
+        }
+        return result;
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * 追加一次保存的全部变更，整批只 fsync 一次
+     * 写入或 fsync 失败时把日志截断回写入前的位置，不留下半条记录：否则下次加载会在损坏的记录处停止，
+     * 之后成功保存的变更全部被截掉
+     */
+    public synchronized void append(List<Course> added, List<Course> removed) {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        List<Course> applied = new ArrayList<>();
+        List<Byte> ops = new ArrayList<>();
+        long seq = lastSeq;
+        for (Course course : removed) {
+            byte[] record = encode(++seq, OP_REMOVE, course);
+            batch.write(record, 0, record.length);
+            applied.add(course);
+            ops.add(OP_REMOVE);
+        }
+        for (Course course : added) {
+            byte[] record = encode(++seq, OP_ADD, course);
+            batch.write(record, 0, record.length);
+            applied.add(course);
+            ops.add(OP_ADD);
+        }
+        if (applied.isEmpty()) {
+            return;
+        }
+
+        long start;
+        try {
+            start = channel.position();
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入课程日志失败", e);
+        }
+        try {
+            writeFully(channel, ByteBuffer.wrap(batch.toByteArray()));
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException rollback) {
+                e.addSuppressed(rollback);
+            }
+            throw new UncheckedIOException("写入课程日志失败", e);
+        }
+        for (int i = 0; i < applied.size(); i++) {
+            apply(ops.get(i), copy(applied.get(i)));
+        }
+        lastSeq = seq;
+        journalRecords += applied.size();
+
+        if (journalRecords >= compactThreshold) {
+            // 本次变更已经落盘，压缩失败不影响保存结果，下次追加时再试
+            try {
+                compact();
+            } catch (UncheckedIOException e) {
+                System.err.println("压缩课程日志失败，下次保存时重试: " + e.getMessage());
+            }
+        }
+    }
+
+    public void add(Course course) {
+        append(List.of(course), List.of());
+    }
+
+    public void remove(Course course) {
+        append(List.of(), List.of(course));
+    }
+
+    /**
+     * 把当前课程写成新快照并清空日志
+     * 替换日志前要先关闭 channel（Windows 上不能替换打开着的文件），无论替换是否成功都重新打开：
+     * 失败时旧日志仍在原处，在新快照上重放是幂等的，之后的追加照常进行
+     */
+    public synchronized void compact() {
+        Path snapshotTmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        Path journalTmp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+        try {
+            try (CourseSnapshotWriter writer = new CourseSnapshotWriter(snapshotTmp)) {
+                for (Course course : courses.values()) {
+                    writer.write(course, 0);
+                }
+            }
+            force(snapshotTmp);
+            Files.move(snapshotTmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            try (FileChannel out = FileChannel.open(journalTmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, header(lastSeq));
+                out.force(true);
+            }
+            channel.close();
+            try {
+                Files.move(journalTmp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                journalRecords = 0;
+            } finally {
+                channel = FileChannel.open(journalFile, StandardOpenOption.WRITE, StandardOpenOption.READ);
+                channel.position(channel.size());
+            }
+            System.out.println("课程日志已压缩为快照，共 " + courses.size() + " 条课程");
+        } catch (IOException e) {
+            throw new UncheckedIOException("压缩课程日志失败", e);
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.force(true);
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ===================== 加载与重放 =====================
+
+    private void load() throws IOException {
+        if (Files.exists(snapshotFile)) {
+            try (CourseSnapshotReader reader = new CourseSnapshotReader(snapshotFile)) {
+                while (reader.next()) {
+                    apply(OP_ADD, reader.getCourse());
+                }
+            }
+        }
+
+        boolean exists = Files.exists(journalFile) && Files.size(journalFile) >= HEADER_SIZE;
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!exists) {
+            channel.truncate(0);
+            writeFully(channel, header(0));
+            channel.force(true);
+            return;
+        }
+
+        ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+        channel.read(data, 0);
+        data.flip();
+        if (data.getInt() != MAGIC) {
+            throw new IOException("不是有效的课程日志文件: " + journalFile);
+        }
+        int version = data.getInt();
+        if (version != VERSION) {
+            throw new IOException("不支持的课程日志版本: " + version);
+        }
+        long baseSeq = data.getLong();
+        lastSeq = baseSeq;
+
+        long validEnd = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= 4) {
+            int length = data.getInt();
+            if (length <= 0 || data.remaining() < length + 4) {
+                break; // 记录不完整
+            }
+            byte[] payload = new byte[length];
+            data.get(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != data.getInt()) {
+                break; // 校验失败
+            }
+            replay(payload, baseSeq);
+            journalRecords++;
+            validEnd = data.position();
+        }
+
+        if (validEnd < channel.size()) {
+            System.err.println("课程日志末尾存在不完整记录，已截断 " + (channel.size() - validEnd) + " 字节");
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+        System.out.println("从快照和日志恢复了 " + courses.size() + " 条课程（重放 " + journalRecords + " 条变更）");
+    }
+
+    private void replay(byte[] payload, long baseSeq) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long seq = in.readLong();
+        byte op = in.readByte();
+        if (op != OP_ADD && op != OP_REMOVE) {
+            throw new IOException("未知的日志记录类型: " + op);
+        }
+        Course course = new Course();
+        course.setId(in.readInt());
+        course.setWeek(in.readInt());
+        course.setName(readString(in));
+        course.setTeacher(readString(in));
+        course.setDayOfWeek(readString(in));
+        course.setTimeSlot(readString(in));
+        course.setLocation(readString(in));
+        if (seq <= baseSeq) {
+            return; // 已包含在快照中
+        }
+        apply(op, course);
+        lastSeq = Math.max(lastSeq, seq);
+    }
+
+    private void apply(byte op, Course course) {
+        String key = cellKey(course);
+        if (op == OP_ADD) {
+            courses.put(key, course);
+        } else {
+            Course existing = courses.get(key);
+            if (existing != null && Objects.equals(existing.getName(), course.getName())) {
+                courses.remove(key);
+            }
+        }
+    }
+
+    // ===================== 编码与落盘 =====================
+
+    private static byte[] encode(long seq, byte op, Course course) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeLong(seq);
+            out.writeByte(op);
+            out.writeInt(course.getId());
+            out.writeInt(course.getWeek());
+            writeString(out, course.getName());
+            writeString(out, course.getTeacher());
+            writeString(out, course.getDayOfWeek());
+            writeString(out, course.getTimeSlot());
+            writeString(out, course.getLocation());
+            out.flush();
+            byte[] bytes = payload.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            ByteBuffer record = ByteBuffer.allocate(4 + bytes.length + 4);
+            record.putInt(bytes.length).put(bytes).putInt((int) crc.getValue());
+            return record.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // 内存流不会抛出
+        }
+    }
+
+    private static ByteBuffer header(long baseSeq) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(baseSeq).flip();
+        return header;
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            out.force(true);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static String cellKey(Course course) {
+        return course.getWeek() + "|" + course.getDayOfWeek() + "|" + course.getTimeSlot();
+    }
+
+    private static Course copy(Course source) {
+        Course course = new Course(source.getName(), source.getTeacher(), source.getDayOfWeek(),
+                source.getTimeSlot(), source.getLocation());
+        course.setId(source.getId());
+        course.setWeek(source.getWeek());
+        return course;
+    }
+}
@@ -2,123 +2,188 @@ package data;
 
 import model.Course;
 import model.User;
+import model.WeekMask;
+import model.WeekSlot;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class CourseRepository {
+    // 变更监听器，所有仓库实例共用，任何实例的写操作都会通知到
+    private static final List<CourseChangeListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private final CourseStore store;
+
+    public CourseRepository() {
+        this(Stores.courseStore());
+    }
+
+    public CourseRepository(CourseStore store) {
+        this.store = store;
+    }
+
     public List<Course> getCoursesByUser(User user) {
-        List<Course> courses = new ArrayList<>();
-        String sql = "SELECT name, teacher, day_of_week, time_slot, location FROM courses WHERE user_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, user.getId());
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                courses.add(new Course(
-                        rs.getString("name"),
-                        rs.getString("teacher"),
-                        rs.getString("day_of_week"),
-                        rs.getString("time_slot"),
-                        rs.getString("location")
-                ));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return courses;
+        return store.findByUser(user.getId());
     }
 
     public boolean addCourse(Course course, User user) {
-        String sql = "INSERT INTO courses (user_id, name, teacher, day_of_week, time_slot, location, week) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, user.getId());
-            stmt.setString(2, course.getName());
-            stmt.setString(3, course.getTeacher());
-            stmt.setString(4, course.getDayOfWeek());
-            stmt.setString(5, course.getTimeSlot());
-            stmt.setString(6, course.getLocation());
-            stmt.setInt(7, course.getWeek());
-            
-            System.out.println("执行SQL插入: user_id=" + user.getId() + ", name=" + course.getName() + 
-                             ", day=" + course.getDayOfWeek() + ", time=" + course.getTimeSlot() + 
-                             ", week=" + course.getWeek());
-            
-            int result = stmt.executeUpdate();
-            System.out.println("插入结果: " + result + " 行受影响");
-            return result > 0;
-        } catch (SQLException e) {
-            System.err.println("添加课程失败: " + e.getMessage());
-            System.err.println("课程信息: name=" + course.getName() + ", week=" + course.getWeek() + 
-                             ", day=" + course.getDayOfWeek() + ", time=" + course.getTimeSlot());
-            e.printStackTrace();
-            return false;
+        boolean success = store.insert(course, user.getId());
+        if (success) {
+            indexAdded(user.getId(), course);
+            publish(new CourseChangeEvent(CourseChangeEvent.Type.ADDED, user.getId(), course));
         }
+        return success;
     }
-    
+
     /**
-     * 根据用户ID和教学周获取课程列表
+     * 批量添加课程：一个事务内一次性写入所有行
+     * 返回结果与 courses 一一对应；已被占用的 (周次, 星期, 节次) 标记为 CONFLICT，其余行照常提交
      */
-    public List<Course> getCoursesByWeek(int userId, int week) {
-        List<Course> courses = new ArrayList<>();
-        String sql = "SELECT * FROM courses WHERE user_id = ? AND week = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setInt(2, week);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                Course course = new Course();
-                course.setId(rs.getInt("id"));
-                course.setName(rs.getString("name"));
-                course.setTeacher(rs.getString("teacher"));
-                course.setDayOfWeek(rs.getString("day_of_week"));
-                course.setTimeSlot(rs.getString("time_slot"));
-                course.setLocation(rs.getString("location"));
-                course.setWeek(rs.getInt("week"));
-                courses.add(course);
+    public List<AddResult> addCourses(List<Course> courses, User user) {
+        List<AddResult> results = store.insertAll(courses, user.getId());
+        for (int i = 0; i < courses.size(); i++) {
+            if (results.get(i) == AddResult.SUCCESS) {
+                indexAdded(user.getId(), courses.get(i));
+                publish(new CourseChangeEvent(CourseChangeEvent.Type.ADDED, user.getId(), courses.get(i)));
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return courses;
+        return results;
+    }
+
+    /**
+     * 一次查询找出用户在指定星期、节次集合、周次集合中已被占用的所有 (周次, 节次)
+     */
+    public List<WeekSlot> findConflicts(User user, String dayOfWeek, Set<String> timeSlots, Set<Integer> weeks) {
+        return store.findConflicts(user.getId(), dayOfWeek, timeSlots, weeks);
+    }
+
+    /**
+     * 其他用户在这些时间段中使用同一地点或同一教师的课程，用于添加课程时提醒撞教室、撞教师
+     * 直接按索引查询数据库；读取失败时抛出 StoreException
+     */
+    public List<Course> findBookings(User user, String location, String teacher, String dayOfWeek,
+                                     Set<String> timeSlots, Collection<Integer> weeks) {
+        return store.findBookings(location, teacher, dayOfWeek, timeSlots, WeekMask.of(weeks), user.getId());
+    }
+
+    /**
+     * 根据用户ID和教学周获取课程列表
+     */
+    public List<Course> getCoursesByWeek(int userId, int week) {
+        return store.findByWeek(userId, week);
     }
 
     public boolean removeCourse(String name, String dayOfWeek, String timeSlot, User user, int week) {
-        String sql = "DELETE FROM courses WHERE user_id = ? AND name = ? AND day_of_week = ? AND time_slot = ? AND week = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            // 添加调试信息
-            System.out.println("执行删除SQL: " + sql);
-            System.out.println("参数: user_id=" + user.getId() + ", name='" + name + "', day_of_week='" + dayOfWeek + "', time_slot='" + timeSlot + "', week=" + week);
-
-            //通过这 5 个参数的精确匹配，SQL 语句能唯一锁定需要删除的课程记录
-            stmt.setInt(1, user.getId());//为第 1个占位符设置参数：当前登录用户的 id（整数类型）
-            stmt.setString(2, name);
-            stmt.setString(3, dayOfWeek);
-            stmt.setString(4, timeSlot);
-            stmt.setInt(5, week);
-            
-            int affectedRows = stmt.executeUpdate();
-            System.out.println("删除操作影响的行数: " + affectedRows);
-            
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            System.out.println("删除课程时发生SQL异常: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+        boolean removed = store.delete(user.getId(), name, dayOfWeek, timeSlot, week);
+        if (removed) {
+            ScheduleIndex index = ScheduleIndex.forUser(user.getId());
+            // 索引已加载时用其中的完整课程发布事件（带教师、地点），否则只有名称和位置
+            Course course = index != null ? index.get(week, dayOfWeek, timeSlot) : null;
+            if (index != null) {
+                index.remove(name, dayOfWeek, timeSlot, week);
+            }
+            if (course == null || !name.equals(course.getName())) {
+                course = new Course(name, null, dayOfWeek, timeSlot, null);
+                course.setWeek(week);
+            }
+            publish(new CourseChangeEvent(CourseChangeEvent.Type.REMOVED, user.getId(), course));
         }
+        return removed;
+    }
+
+    /**
+     * 按主键删除某一周的课程
+     */
+    public boolean removeCourseById(int courseId, int week, User user) {
+        return !removeCourseFromWeeks(courseId, WeekMask.of(week), user).isEmpty();
+    }
+
+    /**
+     * 按主键批量删除课程，一条语句完成；返回被删除的每周课程
+     * MySQL 后端中一个主键对应一门课的所有周次
+     */
+    public List<Course> removeCourses(Collection<Integer> courseIds, User user) {
+        List<Course> removed = store.deleteByIds(user.getId(), courseIds);
+        indexRemoved(user.getId(), removed);
+        return removed;
+    }
+
+    /**
+     * 把课程从给定周次中删除（WeekMask.ALL 表示所有周），一条语句完成；返回被删除的每周课程
+     */
+    public List<Course> removeCourseFromWeeks(int courseId, long weekMask, User user) {
+        List<Course> removed = store.deleteFromWeeks(user.getId(), courseId, weekMask);
+        indexRemoved(user.getId(), removed);
+        return removed;
+    }
+
+    /**
+     * 增量同步：返回 sinceVersion 之后该用户课程的插入、修改与删除；sinceVersion 为 0 时返回全部课程
+     * 合并方式见 CourseDelta
+     */
+    public CourseDelta sync(int userId, long sinceVersion) {
+        return store.changesSince(userId, sinceVersion);
+    }
+
+    /**
+     * 用户所在的存储当前能否访问
+     */
+    public boolean isAvailable(int userId) {
+        return store.isAvailable(userId);
     }
 
     public boolean removeCourse(String name, String dayOfWeek, String timeSlot, User user) {
         // 默认删除第1周的课程（兼容旧方法）
         return removeCourse(name, dayOfWeek, timeSlot, user, 1);
     }
-}
 
+    // ===================== 变更事件 =====================
+
+    public static void addChangeListener(CourseChangeListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeChangeListener(CourseChangeListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * 通知所有监听器；已加载的课表索引此时已同步更新
+     * 单个监听器出错不影响其他监听器
+     */
+    protected static void publish(CourseChangeEvent event) {
+        for (CourseChangeListener listener : LISTENERS) {
+            try {
+                listener.onCourseChanged(event);
+            } catch (RuntimeException e) {
+                System.err.println("课程变更监听器出错: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
 
+    /**
+     * 同步已加载的索引并发布删除事件
+     */
+    private static void indexRemoved(int userId, List<Course> removed) {
+        ScheduleIndex index = ScheduleIndex.forUser(userId);
+        for (Course course : removed) {
+            if (index != null) {
+                index.remove(course.getName(), course.getDayOfWeek(), course.getTimeSlot(), course.getWeek());
+            }
+            publish(new CourseChangeEvent(CourseChangeEvent.Type.REMOVED, userId, course));
+        }
+    }
+
+    /**
+     * 同步已加载的整学期课表索引
+     */
+    private static void indexAdded(int userId, Course course) {
+        ScheduleIndex index = ScheduleIndex.forUser(userId);
+        if (index != null) {
+            index.put(course);
+        }
+    }
+}
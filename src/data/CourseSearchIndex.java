@@ -0,0 +1,218 @@
+package data;
+
+import model.Course;
+import model.Timetable;
+import model.WeekMask;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 整学期课表的全文检索索引：按课程名、教师、地点查找子串或前缀
+ *
+ * 每个 (周次, 星期, 节次) 格子是一个文档，编号 week * 35 + day * 5 + slot，整学期不到 800 个，
+ * 倒排表用位图表示。每个字段按单字和相邻两字（二元组）建倒排，适合中文这类没有空格分词的文本：
+ * 单字查询直接取单字倒排，更长的查询把所有二元组的位图按位与得到候选，再用原文确认是否连续出现。
+ * 周次、星期过滤在遍历候选时判断，整个查询只有几次位运算和少量字符串比较。
+ *
+ * 由 ScheduleIndex 持有并在写入格子时同步维护，不单独订阅变更事件；方法的同步由 ScheduleIndex 负责。
+ */
+public class CourseSearchIndex {
+    public static final int NAME = 1;       // 课程名
+    public static final int TEACHER = 2;    // 教师
+    public static final int LOCATION = 4;   // 地点
+    public static final int ALL_FIELDS = NAME | TEACHER | LOCATION;
+    public static final int ALL_DAYS = (1 << Timetable.DAYS.length) - 1;
+
+    private static final int FIELD_COUNT = 3;
+    private static final int DOCS = (Timetable.MAX_WEEK + 1) * Timetable.CELLS_PER_WEEK;
+    private static final int WORDS = (DOCS + 63) >>> 6;
+
+    private final Course[] docs = new Course[DOCS];
+    private final String[][] texts = new String[DOCS][];  // 归一化后的各字段，用于确认候选
+    private final List<Map<String, long[]>> postings = new ArrayList<>(FIELD_COUNT); // 每个字段一张倒排表
+    private int size;
+
+    CourseSearchIndex() {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            postings.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * 查找任一字段中包含 query 的课程，不限周次和星期
+     */
+    public List<Course> search(String query) {
+        return search(query, ALL_FIELDS, false, WeekMask.ALL, ALL_DAYS);
+    }
+
+    /**
+     * 查找课程，结果按周次、星期、节次排序
+     *
+     * @param fields   要匹配的字段（NAME、TEACHER、LOCATION 的组合），任一字段匹配即可
+     * @param prefix   true 时字段必须以 query 开头，否则包含即可
+     * @param weekMask 只返回这些周次的课程
+     * @param dayMask  只返回这些星期的课程，第 i 位对应 Timetable.DAYS[i]
+     */
+    public List<Course> search(String query, int fields, boolean prefix, long weekMask, int dayMask) {
+        List<Course> found = new ArrayList<>();
+        String text = normalize(query);
+        if (text.isEmpty()) {
+            return found;
+        }
+        long[] candidates = new long[WORDS];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if ((fields & (1 << field)) != 0) {
+                or(candidates, candidates(field, text));
+            }
+        }
+        for (int word = 0; word < WORDS; word++) {
+            long bits = candidates[word];
+            while (bits != 0) {
+                int doc = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int week = doc / Timetable.CELLS_PER_WEEK;
+                int day = doc % Timetable.CELLS_PER_WEEK / Timetable.TIME_SLOTS.length;
+                if (WeekMask.contains(weekMask, week) && (dayMask & (1 << day)) != 0
+                        && matches(texts[doc], fields, text, prefix)) {
+                    found.add(docs[doc]);
+                }
+            }
+        }
+        return found;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // ===================== 维护（由 ScheduleIndex 调用） =====================
+
+    void put(int week, int cell, Course course) {
+        int doc = week * Timetable.CELLS_PER_WEEK + cell;
+        remove(week, cell);
+        String[] fields = {normalize(course.getName()), normalize(course.getTeacher()), normalize(course.getLocation())};
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            String text = fields[field];
+            for (int i = 0; i < text.length(); i++) {
+                set(postings.get(field).computeIfAbsent(text.substring(i, i + 1), k -> new long[WORDS]), doc);
+                if (i + 1 < text.length()) {
+                    set(postings.get(field).computeIfAbsent(text.substring(i, i + 2), k -> new long[WORDS]), doc);
+                }
+            }
+        }
+        docs[doc] = course;
+        texts[doc] = fields;
+        size++;
+    }
+
+    void remove(int week, int cell) {
+        int doc = week * Timetable.CELLS_PER_WEEK + cell;
+        String[] fields = texts[doc];
+        if (fields == null) {
+            return;
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            String text = fields[field];
+            for (int i = 0; i < text.length(); i++) {
+                clear(field, text.substring(i, i + 1), doc);
+                if (i + 1 < text.length()) {
+                    clear(field, text.substring(i, i + 2), doc);
+                }
+            }
+        }
+        docs[doc] = null;
+        texts[doc] = null;
+        size--;
+    }
+
+    // ===================== 内部实现 =====================
+
+    // 单字直接取倒排，多字取所有二元组倒排的交集；返回的是副本或空位图，调用方可以修改
+    private long[] candidates(int field, String text) {
+        long[] result = new long[WORDS];
+        if (text.length() == 1) {
+            long[] posting = postings.get(field).get(text);
+            if (posting != null) {
+                System.arraycopy(posting, 0, result, 0, WORDS);
+            }
+            return result;
+        }
+        for (int i = 0; i + 1 < text.length(); i++) {
+            long[] posting = postings.get(field).get(text.substring(i, i + 2));
+            if (posting == null) {
+                return new long[WORDS];
+            }
+            if (i == 0) {
+                System.arraycopy(posting, 0, result, 0, WORDS);
+            } else {
+                and(result, posting);
+            }
+        }
+        return result;
+    }
+
+    // 二元组都出现不代表连续出现（如"数学"和"学数"拼不出"数学数"），用原文确认
+    private static boolean matches(String[] fields, int mask, String text, boolean prefix) {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if ((mask & (1 << field)) != 0
+                    && (prefix ? fields[field].startsWith(text) : fields[field].contains(text))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void clear(int field, String gram, int doc) {
+        long[] posting = postings.get(field).get(gram);
+        if (posting == null) {
+            return;
+        }
+        posting[doc >>> 6] &= ~(1L << doc);
+        for (long word : posting) {
+            if (word != 0) {
+                return;
+            }
+        }
+        postings.get(field).remove(gram);
+    }
+
+    private static void set(long[] bits, int doc) {
+        bits[doc >>> 6] |= 1L << doc;
+    }
+
+    private static void or(long[] target, long[] bits) {
+        for (int i = 0; i < WORDS; i++) {
+            target[i] |= bits[i];
+        }
+    }
+
+    private static void and(long[] target, long[] bits) {
+        for (int i = 0; i < WORDS; i++) {
+            target[i] &= bits[i];
+        }
+    }
+
+    /**
+     * 检索用的归一化：全角转半角（NFKC）、去掉空白、英文转小写，"高等 数学""ＣＳ１０１"都能匹配
+     * TeacherIndex.normalize 在此基础上再去掉称谓
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.isNormalized(text, Normalizer.Form.NFKC)
+                ? text : Normalizer.normalize(text, Normalizer.Form.NFKC);
+        StringBuilder builder = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,215 @@
+package data;
+
+import model.Course;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 课程二进制快照读取（流式），格式见 CourseSnapshotWriter
+ *
+ * 用法：
+ *   while (reader.next()) { reader.getCourse(); reader.getUserId(); }
+ * 读到结束标记时核对记录数和 CRC32，文件被截断或损坏时抛出 IOException。
+ */
+public class CourseSnapshotReader implements Closeable {
+    private final InputStream stream;
+    private final ByteBuffer buffer = ByteBuffer.allocate(CourseSnapshotWriter.BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private int crcMark;    // buffer 中已计入 CRC 的位置
+    private final List<String> strings = new ArrayList<>();
+    private final List<String> codes = new ArrayList<>();
+    private final long createdAt;
+    private long count;
+    private boolean finished;
+
+    private Course course;
+    private int userId;
+    private boolean hasUser;
+
+    public CourseSnapshotReader(Path file) throws IOException {
+        this(Files.newInputStream(file));
+    }
+
+    public CourseSnapshotReader(InputStream stream) throws IOException {
+        this.stream = stream;
+        buffer.flip(); // 初始为空
+        try {
+            require(14);
+            if (buffer.getInt() != CourseSnapshotWriter.MAGIC) {
+                throw new IOException("不是课程快照文件");
+            }
+            short version = buffer.getShort();
+            if (version != CourseSnapshotWriter.VERSION && version != CourseSnapshotWriter.VERSION_UNBOUNDED) {
+                throw new IOException("不支持的快照版本: " + version);
+            }
+            this.createdAt = buffer.getLong();
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 读取下一门课程，没有更多记录时返回 false
+     */
+    public boolean next() throws IOException {
+        if (finished) {
+            return false;
+        }
+        while (true) {
+            require(1);
+            byte tag = buffer.get();
+            switch (tag) {
+                case CourseSnapshotWriter.TAG_STRING:
+                    strings.add(readString());
+                    break;
+                case CourseSnapshotWriter.TAG_CODE:
+                    codes.add(readString());
+                    break;
+                case CourseSnapshotWriter.TAG_RESET:
+                    strings.clear();
+                    break;
+                case CourseSnapshotWriter.TAG_USER:
+                    require(4);
+                    userId = buffer.getInt();
+                    hasUser = true;
+                    break;
+                case CourseSnapshotWriter.TAG_COURSE:
+                    readCourse();
+                    count++;
+                    return true;
+                case CourseSnapshotWriter.TAG_END:
+                    verifyEnd();
+                    finished = true;
+                    course = null;
+                    return false;
+                default:
+                    throw new IOException("快照损坏：未知记录类型 " + tag);
+            }
+        }
+    }
+
+    public Course getCourse() {
+        return course;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+    private void readCourse() throws IOException {
+        if (!hasUser) {
+            throw new IOException("快照损坏：课程记录前缺少用户");
+        }
+        require(19);
+        int id = buffer.getInt();
+        int week = buffer.get() & 0xFF;
+        String day = code(buffer.get() & 0xFF);
+        String slot = code(buffer.get() & 0xFF);
+        String name = string(buffer.getInt());
+        String teacher = string(buffer.getInt());
+        String location = string(buffer.getInt());
+        course = new Course(name, teacher, day, slot, location);
+        course.setId(id);
+        course.setWeek(week);
+    }
+
+    private String readString() throws IOException {
+        require(4);
+        int length = buffer.getInt();
+        if (length < 0) {
+            throw new IOException("快照损坏：字符串长度 " + length);
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            require(1);
+            int n = Math.min(buffer.remaining(), length - offset);
+            buffer.get(bytes, offset, n);
+            offset += n;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void verifyEnd() throws IOException {
+        require(8);
+        long expectedCount = buffer.getLong();
+        crc.update(buffer.array(), crcMark, buffer.position() - crcMark);
+        crcMark = buffer.position();
+        int expectedCrc = (int) crc.getValue();
+        require(4);
+        if (buffer.getInt() != expectedCrc) {
+            throw new IOException("快照校验失败：CRC32 不一致");
+        }
+        if (expectedCount != count) {
+            throw new IOException("快照损坏：记录数应为 " + expectedCount + "，实际 " + count);
+        }
+    }
+
+    private String string(int ref) throws IOException {
+        if (ref == -1) {
+            return null;
+        }
+        if (ref < 0 || ref >= strings.size()) {
+            throw new IOException("快照损坏：字符串编号越界 " + ref);
+        }
+        return strings.get(ref);
+    }
+
+    private String code(int ref) throws IOException {
+        if (ref == CourseSnapshotWriter.NULL_CODE) {
+            return null;
+        }
+        if (ref >= codes.size()) {
+            throw new IOException("快照损坏：编码越界 " + ref);
+        }
+        return codes.get(ref);
+    }
+
+    /**
+     * 保证缓冲区中至少有 n 个未读字节；补充数据前把已读部分计入 CRC
+     */
+    private void require(int n) throws IOException {
+        if (buffer.remaining() >= n) {
+            return;
+        }
+        crc.update(buffer.array(), crcMark, buffer.position() - crcMark);
+        buffer.compact();
+        crcMark = 0;
+        while (buffer.position() < n) {
+            int read = stream.read(buffer.array(), buffer.position(), buffer.remaining());
+            if (read < 0) {
+                throw new EOFException("快照不完整：文件被截断");
+            }
+            buffer.position(buffer.position() + read);
+        }
+        // 尽量多读，减少系统调用
+        while (buffer.hasRemaining() && stream.available() > 0) {
+            int read = stream.read(buffer.array(), buffer.position(), buffer.remaining());
+            if (read <= 0) {
+                break;
+            }
+            buffer.position(buffer.position() + read);
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,187 @@
+package data;
+
+import model.Course;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 课程二进制快照写入（流式）
+ *
+ * 文件格式（版本 2，大端序）：
+ *   文件头：int 魔数 "CSNP"，short 版本号，long 创建时间
+ *   记录流：byte 类型 + 内容
+ *     STRING (1)：int 长度 + UTF-8 字节，编号按出现顺序从 0 递增（课程名、教师、地点）
+ *     CODE   (2)：同上，编号为一个字节（星期、节次，最多 255 种）
+ *     USER   (3)：int 用户ID，之后的课程记录都属于该用户
+ *     COURSE (4)：int 课程ID，byte 周次，byte 星期编号，byte 节次编号，
+ *                int 课程名编号，int 教师编号，int 地点编号（null 分别记为 0xFF / -1）
+ *     RESET  (5)：清空字符串字典，之后的 STRING 定义重新从 0 编号
+ *     END    (0)：long 课程记录数，int CRC32（覆盖此前全部字节）
+ *
+ * 字符串第一次出现时写一条定义，之后只写编号；每条课程记录固定 20 字节。
+ * 字典达到 MAX_STRINGS 条时写一条 RESET 并清空，读写双方的内存占用与导出的课程数无关。
+ * 版本 1 没有 RESET 记录，其余与版本 2 相同。
+ * 按用户分组写入时，用户ID 每组只写一次。
+ */
+public class CourseSnapshotWriter implements Closeable {
+    static final int MAGIC = 0x43534E50;   // "CSNP"
+    static final short VERSION = 2;
+    static final short VERSION_UNBOUNDED = 1; // 字典不重置的旧版本，仍可读取
+    static final byte TAG_END = 0;
+    static final byte TAG_STRING = 1;
+    static final byte TAG_CODE = 2;
+    static final byte TAG_USER = 3;
+    static final byte TAG_COURSE = 4;
+    static final byte TAG_RESET = 5;
+    static final int MAX_STRINGS = 1 << 16;  // 字符串字典的条数上限
+    static final int NULL_CODE = 0xFF;
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream stream;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+    private int currentUser;
+    private boolean hasUser;
+    private long count;
+    private boolean closed;
+
+    public CourseSnapshotWriter(Path file) throws IOException {
+        this(Files.newOutputStream(file));
+    }
+
+    public CourseSnapshotWriter(OutputStream stream) throws IOException {
+        this.stream = stream;
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putLong(System.currentTimeMillis());
+    }
+
+    /**
+     * 写入一门课程；同一用户的课程连续写入时文件最小
+     */
+    public void write(Course course, int userId) throws IOException {
+        if (!hasUser || userId != currentUser) {
+            ensure(5);
+            buffer.put(TAG_USER).putInt(userId);
+            currentUser = userId;
+            hasUser = true;
+        }
+        if (strings.size() > MAX_STRINGS - 3) {
+            // 一条课程记录最多新增 3 个字符串，先清空，保证本条记录引用的编号都在清空之后定义
+            ensure(1);
+            buffer.put(TAG_RESET);
+            strings.clear();
+        }
+        int name = stringRef(course.getName());
+        int teacher = stringRef(course.getTeacher());
+        int location = stringRef(course.getLocation());
+        int day = codeRef(course.getDayOfWeek());
+        int slot = codeRef(course.getTimeSlot());
+        if (course.getWeek() < 0 || course.getWeek() > 0xFF) {
+            throw new IOException("周次超出快照格式范围: " + course.getWeek());
+        }
+
+        ensure(20);
+        buffer.put(TAG_COURSE)
+                .putInt(course.getId())
+                .put((byte) course.getWeek())
+                .put((byte) day)
+                .put((byte) slot)
+                .putInt(name)
+                .putInt(teacher)
+                .putInt(location);
+        count++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 写入结束标记和校验和；未调用 close 的快照在读取时会被判定为不完整
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            ensure(13);
+            buffer.put(TAG_END).putLong(count);
+            flushBuffer();
+            buffer.putInt((int) crc.getValue());
+            flushBuffer();
+            stream.flush();
+        } finally {
+            stream.close();
+        }
+    }
+
+    private int stringRef(String value) throws IOException {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = strings.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.put(value, id);
+            writeDefinition(TAG_STRING, value);
+        }
+        return id;
+    }
+
+    private int codeRef(String value) throws IOException {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer id = codes.get(value);
+        if (id == null) {
+            if (codes.size() == NULL_CODE) {
+                throw new IOException("星期、节次取值超过 " + NULL_CODE + " 种");
+            }
+            id = codes.size();
+            codes.put(value, id);
+            writeDefinition(TAG_CODE, value);
+        }
+        return id;
+    }
+
+    private void writeDefinition(byte tag, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(5);
+        buffer.put(tag).putInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int n = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, n);
+            offset += n;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        crc.update(buffer.array(), 0, buffer.position());
+        stream.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+}
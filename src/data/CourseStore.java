@@ -0,0 +1,61 @@
+package data;
+
+import model.Course;
+import model.OccupancyMatrix;
+import model.WeekSlot;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 课程存储接口（SPI）
+ * CourseRepository 只依赖此接口，具体后端（MySQL / 嵌入式）在启动时由 Stores 选择。
+ */
+public interface CourseStore {
+
+    // 查询用户整学期的所有课程（含 id、week）
+    List<Course> findByUser(int userId);
+
+    // 查询用户某一教学周的课程
+    List<Course> findByWeek(int userId, int week);
+
+    // 插入一门课程，成功时回填 course 的 id
+    boolean insert(Course course, int userId);
+
+    // 在一个事务内批量插入，返回与 courses 一一对应的结果
+    List<AddResult> insertAll(List<Course> courses, int userId);
+
+    // 查找指定星期、节次集合、周次集合中已被占用的 (周次, 节次)
+    List<WeekSlot> findConflicts(int userId, String dayOfWeek, Set<String> timeSlots, Set<Integer> weeks);
+
+    // 删除某一周某个时间段中名称匹配的课程
+    boolean delete(int userId, String name, String dayOfWeek, String timeSlot, int week);
+
+    // 按主键删除课程（整条记录），返回被删除的每周课程
+    List<Course> deleteByIds(int userId, Collection<Integer> courseIds);
+
+    // 把主键对应的课程从 weekMask 中的周次删除（同名称、星期、节次），返回被删除的每周课程
+    List<Course> deleteFromWeeks(int userId, int courseId, long weekMask);
+
+    // 其他用户在这些 (星期, 节次) 及 weekMask 周次中、地点为 location 或教师为 teacher 的课程（按周展开）
+    // 为空的字段不参与查找；按 (地点/教师, 星期, 节次) 索引查询，不遍历全表。读取失败时抛出 StoreException
+    List<Course> findBookings(String location, String teacher, String dayOfWeek, Set<String> timeSlots,
+                              long weekMask, int excludeUserId);
+
+    // 增量同步：返回版本号大于 sinceVersion 的变更，sinceVersion 为 0 时返回全部课程
+    CourseDelta changesSince(int userId, long sinceVersion);
+
+    // 用户所在的存储当前能否访问（写操作失败时用于判断是否转入离线模式）
+    boolean isAvailable(int userId);
+
+    // 遍历所有用户的全部课程（按周展开），回调参数为课程和用户ID；用于构建全局索引
+    // 任一部分读取失败时抛出 StoreException，已回调的课程应整体作废
+    void forEachCourse(ObjIntConsumer<Course> action);
+
+    // 批量读取一组用户的占用位图，只读周次掩码、不展开为课程；没有课程的用户得到空位图
+    // 读取失败时抛出 StoreException，不返回部分结果
+    Map<Integer, OccupancyMatrix> loadOccupancy(Collection<Integer> userIds);
+}
@@ -0,0 +1,199 @@
+package data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 基于内存映射的 CSV 读取
+ *
+ * 直接在映射的字节上扫描分隔符和引号，不为每行创建 String / char[]，
+ * 每个字段只做一次 UTF-8 解码。大文件按行边界切成若干段并行解析，结果按原顺序拼接。
+ *
+ * 约定与 CourseFileUtil 写出的格式一致：换行总是结束一行（字段内不含换行），
+ * 引号内的 "" 表示一个双引号，字段首尾空白会被去除，空行跳过。
+ */
+public class CsvMappedReader {
+    private static final long PARALLEL_THRESHOLD = 1L << 20;        // 小于 1MB 的文件单线程解析
+    private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE; // 单次映射的上限
+
+    private CsvMappedReader() {}
+
+    /**
+     * 读取整个文件，文件较大时自动按 CPU 核数并行解析
+     */
+    public static List<String[]> readAll(Path file, boolean skipHeader) throws IOException {
+        return readAll(file, skipHeader, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 读取整个文件
+     *
+     * @param skipHeader  是否跳过第一行表头
+     * @param parallelism 最多切分的段数，1 表示单线程
+     */
+    public static List<String[]> readAll(Path file, boolean skipHeader, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+            int segments = size < PARALLEL_THRESHOLD ? 1 : Math.max(1, parallelism);
+            segments = (int) Math.max(segments, (size + MAX_SEGMENT_SIZE - 1) / MAX_SEGMENT_SIZE);
+            long[] bounds = splitAtLines(channel, size, segments);
+
+            if (bounds.length == 2) {
+                return parseSegment(channel, bounds[0], bounds[1], skipHeader);
+            }
+            try {
+                List<List<String[]>> parts = IntStream.range(0, bounds.length - 1).parallel()
+                        .mapToObj(i -> {
+                            try {
+                                return parseSegment(channel, bounds[i], bounds[i + 1], skipHeader && i == 0);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        })
+                        .collect(Collectors.toList());
+                List<String[]> rows = new ArrayList<>();
+                for (List<String[]> part : parts) {
+                    rows.addAll(part);
+                }
+                return rows;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * 计算切分点：把文件大致均分后，每个切分点向后移到下一行的开头
+     * 返回 [0, b1, b2, ..., size]，相邻两点之间为一段
+     */
+    private static long[] splitAtLines(FileChannel channel, long size, int segments) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < segments; i++) {
+            long pos = Math.max(size / segments * i, bounds.get(bounds.size() - 1));
+            long lineStart = nextLineStart(channel, pos, size, probe);
+            if (lineStart > bounds.get(bounds.size() - 1) && lineStart < size) {
+                bounds.add(lineStart);
+            }
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private static long nextLineStart(FileChannel channel, long pos, long size, ByteBuffer probe) throws IOException {
+        while (pos < size) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    private static List<String[]> parseSegment(FileChannel channel, long start, long end, boolean skipHeader)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        return parse(buffer, start == 0, skipHeader);
+    }
+
+    /**
+     * 解析一段完整的行
+     */
+    static List<String[]> parse(ByteBuffer buffer, boolean fileStart, boolean skipHeader) {
+        List<String[]> rows = new ArrayList<>();
+        List<String> fields = new ArrayList<>(8);
+        byte[] field = new byte[256];   // 当前字段的字节（已去掉引号），各行复用
+        int limit = buffer.limit();
+        int pos = 0;
+
+        // 跳过 UTF-8 BOM
+        if (fileStart && limit >= 3 && buffer.get(0) == (byte) 0xEF
+                && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+            pos = 3;
+        }
+        if (skipHeader) {
+            while (pos < limit && buffer.get(pos++) != '\n') {
+                // 跳过表头
+            }
+        }
+
+        while (pos < limit) {
+            int length = 0;
+            boolean inQuotes = false;
+            boolean blank = true;
+            fields.clear();
+            while (pos < limit) {
+                byte b = buffer.get(pos++);
+                if (b == '\n') {
+                    break;
+                }
+                if (b == '"') {
+                    if (inQuotes && pos < limit && buffer.get(pos) == '"') {
+                        b = '"';
+                        pos++;
+                    } else {
+                        inQuotes = !inQuotes;
+                        continue;
+                    }
+                } else if (b == ',' && !inQuotes) {
+                    fields.add(decode(field, length));
+                    length = 0;
+                    blank = false;
+                    continue;
+                }
+                if (length == field.length) {
+                    field = Arrays.copyOf(field, field.length * 2);
+                }
+                field[length++] = b;
+                if ((b & 0xFF) > ' ') {
+                    blank = false;
+                }
+            }
+            if (blank) {
+                continue; // 空行
+            }
+            fields.add(decode(field, length));
+            rows.add(fields.toArray(new String[0]));
+        }
+        return rows;
+    }
+
+    // 去除首尾空白（含行尾的 \r）后解码
+    private static String decode(byte[] bytes, int length) {
+        int from = 0;
+        int to = length;
+        while (from < to && (bytes[from] & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (bytes[to - 1] & 0xFF) <= ' ') {
+            to--;
+        }
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+}
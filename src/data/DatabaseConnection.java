@@ -1,17 +1,85 @@
 package data;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DatabaseConnection {
     private static final String URL = "jdbc:mysql://localhost:3306/course_manager?useSSL=false&serverTimezone=Asia/Shanghai&allowPublicKeyRetrieval=true";
     private static final String USER = "root";  // 改成你的用户名
     private static final String PASSWORD = "123456"; // 改成你的密码
+    // 只读副本地址（与主库使用相同的用户名、密码），例如 "jdbc:mysql://replica1:3306/course_manager?..."
+    private static final String[] REPLICA_URLS = {};
 
+    // 连接池参数
+    private static final int POOL_MAX_SIZE = 10;                   // 最大连接数
+    private static final long BORROW_TIMEOUT_MS = 5_000;           // 借出等待超时
+    private static final long IDLE_TIMEOUT_MS = 5 * 60_000;        // 空闲 5 分钟回收
+    private static final long LEAK_THRESHOLD_MS = 60_000;          // 借出 1 分钟未归还视为泄漏
+    static final long READ_YOUR_WRITES_MS = 5_000;                 // 用户写入后 5 秒内的读操作仍走主库
+
+    private static final ConnectionPool POOL = createPool(URL, USER, PASSWORD);
+
+    /**
+     * 从连接池借出连接，使用完调用 close() 即归还到池中
+     * 访问用户数据时应使用 getConnectionForUser / getConnectionForUsername，以便路由到所在分片
+     */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return POOL.borrow();
+    }
+
+    /**
+     * 借出用户所在分片主库的连接，用于写操作（未配置分片时即默认数据库）
+     */
+    public static Connection getConnectionForUser(int userId) throws SQLException {
+        return ShardRouter.get().connectionForUser(userId);
+    }
+
+    /**
+     * 按用户名借出所在分片主库的连接，用于注册
+     */
+    public static Connection getConnectionForUsername(String username) throws SQLException {
+        return ShardRouter.get().connectionForUsername(username);
+    }
+
+    /**
+     * 借出用户所在分片的只读连接：副本轮询；该用户刚写入过时仍走主库，保证读到自己的修改
+     */
+    public static Connection getReadConnectionForUser(int userId) throws SQLException {
+        return ShardRouter.get().readConnectionForUser(userId);
+    }
+
+    /**
+     * 按用户名借出只读连接，用于登录
+     */
+    public static Connection getReadConnectionForUsername(String username) throws SQLException {
+        return ShardRouter.get().readConnectionForUsername(username);
+    }
+
+    /**
+     * 按统一的连接池参数创建连接池，分片也使用相同参数
+     */
+    static ConnectionPool createPool(String url, String user, String password) {
+        return new ConnectionPool(url, user, password,
+                POOL_MAX_SIZE, BORROW_TIMEOUT_MS, IDLE_TIMEOUT_MS, LEAK_THRESHOLD_MS);
     }
-}
 
+    /**
+     * 默认数据库：主库连接池加上 REPLICA_URLS 中的只读副本
+     */
+    static ReplicaSet defaultReplicaSet() {
+        List<ConnectionPool> replicas = new ArrayList<>();
+        for (String url : REPLICA_URLS) {
+            replicas.add(createPool(url, USER, PASSWORD));
+        }
+        return new ReplicaSet(POOL, replicas);
+    }
 
+    /**
+     * 获取连接池运行时统计（借出数、空闲数、等待时间等）
+     */
+    public static PoolStats getPoolStats() {
+        return POOL.getStats();
+    }
+}
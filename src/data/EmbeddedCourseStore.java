@@ -0,0 +1,98 @@
+package data;
+
+import model.Course;
+import model.OccupancyMatrix;
+import model.WeekSlot;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 基于嵌入式单文件引擎的课程存储实现，读操作不经过网络
+ */
+public class EmbeddedCourseStore implements CourseStore {
+    private final EmbeddedDatabase db;
+
+    public EmbeddedCourseStore(EmbeddedDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public List<Course> findByUser(int userId) {
+        return db.coursesOfUser(userId);
+    }
+
+    @Override
+    public List<Course> findByWeek(int userId, int week) {
+        return db.coursesOfWeek(userId, week);
+    }
+
+    @Override
+    public boolean insert(Course course, int userId) {
+        return db.insertCourses(List.of(course), userId).get(0) == AddResult.SUCCESS;
+    }
+
+    @Override
+    public List<AddResult> insertAll(List<Course> courses, int userId) {
+        return db.insertCourses(courses, userId);
+    }
+
+    @Override
+    public List<WeekSlot> findConflicts(int userId, String dayOfWeek, Set<String> timeSlots, Set<Integer> weeks) {
+        return db.findConflicts(userId, dayOfWeek, timeSlots, weeks);
+    }
+
+    @Override
+    public boolean delete(int userId, String name, String dayOfWeek, String timeSlot, int week) {
+        return db.deleteCourse(userId, name, dayOfWeek, timeSlot, week);
+    }
+
+    @Override
+    public List<Course> deleteByIds(int userId, Collection<Integer> courseIds) {
+        return db.deleteCoursesById(userId, courseIds);
+    }
+
+    @Override
+    public List<Course> deleteFromWeeks(int userId, int courseId, long weekMask) {
+        return db.deleteCourseFromWeeks(userId, courseId, weekMask);
+    }
+
+    @Override
+    public List<Course> findBookings(String location, String teacher, String dayOfWeek, Set<String> timeSlots,
+                                     long weekMask, int excludeUserId) {
+        return db.findBookings(location, teacher, dayOfWeek, timeSlots, weekMask, excludeUserId);
+    }
+
+    @Override
+    public CourseDelta changesSince(int userId, long sinceVersion) {
+        return db.changesSince(userId, sinceVersion);
+    }
+
+    @Override
+    public void forEachCourse(ObjIntConsumer<Course> action) {
+        db.forEachCourse(action);
+    }
+
+    @Override
+    public Map<Integer, OccupancyMatrix> loadOccupancy(Collection<Integer> userIds) {
+        Map<Integer, OccupancyMatrix> occupancy = new LinkedHashMap<>();
+        for (int userId : userIds) {
+            OccupancyMatrix matrix = occupancy.get(userId);
+            if (matrix == null) {
+                matrix = new OccupancyMatrix();
+                occupancy.put(userId, matrix);
+                db.fillOccupancy(userId, matrix);
+            }
+        }
+        return occupancy;
+    }
+
+    @Override
+    public boolean isAvailable(int userId) {
+        return true; // 与应用在同一进程内
+    }
+}
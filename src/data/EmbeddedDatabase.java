@@ -0,0 +1,745 @@
+package data;
+
+import model.Course;
+import model.OccupancyMatrix;
+import model.User;
+import model.WeekMask;
+import model.WeekSlot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * 嵌入式单文件存储引擎，与应用运行在同一个 JVM 内
+ *
+ * 所有数据常驻内存，写操作以追加日志的方式落盘：
+ *   文件头：magic(int) + version(int)
+ *   记录：  length(int) + payload(length 字节) + crc32(int)
+ * 启动时顺序重放日志重建内存表；末尾不完整或校验失败的记录（写入中途崩溃）会被截断。
+ * 日志中的失效记录过多时，启动时会压缩为只含有效数据的新文件。
+ *
+ * 每次课程写操作分配一个递增的变更版本号，写入日志并在重放时恢复；删除的课程保留墓碑（课程ID、用户、版本号），
+ * 供增量同步告知客户端。旧版本日志中不带版本号的记录在重放时按日志顺序补发版本号。
+ */
+public class EmbeddedDatabase {
+    private static final int MAGIC = 0x43534442; // "CSDB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte OP_INSERT_USER = 1;
+    private static final byte OP_UPDATE_PASSWORD = 2;
+    private static final byte OP_INSERT_COURSE = 3;      // 旧格式，不带版本号，仅重放
+    private static final byte OP_DELETE_COURSE = 4;      // 旧格式，不带版本号，仅重放
+    private static final byte OP_INSERT_COURSE_V = 5;    // 课程 + 版本号
+    private static final byte OP_DELETE_COURSE_V = 6;    // 课程ID + 用户ID + 版本号
+
+    private final Path file;
+    private final boolean syncWrites; // 每次写入后是否 fsync
+    private FileChannel channel;
+
+    // 内存表
+    private final Map<Integer, User> usersById = new HashMap<>();
+    private final Map<String, User> usersByName = new HashMap<>();
+    private final Map<Integer, Course> coursesById = new HashMap<>();
+    private final Map<Integer, Integer> courseOwner = new HashMap<>();                        // courseId -> userId
+    private final Map<Integer, TreeMap<Integer, Map<String, Course>>> coursesByUser = new HashMap<>(); // userId -> week -> "星期|节次" -> 课程
+    private final Map<Integer, Map<Integer, Long>> tombstones = new HashMap<>();              // userId -> 已删除课程ID -> 删除时的版本号
+    private int nextUserId = 1;
+    private int nextCourseId = 1;
+    private long changeVersion;                                                                // 最近一次课程写操作的版本号
+    private long logRecords;
+
+    private EmbeddedDatabase(Path file, boolean syncWrites) {
+        this.file = file;
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * 打开（不存在则创建）数据文件，默认每次写入后 fsync
+     */
+    public static EmbeddedDatabase open(String path) {
+        return open(path, true);
+    }
+
+    public static EmbeddedDatabase open(String path, boolean syncWrites) {
+        EmbeddedDatabase db = new EmbeddedDatabase(Paths.get(path), syncWrites);
+        try {
+            db.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开嵌入式数据库失败: " + path, e);
+        }
+        return db;
+    }
+
+    // ===================== 用户表 =====================
+
+    public synchronized User findUser(String username) {
+        User user = usersByName.get(username);
+        return user == null ? null : copy(user);
+    }
+
+    public synchronized Map<String, Integer> findUserIds(Collection<String> usernames) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (String username : usernames) {
+            User user = usersByName.get(username);
+            if (user != null) {
+                ids.put(username, user.getId());
+            }
+        }
+        return ids;
+    }
+
+    public synchronized boolean insertUser(User user) {
+        if (usersByName.containsKey(user.getUsername())) {
+            return false; // username 唯一
+        }
+        User stored = new User(user.getUsername(), user.getPassword(), user.getName());
+        stored.setId(nextUserId);
+        append(encodeInsertUser(stored));
+        applyInsertUser(stored);
+        user.setId(stored.getId());
+        return true;
+    }
+
+    public synchronized String findPasswordHash(int userId) {
+        User user = usersById.get(userId);
+        return user == null ? null : user.getPassword();
+    }
+
+    public synchronized boolean updatePassword(int userId, String passwordHash) {
+        if (!usersById.containsKey(userId)) {
+            return false;
+        }
+        append(encode(OP_UPDATE_PASSWORD, out -> {
+            out.writeInt(userId);
+            writeString(out, passwordHash);
+        }));
+        usersById.get(userId).setPassword(passwordHash);
+        return true;
+    }
+
+    // ===================== 课程表 =====================
+
+    public synchronized List<Course> coursesOfUser(int userId) {
+        List<Course> courses = new ArrayList<>();
+        TreeMap<Integer, Map<String, Course>> weeks = coursesByUser.get(userId);
+        if (weeks != null) {
+            for (Map<String, Course> cells : weeks.values()) {
+                for (Course course : cells.values()) {
+                    courses.add(copy(course));
+                }
+            }
+        }
+        return courses;
+    }
+
+    /**
+     * 遍历所有用户的全部课程，回调在持有数据库锁期间执行，不要在回调中写数据库
+     */
+    public synchronized void forEachCourse(ObjIntConsumer<Course> action) {
+        for (Map.Entry<Integer, TreeMap<Integer, Map<String, Course>>> user : coursesByUser.entrySet()) {
+            for (Map<String, Course> cells : user.getValue().values()) {
+                for (Course course : cells.values()) {
+                    action.accept(copy(course), user.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * 把用户的全部课程合并进占用位图
+     */
+    public synchronized void fillOccupancy(int userId, OccupancyMatrix occupancy) {
+        TreeMap<Integer, Map<String, Course>> weeks = coursesByUser.get(userId);
+        if (weeks == null) {
+            return;
+        }
+        for (Map.Entry<Integer, Map<String, Course>> week : weeks.entrySet()) {
+            for (Course course : week.getValue().values()) {
+                occupancy.set(week.getKey(), course.getDayOfWeek(), course.getTimeSlot());
+            }
+        }
+    }
+
+    public synchronized List<Course> coursesOfWeek(int userId, int week) {
+        List<Course> courses = new ArrayList<>();
+        Map<String, Course> cells = cellsOf(userId, week, false);
+        if (cells != null) {
+            for (Course course : cells.values()) {
+                courses.add(copy(course));
+            }
+        }
+        return courses;
+    }
+
+    /**
+     * 批量插入课程：所有记录一次写入并只 fsync 一次
+     * 同一 (用户, 周次, 星期, 节次) 已有课程时该行返回 CONFLICT，周次不在 1-WeekMask.MAX_WEEK 内时返回 FAILED
+     */
+    public synchronized List<AddResult> insertCourses(List<Course> courses, int userId) {
+        List<AddResult> results = new ArrayList<>(courses.size());
+        long version = changeVersion + 1;
+        List<Course> accepted = new ArrayList<>();
+        Set<String> batchCells = new HashSet<>(); // 本批次内已占用的格子
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (Course course : courses) {
+            if (course.getWeek() < 1 || course.getWeek() > WeekMask.MAX_WEEK) {
+                results.add(AddResult.FAILED); // 与 MySqlCourseStore 一致：周次超出范围
+                continue;
+            }
+            Map<String, Course> cells = cellsOf(userId, course.getWeek(), false);
+            String cell = cellKey(course.getDayOfWeek(), course.getTimeSlot());
+            if ((cells != null && cells.containsKey(cell)) || !batchCells.add(course.getWeek() + "|" + cell)) {
+                results.add(AddResult.CONFLICT);
+                continue;
+            }
+            Course stored = copy(course);
+            stored.setId(nextCourseId + accepted.size());
+            stored.setVersion(version);
+            byte[] record = encodeInsertCourse(stored, userId);
+            batch.write(record, 0, record.length);
+            accepted.add(stored);
+            results.add(AddResult.SUCCESS);
+        }
+
+        if (!accepted.isEmpty()) {
+            append(batch.toByteArray(), accepted.size());
+            int k = 0;
+            for (int i = 0; i < courses.size(); i++) {
+                if (results.get(i) == AddResult.SUCCESS) {
+                    Course stored = accepted.get(k++);
+                    applyInsertCourse(stored, userId);
+                    courses.get(i).setId(stored.getId());
+                    courses.get(i).setVersion(version);
+                }
+            }
+        }
+        return results;
+    }
+
+    public synchronized List<WeekSlot> findConflicts(int userId, String dayOfWeek, Set<String> timeSlots, Set<Integer> weeks) {
+        List<WeekSlot> conflicts = new ArrayList<>();
+        for (int week : weeks) {
+            Map<String, Course> cells = cellsOf(userId, week, false);
+            if (cells == null) {
+                continue;
+            }
+            for (String timeSlot : timeSlots) {
+                if (cells.containsKey(cellKey(dayOfWeek, timeSlot))) {
+                    conflicts.add(new WeekSlot(week, timeSlot));
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * 其他用户在这些格子、周次中地点或教师相同的课程；嵌入式库全部在内存中，逐个用户查看对应格子
+     */
+    public synchronized List<Course> findBookings(String location, String teacher, String dayOfWeek,
+                                                  Set<String> timeSlots, long weekMask, int excludeUserId) {
+        List<Course> bookings = new ArrayList<>();
+        String place = location == null ? "" : location.trim();
+        String person = teacher == null ? "" : teacher.trim();
+        for (Map.Entry<Integer, TreeMap<Integer, Map<String, Course>>> user : coursesByUser.entrySet()) {
+            if (user.getKey() == excludeUserId) {
+                continue;
+            }
+            for (int week : WeekMask.weeks(weekMask)) {
+                Map<String, Course> cells = user.getValue().get(week);
+                if (cells == null) {
+                    continue;
+                }
+                for (String timeSlot : timeSlots) {
+                    Course course = cells.get(cellKey(dayOfWeek, timeSlot));
+                    if (course != null && (matches(course.getLocation(), place) || matches(course.getTeacher(), person))) {
+                        bookings.add(copy(course));
+                    }
+                }
+            }
+        }
+        return bookings;
+    }
+
+    private static boolean matches(String value, String wanted) {
+        return !wanted.isEmpty() && value != null && value.trim().equals(wanted);
+    }
+
+    public synchronized boolean deleteCourse(int userId, String name, String dayOfWeek, String timeSlot, int week) {
+        Map<String, Course> cells = cellsOf(userId, week, false);
+        if (cells == null) {
+            return false;
+        }
+        Course course = cells.get(cellKey(dayOfWeek, timeSlot));
+        if (course == null || !course.getName().equals(name)) {
+            return false;
+        }
+        deleteAll(List.of(course));
+        return true;
+    }
+
+    /**
+     * 按课程ID批量删除（只删除属于该用户的课程），整批只 fsync 一次
+     */
+    public synchronized List<Course> deleteCoursesById(int userId, Collection<Integer> courseIds) {
+        List<Course> targets = new ArrayList<>();
+        for (int courseId : courseIds) {
+            Course course = coursesById.get(courseId);
+            if (course != null && courseOwner.get(courseId) == userId) {
+                targets.add(course);
+            }
+        }
+        return deleteAll(targets);
+    }
+
+    /**
+     * 把课程从指定周次中删除：按该课程的名称、星期、节次找到各周对应的记录
+     */
+    public synchronized List<Course> deleteCourseFromWeeks(int userId, int courseId, long weekMask) {
+        Course course = coursesById.get(courseId);
+        if (course == null || courseOwner.get(courseId) != userId) {
+            return new ArrayList<>();
+        }
+        String cell = cellKey(course.getDayOfWeek(), course.getTimeSlot());
+        List<Course> targets = new ArrayList<>();
+        TreeMap<Integer, Map<String, Course>> weeks = coursesByUser.get(userId);
+        for (Map.Entry<Integer, Map<String, Course>> entry : weeks.entrySet()) {
+            int week = entry.getKey();
+            if (week < 1 || week > WeekMask.MAX_WEEK || !WeekMask.contains(weekMask, week)) {
+                continue;
+            }
+            Course sibling = entry.getValue().get(cell);
+            if (sibling != null && sibling.getName().equals(course.getName())) {
+                targets.add(sibling);
+            }
+        }
+        return deleteAll(targets);
+    }
+
+    private List<Course> deleteAll(List<Course> targets) {
+        List<Course> removed = new ArrayList<>(targets.size());
+        if (targets.isEmpty()) {
+            return removed;
+        }
+        long version = changeVersion + 1;
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (Course course : targets) {
+            byte[] record = encodeDeleteCourse(course.getId(), courseOwner.get(course.getId()), version);
+            batch.write(record, 0, record.length);
+        }
+        append(batch.toByteArray(), targets.size());
+        for (Course course : targets) {
+            removed.add(copy(course));
+            applyDeleteCourse(course.getId(), version);
+        }
+        return removed;
+    }
+
+    /**
+     * 增量同步：版本号大于 sinceVersion 的课程与墓碑；sinceVersion 为 0 时返回全部课程，不含墓碑
+     * 墓碑在压缩时只保留最近 CourseDelta.TOMBSTONE_RETENTION 个版本，落后更多的客户端返回全部课程
+     */
+    public synchronized CourseDelta changesSince(int userId, long sinceVersion) {
+        if (CourseDelta.needsResync(sinceVersion, changeVersion)) {
+            return CourseDelta.resync(sinceVersion, coursesOfUser(userId), changeVersion);
+        }
+        List<Course> courses = new ArrayList<>();
+        Set<Integer> deletedIds = new HashSet<>();
+        long maxVersion = 0;
+        TreeMap<Integer, Map<String, Course>> weeks = coursesByUser.get(userId);
+        if (weeks != null) {
+            for (Map<String, Course> cells : weeks.values()) {
+                for (Course course : cells.values()) {
+                    if (course.getVersion() > sinceVersion) {
+                        courses.add(copy(course));
+                        maxVersion = Math.max(maxVersion, course.getVersion());
+                    }
+                }
+            }
+        }
+        Map<Integer, Long> deleted = tombstones.get(userId);
+        if (deleted != null && sinceVersion > 0) {
+            for (Map.Entry<Integer, Long> entry : deleted.entrySet()) {
+                if (entry.getValue() > sinceVersion) {
+                    deletedIds.add(entry.getKey());
+                    maxVersion = Math.max(maxVersion, entry.getValue());
+                }
+            }
+        }
+        return CourseDelta.of(sinceVersion, courses, deletedIds, maxVersion);
+    }
+
+    /**
+     * 把日志压缩为只含当前有效数据的新文件（先写临时文件再原子替换）
+     * 早于保留范围的墓碑不再写入并从内存中移除；最新版本的记录总在保留范围内，重新打开后 changeVersion 不变
+     */
+    public synchronized void compact() {
+        Path tmp = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            long records = 0;
+            for (User user : usersById.values()) {
+                byte[] record = encodeInsertUser(user);
+                buffer.write(record, 0, record.length);
+                records++;
+            }
+            for (Course course : coursesById.values()) {
+                byte[] record = encodeInsertCourse(course, courseOwner.get(course.getId()));
+                buffer.write(record, 0, record.length);
+                records++;
+            }
+            long expired = changeVersion - CourseDelta.TOMBSTONE_RETENTION;
+            for (Map<Integer, Long> deleted : tombstones.values()) {
+                deleted.values().removeIf(version -> version <= expired);
+            }
+            tombstones.values().removeIf(Map::isEmpty);
+            for (Map.Entry<Integer, Map<Integer, Long>> user : tombstones.entrySet()) {
+                for (Map.Entry<Integer, Long> tombstone : user.getValue().entrySet()) {
+                    byte[] record = encodeDeleteCourse(tombstone.getKey(), user.getKey(), tombstone.getValue());
+                    buffer.write(record, 0, record.length);
+                    records++;
+                }
+            }
+            writeFully(out, header());
+            writeFully(out, ByteBuffer.wrap(buffer.toByteArray()));
+            out.force(true);
+
+            channel.close();
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                logRecords = records;
+            } finally {
+                // 替换失败时原文件仍在，重新打开后继续追加，否则之后的写入都会失败
+                channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ);
+                channel.position(channel.size());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("压缩嵌入式数据库失败", e);
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.force(true);
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ===================== 加载与重放 =====================
+
+    private void load() throws IOException {
+        boolean exists = Files.exists(file) && Files.size(file) >= HEADER_SIZE;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!exists) {
+            channel.truncate(0);
+            writeFully(channel, header());
+            channel.force(true);
+            return;
+        }
+
+        ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+        channel.read(data, 0);
+        data.flip();
+        if (data.getInt() != MAGIC) {
+            throw new IOException("不是有效的嵌入式数据库文件: " + file);
+        }
+        int version = data.getInt();
+        if (version != VERSION) {
+            throw new IOException("不支持的数据库文件版本: " + version);
+        }
+
+        long validEnd = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= 4) {
+            int length = data.getInt();
+            if (length <= 0 || data.remaining() < length + 4) {
+                break; // 记录不完整
+            }
+            byte[] payload = new byte[length];
+            data.get(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != data.getInt()) {
+                break; // 校验失败
+            }
+            replay(payload);
+            logRecords++;
+            validEnd = data.position();
+        }
+
+        if (validEnd < channel.size()) {
+            System.err.println("嵌入式数据库末尾存在不完整记录，已截断 " + (channel.size() - validEnd) + " 字节");
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+
+        long live = usersById.size() + coursesById.size() + tombstoneCount();
+        if (logRecords > 1000 && logRecords > live * 2) {
+            compact();
+        }
+    }
+
+    private void replay(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        switch (op) {
+            case OP_INSERT_USER: {
+                User user = new User();
+                user.setId(in.readInt());
+                user.setUsername(readString(in));
+                user.setPassword(readString(in));
+                user.setName(readString(in));
+                applyInsertUser(user);
+                break;
+            }
+            case OP_UPDATE_PASSWORD: {
+                User user = usersById.get(in.readInt());
+                String hash = readString(in);
+                if (user != null) {
+                    user.setPassword(hash);
+                }
+                break;
+            }
+            case OP_INSERT_COURSE:
+            case OP_INSERT_COURSE_V: {
+                Course course = new Course();
+                course.setId(in.readInt());
+                int userId = in.readInt();
+                course.setName(readString(in));
+                course.setTeacher(readString(in));
+                course.setDayOfWeek(readString(in));
+                course.setTimeSlot(readString(in));
+                course.setLocation(readString(in));
+                course.setWeek(in.readInt());
+                course.setVersion(op == OP_INSERT_COURSE_V ? in.readLong() : changeVersion + 1);
+                applyInsertCourse(course, userId);
+                break;
+            }
+            case OP_DELETE_COURSE:
+                applyDeleteCourse(in.readInt(), changeVersion + 1);
+                break;
+            case OP_DELETE_COURSE_V: {
+                int courseId = in.readInt();
+                int userId = in.readInt();
+                long version = in.readLong();
+                if (coursesById.containsKey(courseId)) {
+                    applyDeleteCourse(courseId, version);
+                } else {
+                    addTombstone(userId, courseId, version); // 压缩后的文件中只有墓碑
+                }
+                break;
+            }
+            default:
+                throw new IOException("未知的日志记录类型: " + op);
+        }
+    }
+
+    private void applyInsertUser(User user) {
+        usersById.put(user.getId(), user);
+        usersByName.put(user.getUsername(), user);
+        nextUserId = Math.max(nextUserId, user.getId() + 1);
+    }
+
+    private void applyInsertCourse(Course course, int userId) {
+        coursesById.put(course.getId(), course);
+        courseOwner.put(course.getId(), userId);
+        cellsOf(userId, course.getWeek(), true).put(cellKey(course.getDayOfWeek(), course.getTimeSlot()), course);
+        nextCourseId = Math.max(nextCourseId, course.getId() + 1);
+        changeVersion = Math.max(changeVersion, course.getVersion());
+    }
+
+    private void applyDeleteCourse(int courseId, long version) {
+        Course course = coursesById.remove(courseId);
+        Integer userId = courseOwner.remove(courseId);
+        if (course == null || userId == null) {
+            return;
+        }
+        Map<String, Course> cells = cellsOf(userId, course.getWeek(), false);
+        if (cells != null) {
+            cells.remove(cellKey(course.getDayOfWeek(), course.getTimeSlot()));
+        }
+        addTombstone(userId, courseId, version);
+    }
+
+    private void addTombstone(int userId, int courseId, long version) {
+        tombstones.computeIfAbsent(userId, id -> new HashMap<>()).put(courseId, version);
+        changeVersion = Math.max(changeVersion, version);
+    }
+
+    private long tombstoneCount() {
+        long count = 0;
+        for (Map<Integer, Long> deleted : tombstones.values()) {
+            count += deleted.size();
+        }
+        return count;
+    }
+
+    // ===================== 编码与落盘 =====================
+
+    private interface RecordBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(byte op, RecordBody body) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeByte(op);
+            body.write(out);
+            out.flush();
+            byte[] bytes = payload.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            ByteBuffer record = ByteBuffer.allocate(4 + bytes.length + 4);
+            record.putInt(bytes.length).put(bytes).putInt((int) crc.getValue());
+            return record.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // 内存流不会抛出
+        }
+    }
+
+    private static byte[] encodeInsertUser(User user) {
+        return encode(OP_INSERT_USER, out -> {
+            out.writeInt(user.getId());
+            writeString(out, user.getUsername());
+            writeString(out, user.getPassword());
+            writeString(out, user.getName());
+        });
+    }
+
+    private static byte[] encodeInsertCourse(Course course, int userId) {
+        return encode(OP_INSERT_COURSE_V, out -> {
+            out.writeInt(course.getId());
+            out.writeInt(userId);
+            writeString(out, course.getName());
+            writeString(out, course.getTeacher());
+            writeString(out, course.getDayOfWeek());
+            writeString(out, course.getTimeSlot());
+            writeString(out, course.getLocation());
+            out.writeInt(course.getWeek());
+            out.writeLong(course.getVersion());
+        });
+    }
+
+    private static byte[] encodeDeleteCourse(int courseId, int userId, long version) {
+        return encode(OP_DELETE_COURSE_V, out -> {
+            out.writeInt(courseId);
+            out.writeInt(userId);
+            out.writeLong(version);
+        });
+    }
+
+    private void append(byte[] record) {
+        append(record, 1);
+    }
+
+    /**
+     * 追加记录；写入或 fsync 失败时把文件截断回写入前的位置，日志中间不会留下半条记录，
+     * 否则下次打开时重放会在这条损坏的记录处停止，之后成功写入的记录全部丢失
+     */
+    private void append(byte[] records, int count) {
+        long start;
+        try {
+            start = channel.position();
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入嵌入式数据库失败", e);
+        }
+        try {
+            writeFully(channel, ByteBuffer.wrap(records));
+            if (syncWrites) {
+                channel.force(false);
+            }
+            logRecords += count;
+        } catch (IOException e) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException rollback) {
+                e.addSuppressed(rollback);
+            }
+            throw new UncheckedIOException("写入嵌入式数据库失败", e);
+        }
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        return header;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // ===================== 工具方法 =====================
+
+    private Map<String, Course> cellsOf(int userId, int week, boolean create) {
+        TreeMap<Integer, Map<String, Course>> weeks = coursesByUser.get(userId);
+        if (weeks == null) {
+            if (!create) {
+                return null;
+            }
+            weeks = new TreeMap<>();
+            coursesByUser.put(userId, weeks);
+        }
+        return create ? weeks.computeIfAbsent(week, w -> new HashMap<>()) : weeks.get(week);
+    }
+
+    private static String cellKey(String dayOfWeek, String timeSlot) {
+        return dayOfWeek + "|" + timeSlot;
+    }
+
+    private static Course copy(Course source) {
+        Course course = new Course(source.getName(), source.getTeacher(), source.getDayOfWeek(),
+                source.getTimeSlot(), source.getLocation());
+        course.setId(source.getId());
+        course.setWeek(source.getWeek());
+        course.setVersion(source.getVersion());
+        return course;
+    }
+
+    private static User copy(User source) {
+        User user = new User(source.getUsername(), source.getPassword(), source.getName());
+        user.setId(source.getId());
+        return user;
+    }
+}
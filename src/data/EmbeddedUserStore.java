@@ -0,0 +1,47 @@
+package data;
+
+import model.User;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 基于嵌入式单文件引擎的用户存储实现
+ */
+public class EmbeddedUserStore implements UserStore {
+    private final EmbeddedDatabase db;
+
+    public EmbeddedUserStore(EmbeddedDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public User findByUsername(String username) {
+        return db.findUser(username);
+    }
+
+    @Override
+    public Map<String, Integer> findIdsByUsernames(Collection<String> usernames) {
+        return db.findUserIds(usernames);
+    }
+
+    @Override
+    public boolean insert(User user) {
+        return db.insertUser(user);
+    }
+
+    @Override
+    public String findPasswordHash(int userId) {
+        return db.findPasswordHash(userId);
+    }
+
+    @Override
+    public boolean updatePasswordHash(int userId, String passwordHash) {
+        return db.updatePassword(userId, passwordHash);
+    }
+
+    @Override
+    public boolean isAvailable(String username) {
+        return true; // 与应用在同一进程内
+    }
+}
@@ -0,0 +1,123 @@
+package data;
+
+import model.OccupancyMatrix;
+import model.Timetable;
+import model.WeekMask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一组用户的共同空闲时间（学习小组、助教答疑等）
+ *
+ * 加载时用 CourseStore.loadOccupancy 一次批量读取所有成员的占用位图（每个分片一条查询），
+ * 之后所有成员的位图按位或成一张"有人上课"的位图：某个 (星期, 节次) 格子取反再与周次范围相与，
+ * 就是全员都空闲的周次。查询只是 35 次位运算，与成员人数无关，几百人的小组同样适用。
+ * 加载后不随课表变更更新，需要最新结果时重新 load。
+ */
+public class GroupAvailability {
+    private final Map<Integer, OccupancyMatrix> members;
+    private final OccupancyMatrix busy = new OccupancyMatrix(); // 任一成员有课的 (周次, 星期, 节次)
+
+    private GroupAvailability(Map<Integer, OccupancyMatrix> members) {
+        this.members = members;
+        for (OccupancyMatrix occupancy : members.values()) {
+            busy.orInPlace(occupancy);
+        }
+    }
+
+    /**
+     * 读取一组用户的课表，重复的用户ID只计一次
+     */
+    public static GroupAvailability load(Collection<Integer> userIds) {
+        return load(Stores.courseStore(), userIds);
+    }
+
+    public static GroupAvailability load(CourseStore store, Collection<Integer> userIds) {
+        long start = System.currentTimeMillis();
+        GroupAvailability group = new GroupAvailability(store.loadOccupancy(userIds));
+        System.out.println("已加载 " + group.getMemberCount() + " 人的课表占用，耗时 "
+                + (System.currentTimeMillis() - start) + " ms");
+        return group;
+    }
+
+    public int getMemberCount() {
+        return members.size();
+    }
+
+    /**
+     * 全员都空闲的格子，按空闲周数从多到少排序（周数相同按星期、节次顺序）
+     *
+     * @param weekMask 只考虑这些周次
+     * @param minWeeks 空闲周数少于此值的格子不返回
+     */
+    public List<FreeSlot> findCommonFree(long weekMask, int minWeeks) {
+        List<FreeSlot> free = new ArrayList<>();
+        for (int day = 0; day < Timetable.DAYS.length; day++) {
+            for (int slot = 0; slot < Timetable.TIME_SLOTS.length; slot++) {
+                long weeks = ~busy.weeksAt(day, slot) & weekMask;
+                if (weeks != 0 && WeekMask.count(weeks) >= minWeeks) {
+                    free.add(new FreeSlot(Timetable.DAYS[day], Timetable.TIME_SLOTS[slot], weeks));
+                }
+            }
+        }
+        // 稳定排序，周数相同的保持星期、节次顺序
+        free.sort((a, b) -> Integer.compare(b.getWeekCount(), a.getWeekCount()));
+        return free;
+    }
+
+    /**
+     * 全员在该时间是否都没有课
+     */
+    public boolean isFree(int week, String dayOfWeek, String timeSlot) {
+        int day = Timetable.dayIndex(dayOfWeek);
+        int slot = Timetable.slotIndex(timeSlot);
+        return day >= 0 && slot >= 0 && Timetable.isValidWeek(week) && !busy.test(week, day, slot);
+    }
+
+    /**
+     * 该时间有课的成员ID，用于没有共同空闲时找出冲突的人
+     */
+    public List<Integer> getBusyMembers(int week, String dayOfWeek, String timeSlot) {
+        List<Integer> busyMembers = new ArrayList<>();
+        int day = Timetable.dayIndex(dayOfWeek);
+        int slot = Timetable.slotIndex(timeSlot);
+        if (day < 0 || slot < 0 || !Timetable.isValidWeek(week) || !busy.test(week, day, slot)) {
+            return busyMembers;
+        }
+        for (Map.Entry<Integer, OccupancyMatrix> member : members.entrySet()) {
+            if (member.getValue().test(week, day, slot)) {
+                busyMembers.add(member.getKey());
+            }
+        }
+        return busyMembers;
+    }
+
+    /**
+     * 一个全员空闲的 (星期, 节次) 及其空闲的周次
+     */
+    public static class FreeSlot {
+        private final String dayOfWeek;
+        private final String timeSlot;
+        private final long weekMask;
+
+        FreeSlot(String dayOfWeek, String timeSlot, long weekMask) {
+            this.dayOfWeek = dayOfWeek;
+            this.timeSlot = timeSlot;
+            this.weekMask = weekMask;
+        }
+
+        public String getDayOfWeek() { return dayOfWeek; }
+        public String getTimeSlot() { return timeSlot; }
+        public long getWeekMask() { return weekMask; }
+        public List<Integer> getWeeks() { return WeekMask.weeks(weekMask); }
+        public int getWeekCount() { return WeekMask.count(weekMask); }
+
+        @Override
+        public String toString() {
+            return dayOfWeek + " " + timeSlot + " 第" + WeekMask.format(weekMask) + "周（" + getWeekCount() + " 周）";
+        }
+    }
+}
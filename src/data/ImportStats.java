@@ -0,0 +1,50 @@
+package data;
+
+/**
+ * 批量导入进度快照
+ */
+public class ImportStats {
+    private final long parsed;     // 已解析行数
+    private final long rejected;   // 校验未通过的行数（格式错误、未知用户、文件内冲突等）
+    private final long inserted;   // 成功写入的行数
+    private final long conflicts;  // 与数据库已有课程冲突的行数
+    private final long failed;     // 写入失败的行数
+    private final long elapsedMillis;
+    private final boolean finished;
+
+    public ImportStats(long parsed, long rejected, long inserted, long conflicts, long failed,
+                       long elapsedMillis, boolean finished) {
+        this.parsed = parsed;
+        this.rejected = rejected;
+        this.inserted = inserted;
+        this.conflicts = conflicts;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+        this.finished = finished;
+    }
+
+    public long getParsed() { return parsed; }
+    public long getRejected() { return rejected; }
+    public long getInserted() { return inserted; }
+    public long getConflicts() { return conflicts; }
+    public long getFailed() { return failed; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public boolean isFinished() { return finished; }
+
+    // 已处理完（写入或拒绝）的行数
+    public long getProcessed() {
+        return rejected + inserted + conflicts + failed;
+    }
+
+    // 吞吐量：每秒处理的行数
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? 0 : getProcessed() * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("已解析 %d 行，写入 %d，冲突 %d，拒绝 %d，失败 %d，耗时 %.1fs，%.0f 行/秒%s",
+                parsed, inserted, conflicts, rejected, failed, elapsedMillis / 1000.0, getRowsPerSecond(),
+                finished ? "（完成）" : "");
+    }
+}
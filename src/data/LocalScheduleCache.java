@@ -0,0 +1,324 @@
+package data;
+
+import model.Course;
+import model.User;
+import model.WeekMask;
+import util.PasswordUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 用户课表的本地持久缓存：上次同步到的整学期课表、同步版本号，以及离线期间排队的修改
+ *
+ * 每个用户一个文件，默认位于 ~/.course_manager/，目录可由系统属性 course.cache.dir 指定。
+ * 启动时先用缓存立即显示课表，再在后台增量同步；数据库不可用时账号信息也可用于离线登录。
+ * 文件中不保存数据库里的密码哈希，只保存在线登录成功时生成的离线校验值（PasswordUtil.offlineVerifier，加盐的 PBKDF2）。
+ *
+ * 文件格式：magic(int) + version(int) + 用户（ID、用户名、离线校验值、姓名） + 同步版本号(long) + 课程列表 + 待同步修改列表 + crc32(int)
+ * 版本 1 的文件在校验值位置保存的是数据库密码哈希，读取时丢弃，下次在线登录后才能离线登录。
+ * 整个文件先写临时文件再原子替换，读到损坏或不完整的文件时当作没有缓存。
+ */
+public class LocalScheduleCache {
+    private static final int MAGIC = 0x43534C43; // "CSLC"
+    private static final int VERSION = 2;
+    private static final int VERSION_PASSWORD_HASH = 1; // 保存数据库密码哈希的旧格式
+    private static final String DEFAULT_DIR = ".course_manager";
+    private static final String SUFFIX = ".cache";
+
+    private final Path file;
+    private User user;
+    private String offlineVerifier; // 离线登录校验值，没有时为 null
+    private long syncVersion;
+    private List<Course> courses = new ArrayList<>();
+    private final List<PendingEdit> pending = new ArrayList<>();
+
+    private LocalScheduleCache(Path file, User user) {
+        this.file = file;
+        this.user = user;
+    }
+
+    /**
+     * 打开用户的缓存（文件不存在时为空缓存），账号信息以本次登录为准
+     */
+    public static LocalScheduleCache forUser(User user) {
+        LocalScheduleCache cache = new LocalScheduleCache(fileOf(user.getUsername()), user);
+        cache.read();
+        cache.user = user;
+        return cache;
+    }
+
+    /**
+     * 数据库不可用时离线登录：密码与缓存的离线校验值匹配时返回缓存中的账号（不含密码哈希），否则返回 null
+     */
+    public static User verifyCachedUser(String username, String password) {
+        LocalScheduleCache cache = new LocalScheduleCache(fileOf(username), null);
+        cache.read();
+        if (cache.user == null || !PasswordUtil.matchesOfflineVerifier(password, cache.offlineVerifier)) {
+            return null;
+        }
+        return cache.user;
+    }
+
+    /**
+     * 在线登录或修改密码成功后调用，为下次离线登录保存新的校验值
+     */
+    public synchronized void rememberPassword(String password) {
+        offlineVerifier = PasswordUtil.offlineVerifier(password);
+        write();
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * 缓存的整学期课表，作为一次从版本 0 开始的全量同步结果；没有缓存时返回 null
+     */
+    public synchronized CourseDelta getSchedule() {
+        if (syncVersion == 0 && courses.isEmpty()) {
+            return null;
+        }
+        return new CourseDelta(0, syncVersion, new ArrayList<>(courses), new LinkedHashSet<>());
+    }
+
+    /**
+     * 用课表索引的当前内容覆盖缓存并写入文件
+     */
+    public synchronized void save(ScheduleIndex index) {
+        courses = index.getAllCourses();
+        syncVersion = index.getVersion();
+        write();
+    }
+
+    // ===================== 离线修改队列 =====================
+
+    public synchronized List<PendingEdit> getPending() {
+        return new ArrayList<>(pending);
+    }
+
+    public synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * 追加离线修改并立即写入文件，避免程序退出后丢失
+     */
+    public synchronized void enqueue(List<PendingEdit> edits) {
+        pending.addAll(edits);
+        write();
+    }
+
+    /**
+     * 撤销尚未同步的离线添加：移除临时ID为 courseId、周次在 weekMask 中的排队课程，返回被移除的课程
+     */
+    public synchronized List<Course> cancelAdd(int courseId, long weekMask) {
+        List<Course> cancelled = new ArrayList<>();
+        for (Iterator<PendingEdit> it = pending.iterator(); it.hasNext(); ) {
+            PendingEdit edit = it.next();
+            if (edit.getType() == PendingEdit.Type.ADD && edit.getCourseId() == courseId
+                    && WeekMask.contains(weekMask, edit.getCourse().getWeek())) {
+                cancelled.add(edit.getCourse());
+                it.remove();
+            }
+        }
+        if (!cancelled.isEmpty()) {
+            write();
+        }
+        return cancelled;
+    }
+
+    /**
+     * 移除已重放的前 count 条修改
+     */
+    public synchronized void removePending(int count) {
+        pending.subList(0, Math.min(count, pending.size())).clear();
+        write();
+    }
+
+    /**
+     * 已排队的同一门课（名称、教师、时间、地点相同）的临时ID，没有时返回 0
+     */
+    public synchronized int findQueuedAddId(Course course) {
+        String key = patternKey(course);
+        for (PendingEdit edit : pending) {
+            if (edit.getType() == PendingEdit.Type.ADD && patternKey(edit.getCourse()).equals(key)) {
+                return edit.getCourseId();
+            }
+        }
+        return 0;
+    }
+
+    static String patternKey(Course course) {
+        return course.getName() + "\u0001" + course.getTeacher() + "\u0001" + course.getDayOfWeek()
+                + "\u0001" + course.getTimeSlot() + "\u0001" + course.getLocation();
+    }
+
+    /**
+     * 分配一个离线添加用的临时课程ID（负数，不与数据库ID冲突）
+     */
+    public synchronized int nextTemporaryId() {
+        int min = 0;
+        for (PendingEdit edit : pending) {
+            min = Math.min(min, edit.getCourseId());
+        }
+        for (Course course : courses) {
+            min = Math.min(min, course.getId());
+        }
+        return min - 1;
+    }
+
+    // ===================== 读写文件 =====================
+
+    private void read() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            if (bytes.length < 12) {
+                throw new IOException("文件不完整");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            int stored = ((bytes[bytes.length - 4] & 0xFF) << 24) | ((bytes[bytes.length - 3] & 0xFF) << 16)
+                    | ((bytes[bytes.length - 2] & 0xFF) << 8) | (bytes[bytes.length - 1] & 0xFF);
+            if ((int) crc.getValue() != stored) {
+                throw new IOException("校验失败");
+            }
+
+            DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 4)));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("格式不支持");
+            }
+            int fileVersion = in.readInt();
+            if (fileVersion != VERSION && fileVersion != VERSION_PASSWORD_HASH) {
+                throw new IOException("格式不支持");
+            }
+            User cached = new User();
+            cached.setId(in.readInt());
+            cached.setUsername(readString(in));
+            String verifier = readString(in);
+            cached.setName(readString(in));
+            long version = in.readLong();
+            List<Course> cachedCourses = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                cachedCourses.add(readCourse(in));
+            }
+            List<PendingEdit> cachedPending = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                if (in.readByte() == PendingEdit.Type.ADD.ordinal()) {
+                    cachedPending.add(PendingEdit.add(readCourse(in)));
+                } else {
+                    cachedPending.add(PendingEdit.delete(in.readInt(), in.readLong()));
+                }
+            }
+
+            user = cached;
+            offlineVerifier = fileVersion == VERSION ? verifier : null;
+            syncVersion = version;
+            courses = cachedCourses;
+            pending.addAll(cachedPending);
+            System.out.println("已读取本地课表缓存：" + courses.size() + " 个课时，版本 " + syncVersion
+                    + (pending.isEmpty() ? "" : "，待同步修改 " + pending.size() + " 项"));
+        } catch (IOException e) {
+            System.err.println("本地课表缓存不可用，已忽略: " + file + "（" + e.getMessage() + "）");
+        }
+    }
+
+    private void write() {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(user.getId());
+            writeString(out, user.getUsername());
+            writeString(out, offlineVerifier);
+            writeString(out, user.getName());
+            out.writeLong(syncVersion);
+            out.writeInt(courses.size());
+            for (Course course : courses) {
+                writeCourse(out, course);
+            }
+            out.writeInt(pending.size());
+            for (PendingEdit edit : pending) {
+                out.writeByte(edit.getType().ordinal());
+                if (edit.getType() == PendingEdit.Type.ADD) {
+                    writeCourse(out, edit.getCourse());
+                } else {
+                    out.writeInt(edit.getCourseId());
+                    out.writeLong(edit.getWeekMask());
+                }
+            }
+            out.flush();
+            CRC32 crc = new CRC32();
+            crc.update(buffer.toByteArray());
+            out.writeInt((int) crc.getValue());
+
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, buffer.toByteArray());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入本地课表缓存失败: " + file, e);
+        }
+    }
+
+    private static void writeCourse(DataOutputStream out, Course course) throws IOException {
+        out.writeInt(course.getId());
+        out.writeInt(course.getWeek());
+        out.writeLong(course.getVersion());
+        writeString(out, course.getName());
+        writeString(out, course.getTeacher());
+        writeString(out, course.getDayOfWeek());
+        writeString(out, course.getTimeSlot());
+        writeString(out, course.getLocation());
+    }
+
+    private static Course readCourse(DataInputStream in) throws IOException {
+        Course course = new Course();
+        course.setId(in.readInt());
+        course.setWeek(in.readInt());
+        course.setVersion(in.readLong());
+        course.setName(readString(in));
+        course.setTeacher(readString(in));
+        course.setDayOfWeek(readString(in));
+        course.setTimeSlot(readString(in));
+        course.setLocation(readString(in));
+        return course;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static Path fileOf(String username) {
+        String dir = System.getProperty("course.cache.dir",
+                Paths.get(System.getProperty("user.home"), DEFAULT_DIR).toString());
+        // 用户名编码后作为文件名，避免特殊字符
+        return Paths.get(dir, URLEncoder.encode(username, StandardCharsets.UTF_8) + SUFFIX);
+    }
+}
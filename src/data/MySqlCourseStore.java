@@ -0,0 +1,677 @@
+package data;
+
+import model.Course;
+import model.OccupancyMatrix;
+import model.Timetable;
+import model.WeekMask;
+import model.WeekSlot;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 基于 MySQL 的课程存储实现，每个操作从用户所在分片的连接池借出一个连接（见 ShardRouter）
+ *
+ * 表 course_patterns 中一行表示一门课的上课规律：(名称, 教师, 星期, 节次, 地点) + 上课周次位掩码 week_mask，
+ * 第 n 周对应第 n-1 位。读取时按需展开为每周一个 Course 对象，Course.id 为所属规律行的 id。
+ *
+ * 增量同步：每个写事务先把 users.course_version 加一作为本次的版本号，并写入所改动规律行的 version 列。
+ * 该计数器按用户加行锁，同一用户的写事务按版本号顺序提交，任何一次读取看到的版本号都是连续的前缀。
+ * 周次被全部删除的规律行不再物理删除，而是保留 week_mask = 0 作为墓碑，供同步时告知客户端；
+ * 墓碑只保留最近 CourseDelta.TOMBSTONE_RETENTION 个版本，删除时顺带清理更早的，落后更多的客户端改为全量同步。
+ */
+public class MySqlCourseStore implements CourseStore {
+    private static final int AVAILABILITY_TIMEOUT_SECONDS = 2;
+    private static final int OCCUPANCY_BATCH = 1000; // 批量读取占用位图时每条 IN 查询的用户数
+    private static final String PATTERN_COLUMNS = "id, name, teacher, day_of_week, time_slot, location, week_mask, version";
+
+    @Override
+    public List<Course> findByUser(int userId) {
+        List<Course> courses = new ArrayList<>();
+        String sql = "SELECT " + PATTERN_COLUMNS + " FROM course_patterns WHERE user_id = ?";
+        try (Connection conn = DatabaseConnection.getReadConnectionForUser(userId);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                for (int week : WeekMask.weeks(rs.getLong("week_mask"))) {
+                    courses.add(readCourse(rs, week));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return courses;
+    }
+
+    /**
+     * 根据用户ID和教学周获取课程列表：一次位运算筛选出该周上课的规律行，只展开这一周
+     */
+    @Override
+    public List<Course> findByWeek(int userId, int week) {
+        List<Course> courses = new ArrayList<>();
+        if (week < 1 || week > WeekMask.MAX_WEEK) {
+            return courses;
+        }
+        String sql = "SELECT " + PATTERN_COLUMNS + " FROM course_patterns WHERE user_id = ? AND (week_mask & ?) <> 0";
+        try (Connection conn = DatabaseConnection.getReadConnectionForUser(userId);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setLong(2, WeekMask.of(week));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                courses.add(readCourse(rs, week));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return courses;
+    }
+
+    @Override
+    public boolean insert(Course course, int userId) {
+        System.out.println("执行SQL插入: user_id=" + userId + ", name=" + course.getName() +
+                         ", day=" + course.getDayOfWeek() + ", time=" + course.getTimeSlot() +
+                         ", week=" + course.getWeek());
+        boolean success = insertAll(Collections.singletonList(course), userId).get(0) == AddResult.SUCCESS;
+        System.out.println("插入结果: " + (success ? "成功" : "失败"));
+        return success;
+    }
+
+    /**
+     * 批量添加课程：一个事务内完成
+     * 同一门课（名称、教师、星期、节次、地点都相同）的多个周次合并为一行，已存在的规律行只更新位掩码；
+     * 返回结果与 courses 一一对应；已被占用的 (周次, 星期, 节次) 标记为 CONFLICT，其余行照常提交
+     */
+    @Override
+    public List<AddResult> insertAll(List<Course> courses, int userId) {
+        List<AddResult> results = new ArrayList<>(Collections.nCopies(courses.size(), AddResult.FAILED));
+        if (courses.isEmpty()) {
+            return results;
+        }
+
+        try (Connection conn = DatabaseConnection.getConnectionForUser(userId)) {
+            conn.setAutoCommit(false);
+            try {
+                long version = nextVersion(conn, userId);
+                // 1. 锁定并读取用户现有的全部规律行：既用于冲突检查，也用于合并同一门课
+                Map<String, long[]> existing = new HashMap<>(); // 课程键 -> {id, week_mask}
+                Map<String, Long> occupied = new HashMap<>();   // "星期|节次" -> 已占用周次掩码
+                String selectSql = "SELECT " + PATTERN_COLUMNS + " FROM course_patterns WHERE user_id = ? FOR UPDATE";
+                try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                    stmt.setInt(1, userId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            long mask = rs.getLong("week_mask");
+                            existing.put(patternKey(rs.getString("name"), rs.getString("teacher"), rs.getString("day_of_week"),
+                                    rs.getString("time_slot"), rs.getString("location")), new long[]{rs.getInt("id"), mask});
+                            occupied.merge(cellKey(rs.getString("day_of_week"), rs.getString("time_slot")), mask, (a, b) -> a | b);
+                        }
+                    }
+                }
+
+                // 2. 逐行检查冲突，并按课程键分组合并周次
+                Map<String, PatternGroup> groups = new LinkedHashMap<>();
+                for (int i = 0; i < courses.size(); i++) {
+                    Course course = courses.get(i);
+                    if (course.getWeek() < 1 || course.getWeek() > WeekMask.MAX_WEEK) {
+                        continue; // 周次超出范围，保持 FAILED
+                    }
+                    long bit = WeekMask.of(course.getWeek());
+                    String cell = cellKey(course.getDayOfWeek(), course.getTimeSlot());
+                    long taken = occupied.getOrDefault(cell, 0L);
+                    if ((taken & bit) != 0) {
+                        results.set(i, AddResult.CONFLICT);
+                        continue;
+                    }
+                    occupied.put(cell, taken | bit);
+                    String key = patternKey(course.getName(), course.getTeacher(), course.getDayOfWeek(),
+                            course.getTimeSlot(), course.getLocation());
+                    PatternGroup group = groups.computeIfAbsent(key, k -> new PatternGroup(course, existing.get(k)));
+                    group.mask |= bit;
+                    group.rows.add(i);
+                }
+
+                if (groups.isEmpty()) {
+                    conn.rollback(); // 全部冲突或周次无效，没有写入，不占用版本号
+                    return results;
+                }
+
+                // 3. 新课程批量 INSERT，已有课程批量 UPDATE 位掩码
+                String insertSql = "INSERT INTO course_patterns (user_id, name, teacher, day_of_week, time_slot, location, week_mask, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+                String updateSql = "UPDATE course_patterns SET week_mask = week_mask | ?, version = ? WHERE id = ?";
+                List<PatternGroup> inserted = new ArrayList<>();
+                try (PreparedStatement insertStmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
+                     PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
+                    for (PatternGroup group : groups.values()) {
+                        if (group.id > 0) {
+                            updateStmt.setLong(1, group.mask);
+                            updateStmt.setLong(2, version);
+                            updateStmt.setInt(3, group.id);
+                            updateStmt.addBatch();
+                        } else {
+                            Course course = group.template;
+                            insertStmt.setInt(1, userId);
+                            insertStmt.setString(2, course.getName());
+                            insertStmt.setString(3, course.getTeacher());
+                            insertStmt.setString(4, course.getDayOfWeek());
+                            insertStmt.setString(5, course.getTimeSlot());
+                            insertStmt.setString(6, course.getLocation());
+                            insertStmt.setLong(7, group.mask);
+                            insertStmt.setLong(8, version);
+                            insertStmt.addBatch();
+                            inserted.add(group);
+                        }
+                    }
+                    if (!inserted.isEmpty()) {
+                        insertStmt.executeBatch();
+                        try (ResultSet keys = insertStmt.getGeneratedKeys()) {
+                            for (PatternGroup group : inserted) {
+                                if (keys.next()) {
+                                    group.id = keys.getInt(1);
+                                }
+                            }
+                        }
+                    }
+                    if (inserted.size() < groups.size()) {
+                        updateStmt.executeBatch();
+                    }
+                }
+                conn.commit();
+
+                // 4. 回填结果与 id（同一规律行展开出的课程共享 id）
+                for (PatternGroup group : groups.values()) {
+                    for (int row : group.rows) {
+                        courses.get(row).setId(group.id);
+                        courses.get(row).setVersion(version);
+                        results.set(row, AddResult.SUCCESS);
+                    }
+                }
+                System.out.println("批量插入 " + courses.size() + " 个课时，合并为 " + groups.size() + " 条规律行（新增 "
+                        + inserted.size() + " 条），结果: " + results);
+            } catch (SQLException e) {
+                conn.rollback();
+                Collections.fill(results, AddResult.FAILED);
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("批量添加课程失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return results;
+    }
+
+    /**
+     * 一次查询找出用户在指定星期、节次集合、周次集合中已被占用的所有 (周次, 节次)
+     * 周次集合先合并为位掩码，由数据库做按位与筛选
+     */
+    @Override
+    public List<WeekSlot> findConflicts(int userId, String dayOfWeek, Set<String> timeSlots, Set<Integer> weeks) {
+        List<WeekSlot> conflicts = new ArrayList<>();
+        if (timeSlots.isEmpty() || weeks.isEmpty()) {
+            return conflicts;
+        }
+        long queryMask = WeekMask.of(weeks);
+        String sql = "SELECT time_slot, week_mask FROM course_patterns WHERE user_id = ? AND day_of_week = ?"
+                + " AND time_slot IN (" + placeholders(timeSlots.size()) + ") AND (week_mask & ?) <> 0";
+        try (Connection conn = DatabaseConnection.getReadConnectionForUser(userId);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            stmt.setInt(index++, userId);
+            stmt.setString(index++, dayOfWeek);
+            for (String timeSlot : timeSlots) {
+                stmt.setString(index++, timeSlot);
+            }
+            stmt.setLong(index, queryMask);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String timeSlot = rs.getString("time_slot");
+                    for (int week : WeekMask.weeks(rs.getLong("week_mask") & queryMask)) {
+                        conflicts.add(new WeekSlot(week, timeSlot));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        conflicts.sort(Comparator.comparingInt(WeekSlot::getWeek)
+                .thenComparingInt(c -> Timetable.slotIndex(c.getTimeSlot())));
+        return conflicts;
+    }
+
+    /**
+     * 删除某一周的课程：清除规律行中对应的位，掩码变为 0 的规律行保留为墓碑
+     */
+    /**
+     * 逐个分片（只读副本）按 (地点, 星期, 节次)、(教师, 星期, 节次) 索引查询，只展开与 weekMask 相交的周次
+     */
+    @Override
+    public List<Course> findBookings(String location, String teacher, String dayOfWeek, Set<String> timeSlots,
+                                     long weekMask, int excludeUserId) {
+        List<Course> bookings = new ArrayList<>();
+        Map<String, String> lookups = new LinkedHashMap<>(); // 列名 -> 要查找的值
+        if (location != null && !location.trim().isEmpty()) {
+            lookups.put("location", location.trim());
+        }
+        if (teacher != null && !teacher.trim().isEmpty()) {
+            lookups.put("teacher", teacher.trim());
+        }
+        if (lookups.isEmpty() || timeSlots.isEmpty() || weekMask == 0) {
+            return bookings;
+        }
+        ShardRouter router = ShardRouter.get();
+        for (int shard = 0; shard < router.getShardCount(); shard++) {
+            Set<Integer> seen = new HashSet<>(); // 地点、教师都相同的规律行只计一次
+            try (Connection conn = router.getShard(shard).replica()) {
+                for (Map.Entry<String, String> lookup : lookups.entrySet()) {
+                    String sql = "SELECT " + PATTERN_COLUMNS + " FROM course_patterns WHERE " + lookup.getKey() + " = ?"
+                            + " AND day_of_week = ? AND time_slot IN (" + placeholders(timeSlots.size()) + ")"
+                            + " AND (week_mask & ?) <> 0 AND user_id <> ?";
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        int index = 1;
+                        stmt.setString(index++, lookup.getValue());
+                        stmt.setString(index++, dayOfWeek);
+                        for (String timeSlot : timeSlots) {
+                            stmt.setString(index++, timeSlot);
+                        }
+                        stmt.setLong(index++, weekMask);
+                        stmt.setInt(index, excludeUserId);
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            while (rs.next()) {
+                                if (seen.add(rs.getInt("id"))) {
+                                    for (int week : WeekMask.weeks(rs.getLong("week_mask") & weekMask)) {
+                                        bookings.add(readCourse(rs, week));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                throw new StoreException("查询分片 " + shard + " 的教室、教师占用失败", e);
+            }
+        }
+        return bookings;
+    }
+
+    @Override
+    public boolean delete(int userId, String name, String dayOfWeek, String timeSlot, int week) {
+        if (week < 1 || week > WeekMask.MAX_WEEK) {
+            return false;
+        }
+        String sql = "UPDATE course_patterns SET week_mask = week_mask & ~?, version = ? WHERE user_id = ? AND name = ? AND day_of_week = ? AND time_slot = ? AND (week_mask & ?) <> 0";
+        try (Connection conn = DatabaseConnection.getConnectionForUser(userId)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                long version = nextVersion(conn, userId);
+                // 添加调试信息
+                System.out.println("执行删除SQL: " + sql);
+                System.out.println("参数: user_id=" + userId + ", name='" + name + "', day_of_week='" + dayOfWeek + "', time_slot='" + timeSlot + "', week=" + week);
+
+                long bit = WeekMask.of(week);
+                stmt.setLong(1, bit);
+                stmt.setLong(2, version);
+                stmt.setInt(3, userId);
+                stmt.setString(4, name);
+                stmt.setString(5, dayOfWeek);
+                stmt.setString(6, timeSlot);
+                stmt.setLong(7, bit);
+
+                int affectedRows = stmt.executeUpdate();
+                System.out.println("删除操作影响的行数: " + affectedRows);
+                if (affectedRows == 0) {
+                    conn.rollback(); // 没有匹配的课程，不占用版本号
+                    return false;
+                }
+                purgeTombstones(conn, userId, version);
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.out.println("删除课程时发生SQL异常: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 按主键删除整条规律行（即该课程的所有周次），一条 UPDATE 把掩码清零，规律行保留为墓碑
+     */
+    @Override
+    public List<Course> deleteByIds(int userId, Collection<Integer> courseIds) {
+        List<Course> removed = new ArrayList<>();
+        if (courseIds.isEmpty()) {
+            return removed;
+        }
+        String in = placeholders(courseIds.size());
+        String selectSql = "SELECT " + PATTERN_COLUMNS + " FROM course_patterns WHERE user_id = ? AND id IN (" + in + ") FOR UPDATE";
+        String deleteSql = "UPDATE course_patterns SET week_mask = 0, version = ? WHERE user_id = ? AND id IN (" + in + ") AND week_mask <> 0";
+        try (Connection conn = DatabaseConnection.getConnectionForUser(userId)) {
+            conn.setAutoCommit(false);
+            try {
+                long version = nextVersion(conn, userId);
+                try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                    bindUserAndIds(stmt, 1, userId, courseIds);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            for (int week : WeekMask.weeks(rs.getLong("week_mask"))) {
+                                removed.add(readCourse(rs, week));
+                            }
+                        }
+                    }
+                }
+                if (removed.isEmpty()) {
+                    conn.rollback(); // 课程不存在或已删除，不占用版本号
+                    return removed;
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
+                    stmt.setLong(1, version);
+                    bindUserAndIds(stmt, 2, userId, courseIds);
+                    stmt.executeUpdate();
+                }
+                purgeTombstones(conn, userId, version);
+                conn.commit();
+                return removed;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.out.println("批量删除课程时发生SQL异常: " + e.getMessage());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 把规律行中 weekMask 对应的位一次清除，掩码变为 0 时规律行保留为墓碑
+     */
+    @Override
+    public List<Course> deleteFromWeeks(int userId, int courseId, long weekMask) {
+        List<Course> removed = new ArrayList<>();
+        String selectSql = "SELECT " + PATTERN_COLUMNS + " FROM course_patterns WHERE id = ? AND user_id = ? FOR UPDATE";
+        String updateSql = "UPDATE course_patterns SET week_mask = week_mask & ~?, version = ? WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getConnectionForUser(userId)) {
+            conn.setAutoCommit(false);
+            try {
+                // 与 insertAll、deleteByIds 相同，先锁 users 行再锁规律行，否则同一用户并发增删会死锁
+                long version = nextVersion(conn, userId);
+                try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                    stmt.setInt(1, courseId);
+                    stmt.setInt(2, userId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            for (int week : WeekMask.weeks(rs.getLong("week_mask") & weekMask)) {
+                                removed.add(readCourse(rs, week));
+                            }
+                        }
+                    }
+                }
+                if (removed.isEmpty()) {
+                    conn.rollback(); // 没有要删除的周次，不占用版本号
+                    return removed;
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+                    stmt.setLong(1, weekMask);
+                    stmt.setLong(2, version);
+                    stmt.setInt(3, courseId);
+                    stmt.executeUpdate();
+                }
+                purgeTombstones(conn, userId, version);
+                conn.commit();
+                return removed;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.out.println("按周次删除课程时发生SQL异常: " + e.getMessage());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 增量同步：版本号大于 sinceVersion 的规律行，展开为每周课程；掩码为 0 的规律行作为已删除的课程ID返回
+     * sinceVersion 为 0 时返回全部课程，不含墓碑；sinceVersion 落后超过墓碑保留范围时同样返回全部课程（CourseDelta.resync）
+     * 版本号与规律行在同一个只读事务中读取（一致性快照），读取期间的墓碑清理不会造成遗漏
+     */
+    @Override
+    public CourseDelta changesSince(int userId, long sinceVersion) {
+        List<Course> courses = new ArrayList<>();
+        Set<Integer> deletedIds = new LinkedHashSet<>();
+        long maxVersion = 0;
+        boolean resync = false;
+        long currentVersion = 0;
+        try (Connection conn = DatabaseConnection.getReadConnectionForUser(userId)) {
+            conn.setAutoCommit(false);
+            if (sinceVersion > 0) {
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT course_version FROM users WHERE id = ?")) {
+                    stmt.setInt(1, userId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        currentVersion = rs.next() ? rs.getLong(1) : 0;
+                    }
+                }
+                resync = CourseDelta.needsResync(sinceVersion, currentVersion);
+            }
+            String sql = sinceVersion > 0 && !resync
+                    ? "SELECT " + PATTERN_COLUMNS + " FROM course_patterns WHERE user_id = ? AND version > ?"
+                    : "SELECT " + PATTERN_COLUMNS + " FROM course_patterns WHERE user_id = ? AND week_mask <> 0";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, userId);
+                if (sinceVersion > 0 && !resync) {
+                    stmt.setLong(2, sinceVersion);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        long mask = rs.getLong("week_mask");
+                        if (mask == 0) {
+                            deletedIds.add(rs.getInt("id"));
+                        }
+                        for (int week : WeekMask.weeks(mask)) {
+                            courses.add(readCourse(rs, week));
+                        }
+                        maxVersion = Math.max(maxVersion, rs.getLong("version"));
+                    }
+                }
+            }
+            conn.commit(); // 只读事务，结束快照
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return CourseDelta.of(sinceVersion, new ArrayList<>(), new LinkedHashSet<>(), 0); // 版本号不前进，下次重试
+        }
+        if (resync) {
+            System.out.println("用户 " + userId + " 的同步版本 " + sinceVersion + " 已超出墓碑保留范围，返回全量课表");
+            return CourseDelta.resync(sinceVersion, courses, currentVersion);
+        }
+        return CourseDelta.of(sinceVersion, courses, deletedIds, maxVersion);
+    }
+
+    /**
+     * 逐个分片流式读取全部规律行（只读副本），边读边展开回调，不在内存中缓存结果集
+     */
+    @Override
+    public void forEachCourse(ObjIntConsumer<Course> action) {
+        String sql = "SELECT user_id, " + PATTERN_COLUMNS + " FROM course_patterns WHERE week_mask <> 0";
+        ShardRouter router = ShardRouter.get();
+        for (int shard = 0; shard < router.getShardCount(); shard++) {
+            try (Connection conn = router.getShard(shard).replica();
+                 PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(Integer.MIN_VALUE); // MySQL 驱动的流式结果集
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int userId = rs.getInt("user_id");
+                        for (int week : WeekMask.weeks(rs.getLong("week_mask"))) {
+                            action.accept(readCourse(rs, week), userId);
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                // 缺一个分片的全局索引会把教室报为空闲、漏掉撞课，不能当作完整结果
+                throw new StoreException("遍历分片 " + shard + " 的课程失败", e);
+            }
+        }
+    }
+
+    /**
+     * 批量读取占用位图：用户按分片分组，每个分片每 OCCUPANCY_BATCH 个用户一条 IN 查询（读从库），
+     * 规律行的 week_mask 直接按位或进对应格子，不展开成每周的 Course
+     * 任一分片读取失败时抛出 StoreException：缺少的成员会被当作全部空闲，不能返回部分结果
+     */
+    @Override
+    public Map<Integer, OccupancyMatrix> loadOccupancy(Collection<Integer> userIds) {
+        Map<Integer, OccupancyMatrix> occupancy = new LinkedHashMap<>();
+        ShardRouter router = ShardRouter.get();
+        Map<Integer, List<Integer>> usersByShard = new HashMap<>();
+        for (int userId : userIds) {
+            if (occupancy.putIfAbsent(userId, new OccupancyMatrix()) == null) {
+                usersByShard.computeIfAbsent(router.shardOfUser(userId), s -> new ArrayList<>()).add(userId);
+            }
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : usersByShard.entrySet()) {
+            List<Integer> users = entry.getValue();
+            try (Connection conn = router.getShard(entry.getKey()).replica()) {
+                for (int from = 0; from < users.size(); from += OCCUPANCY_BATCH) {
+                    List<Integer> batch = users.subList(from, Math.min(from + OCCUPANCY_BATCH, users.size()));
+                    String sql = "SELECT user_id, day_of_week, time_slot, week_mask FROM course_patterns WHERE user_id IN ("
+                            + placeholders(batch.size()) + ") AND week_mask <> 0";
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        for (int i = 0; i < batch.size(); i++) {
+                            stmt.setInt(i + 1, batch.get(i));
+                        }
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            while (rs.next()) {
+                                int day = Timetable.dayIndex(rs.getString("day_of_week"));
+                                int slot = Timetable.slotIndex(rs.getString("time_slot"));
+                                if (day >= 0 && slot >= 0) {
+                                    occupancy.get(rs.getInt("user_id")).setWeeks(day, slot, rs.getLong("week_mask"));
+                                }
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                throw new StoreException("读取分片 " + entry.getKey() + " 的占用位图失败", e);
+            }
+        }
+        return occupancy;
+    }
+
+    @Override
+    public boolean isAvailable(int userId) {
+        try (Connection conn = DatabaseConnection.getConnectionForUser(userId)) {
+            return conn.isValid(AVAILABILITY_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 用户的课程变更版本号加一并返回，同时锁住该用户行直到事务结束，使同一用户的写事务按版本号顺序提交
+     * 调用方在事务内没有实际改动时应回滚，不占用版本号
+     * 用户行不存在时抛出 StoreException：此时 LAST_INSERT_ID() 仍是这条池化连接上次留下的值，不能当作版本号
+     */
+    private static long nextVersion(Connection conn, int userId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE users SET course_version = LAST_INSERT_ID(course_version + 1) WHERE id = ?")) {
+            stmt.setInt(1, userId);
+            if (stmt.executeUpdate() == 0) {
+                throw new StoreException("用户不存在，无法分配课程版本号: " + userId);
+            }
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * 清理该用户早于保留范围的墓碑（在写事务内、已持有用户行锁时调用），走 (user_id, version) 索引
+     * 落后更多的客户端同步时改为全量替换（CourseDelta.needsResync），不依赖这些墓碑
+     */
+    private static void purgeTombstones(Connection conn, int userId, long version) throws SQLException {
+        if (version <= CourseDelta.TOMBSTONE_RETENTION) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "DELETE FROM course_patterns WHERE user_id = ? AND version <= ? AND week_mask = 0")) {
+            stmt.setInt(1, userId);
+            stmt.setLong(2, version - CourseDelta.TOMBSTONE_RETENTION);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void bindUserAndIds(PreparedStatement stmt, int index, int userId, Collection<Integer> courseIds) throws SQLException {
+        stmt.setInt(index++, userId);
+        for (int courseId : courseIds) {
+            stmt.setInt(index++, courseId);
+        }
+    }
+
+    /**
+     * 把规律行展开为指定周次的 Course 对象
+     */
+    private static Course readCourse(ResultSet rs, int week) throws SQLException {
+        Course course = new Course(
+                rs.getString("name"),
+                rs.getString("teacher"),
+                rs.getString("day_of_week"),
+                rs.getString("time_slot"),
+                rs.getString("location")
+        );
+        course.setId(rs.getInt("id"));
+        course.setWeek(week);
+        course.setVersion(rs.getLong("version"));
+        return course;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    private static String cellKey(String dayOfWeek, String timeSlot) {
+        return dayOfWeek + "|" + timeSlot;
+    }
+
+    private static String patternKey(String name, String teacher, String dayOfWeek, String timeSlot, String location) {
+        return name + "\u0001" + teacher + "\u0001" + dayOfWeek + "\u0001" + timeSlot + "\u0001" + location;
+    }
+
+    /**
+     * 批量插入时同一门课的一组周次
+     */
+    private static class PatternGroup {
+        final Course template;
+        final List<Integer> rows = new ArrayList<>();
+        int id;     // 已存在的规律行 id，新课程插入后回填
+        long mask;  // 本次新增的周次
+
+        PatternGroup(Course template, long[] existing) {
+            this.template = template;
+            this.id = existing == null ? 0 : (int) existing[0];
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package data;
+
+import model.User;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 MySQL 的用户存储实现，按用户名或用户ID路由到所在分片（见 ShardRouter）
+ */
+public class MySqlUserStore implements UserStore {
+    private static final int AVAILABILITY_TIMEOUT_SECONDS = 2;
+
+    @Override
+    public User findByUsername(String username) {
+        // 使用username字段，与实际数据库表结构匹配
+        String sql = "SELECT * FROM users WHERE username = ?";
+        try (Connection conn = DatabaseConnection.getReadConnectionForUsername(username);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                User user = new User();
+                user.setId(rs.getInt("id"));
+                user.setUsername(rs.getString("username")); // 使用username字段
+                user.setPassword(rs.getString("password"));
+                user.setName(rs.getString("name"));
+                return user;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * 按分片分组，每个分片的只读副本一次 IN 查询
+     */
+    @Override
+    public Map<String, Integer> findIdsByUsernames(Collection<String> usernames) {
+        ShardRouter router = ShardRouter.get();
+        Map<Integer, List<String>> byShard = new HashMap<>();
+        for (String username : usernames) {
+            byShard.computeIfAbsent(router.shardOfUsername(username), shard -> new ArrayList<>()).add(username);
+        }
+        Map<String, Integer> ids = new HashMap<>();
+        for (Map.Entry<Integer, List<String>> entry : byShard.entrySet()) {
+            List<String> names = entry.getValue();
+            StringBuilder sql = new StringBuilder("SELECT id, username FROM users WHERE username IN (");
+            for (int i = 0; i < names.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(")");
+            try (Connection conn = router.getShard(entry.getKey()).replica();
+                 PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < names.size(); i++) {
+                    stmt.setString(i + 1, names.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.put(rs.getString("username"), rs.getInt("id"));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new StoreException("批量查找用户失败，分片 " + entry.getKey() + " 不可用", e);
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public boolean insert(User user) {
+        String sql = "INSERT INTO users (username, password, name) VALUES (?, ?, ?)";
+        try (Connection conn = DatabaseConnection.getConnectionForUsername(user.getUsername());
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, user.getUsername());
+            stmt.setString(2, user.getPassword());
+            stmt.setString(3, user.getName());
+            if (stmt.executeUpdate() > 0) {
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        user.setId(keys.getInt(1));
+                    }
+                }
+                return true;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    @Override
+    public String findPasswordHash(int userId) {
+        String sql = "SELECT password FROM users WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getConnectionForUser(userId);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return rs.getString("password");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean updatePasswordHash(int userId, String passwordHash) {
+        String sql = "UPDATE users SET password = ? WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getConnectionForUser(userId);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, passwordHash);
+            stmt.setInt(2, userId);
+            return stmt.executeUpdate() > 0;//executeUpdate回返回一个整数值，通过比较受影响的行数是否大于 0，判断更新操作是否成功。
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isAvailable(String username) {
+        try (Connection conn = DatabaseConnection.getConnectionForUsername(username)) {
+            return conn.isValid(AVAILABILITY_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
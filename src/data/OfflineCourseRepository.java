@@ -0,0 +1,243 @@
+package data;
+
+import model.Course;
+import model.User;
+import model.WeekMask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 支持离线编辑的课程仓库（桌面客户端使用）
+ *
+ * 写操作失败且数据库不可访问时转入离线模式：修改先写入本地课表索引并发布变更事件（界面照常刷新），
+ * 同时追加到 LocalScheduleCache 的待同步队列。之后的 sync 在数据库恢复时按顺序重放队列，
+ * 再做一次全量同步，把离线添加课程的临时ID换成数据库生成的ID。
+ * 重放时与数据库中已有课程冲突的离线添加会被丢弃并记录日志。
+ */
+public class OfflineCourseRepository extends CachedCourseRepository {
+    private final LocalScheduleCache cache;
+    private volatile boolean offline;
+
+    public OfflineCourseRepository(LocalScheduleCache cache) {
+        this(cache, Stores.courseStore());
+    }
+
+    public OfflineCourseRepository(LocalScheduleCache cache, CourseStore store) {
+        super(store, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+        this.cache = cache;
+        // 上次退出时仍有未同步的修改，先按离线处理，下次同步时重放
+        this.offline = cache.hasPending();
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    public int getPendingCount() {
+        return cache.getPending().size();
+    }
+
+    @Override
+    public boolean addCourse(Course course, User user) {
+        return addCourses(new ArrayList<>(Collections.singletonList(course)), user).get(0) == AddResult.SUCCESS;
+    }
+
+    @Override
+    public List<AddResult> addCourses(List<Course> courses, User user) {
+        if (!offline) {
+            List<AddResult> results = super.addCourses(courses, user);
+            if (!allFailed(results) || isAvailable(user.getId())) {
+                return results;
+            }
+            goOffline();
+        }
+        return queueAdds(courses, user);
+    }
+
+    @Override
+    public List<Course> removeCourseFromWeeks(int courseId, long weekMask, User user) {
+        if (courseId < 0) {
+            return cancelQueuedAdd(courseId, weekMask, user);
+        }
+        if (!offline) {
+            List<Course> removed = super.removeCourseFromWeeks(courseId, weekMask, user);
+            if (!removed.isEmpty() || isAvailable(user.getId())) {
+                return removed;
+            }
+            goOffline();
+        }
+        return queueDelete(courseId, weekMask, user);
+    }
+
+    @Override
+    public List<Course> removeCourses(Collection<Integer> courseIds, User user) {
+        if (!offline && courseIds.stream().allMatch(id -> id > 0)) {
+            List<Course> removed = super.removeCourses(courseIds, user);
+            if (!removed.isEmpty() || isAvailable(user.getId())) {
+                return removed;
+            }
+            goOffline();
+        }
+        List<Course> removed = new ArrayList<>();
+        for (int courseId : courseIds) {
+            removed.addAll(removeCourseFromWeeks(courseId, WeekMask.ALL, user));
+        }
+        return removed;
+    }
+
+    /**
+     * 在线时同普通增量同步；离线时先检查数据库是否恢复，恢复后重放队列并返回全量结果，
+     * 仍不可用时返回空结果（版本号不变）
+     */
+    @Override
+    public CourseDelta sync(int userId, long sinceVersion) {
+        if (!offline && !cache.hasPending()) {
+            return super.sync(userId, sinceVersion);
+        }
+        if (!isAvailable(userId)) {
+            return new CourseDelta(sinceVersion, sinceVersion, new ArrayList<>(), new LinkedHashSet<>());
+        }
+        if (!replayPending(cache.getUser())) {
+            return new CourseDelta(sinceVersion, sinceVersion, new ArrayList<>(), new LinkedHashSet<>());
+        }
+        offline = false;
+        System.out.println("数据库已恢复，离线修改同步完成");
+        return super.sync(userId, 0);
+    }
+
+    // ===================== 离线队列 =====================
+
+    private void goOffline() {
+        if (!offline) {
+            offline = true;
+            System.err.println("数据库不可用，转入离线模式，修改将在恢复后同步");
+        }
+    }
+
+    private List<AddResult> queueAdds(List<Course> courses, User user) {
+        ScheduleIndex index = ScheduleIndex.forUser(user.getId());
+        List<AddResult> results = new ArrayList<>(courses.size());
+        List<PendingEdit> edits = new ArrayList<>();
+        // 与数据库合并规律行一致：同名、同教师、同时间、同地点的各周共用一个临时ID，
+        // 已排队的同一门课沿用原来的临时ID，"删除所有周" 才能一次撤销全部周次
+        Map<String, Integer> temporaryIds = new HashMap<>();
+        int nextTemporaryId = cache.nextTemporaryId();
+        for (Course course : courses) {
+            // 离线时只能按本地课表检查冲突，重放时数据库会再检查一次
+            if (index == null || index.isOccupied(course.getWeek(), course.getDayOfWeek(), course.getTimeSlot())) {
+                results.add(index == null ? AddResult.FAILED : AddResult.CONFLICT);
+                continue;
+            }
+            String key = LocalScheduleCache.patternKey(course);
+            Integer temporaryId = temporaryIds.get(key);
+            if (temporaryId == null) {
+                temporaryId = cache.findQueuedAddId(course);
+                if (temporaryId == 0) {
+                    temporaryId = nextTemporaryId--;
+                }
+                temporaryIds.put(key, temporaryId);
+            }
+            course.setId(temporaryId);
+            index.put(course);
+            edits.add(PendingEdit.add(course));
+            results.add(AddResult.SUCCESS);
+        }
+        if (!edits.isEmpty()) {
+            cache.enqueue(edits);
+            for (PendingEdit edit : edits) {
+                publish(new CourseChangeEvent(CourseChangeEvent.Type.ADDED, user.getId(), edit.getCourse()));
+            }
+        }
+        return results;
+    }
+
+    private List<Course> queueDelete(int courseId, long weekMask, User user) {
+        ScheduleIndex index = ScheduleIndex.forUser(user.getId());
+        List<Course> removed = index == null ? new ArrayList<>() : index.getCourses(courseId, weekMask);
+        if (removed.isEmpty()) {
+            return removed;
+        }
+        cache.enqueue(Collections.singletonList(PendingEdit.delete(courseId, weekMask)));
+        removeFromIndex(index, user.getId(), removed);
+        return removed;
+    }
+
+    private List<Course> cancelQueuedAdd(int courseId, long weekMask, User user) {
+        List<Course> removed = cache.cancelAdd(courseId, weekMask);
+        removeFromIndex(ScheduleIndex.forUser(user.getId()), user.getId(), removed);
+        return removed;
+    }
+
+    private static void removeFromIndex(ScheduleIndex index, int userId, List<Course> removed) {
+        for (Course course : removed) {
+            if (index != null) {
+                index.remove(course.getName(), course.getDayOfWeek(), course.getTimeSlot(), course.getWeek());
+            }
+            publish(new CourseChangeEvent(CourseChangeEvent.Type.REMOVED, userId, course));
+        }
+    }
+
+    /**
+     * 按顺序重放待同步队列，连续的添加合并为一次批量写入；每重放一段就从队列中移除
+     * 中途数据库再次不可用时停止，返回 false，剩余的修改留到下次
+     */
+    private boolean replayPending(User user) {
+        List<PendingEdit> edits = cache.getPending();
+        System.out.println("重放离线修改 " + edits.size() + " 项...");
+        int done = 0;
+        int committed = 0;
+        while (done < edits.size()) {
+            PendingEdit first = edits.get(done);
+            if (first.getType() == PendingEdit.Type.DELETE) {
+                List<Course> removed = super.removeCourseFromWeeks(first.getCourseId(), first.getWeekMask(), user);
+                if (removed.isEmpty() && !isAvailable(user.getId())) {
+                    return false;
+                }
+                done++;
+            } else {
+                int end = done;
+                List<Course> batch = new ArrayList<>();
+                while (end < edits.size() && edits.get(end).getType() == PendingEdit.Type.ADD) {
+                    Course course = copyWithoutId(edits.get(end).getCourse());
+                    batch.add(course);
+                    end++;
+                }
+                List<AddResult> results = super.addCourses(batch, user);
+                if (allFailed(results) && !isAvailable(user.getId())) {
+                    return false;
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    if (results.get(i) != AddResult.SUCCESS) {
+                        System.err.println("离线修改未能同步（" + results.get(i) + "），已丢弃：" + edits.get(done + i));
+                    }
+                }
+                done = end;
+            }
+            cache.removePending(done - committed);
+            committed = done;
+        }
+        return true;
+    }
+
+    private static Course copyWithoutId(Course source) {
+        Course course = new Course(source.getName(), source.getTeacher(), source.getDayOfWeek(),
+                source.getTimeSlot(), source.getLocation());
+        course.setWeek(source.getWeek());
+        return course;
+    }
+
+    private static boolean allFailed(List<AddResult> results) {
+        for (AddResult result : results) {
+            if (result != AddResult.FAILED) {
+                return false;
+            }
+        }
+        return !results.isEmpty();
+    }
+}
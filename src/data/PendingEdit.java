@@ -0,0 +1,43 @@
+package data;
+
+import model.Course;
+
+/**
+ * 离线期间排队的一次课程修改，数据库恢复后按顺序重放
+ * ADD 的课程使用负数临时ID（同一门课的各周共用一个），重放成功后由全量同步换成数据库生成的ID
+ */
+public class PendingEdit {
+    public enum Type { ADD, DELETE }
+
+    private final Type type;
+    private final Course course;   // ADD：要添加的某一周课程
+    private final int courseId;    // DELETE：课程ID
+    private final long weekMask;   // DELETE：要删除的周次
+
+    private PendingEdit(Type type, Course course, int courseId, long weekMask) {
+        this.type = type;
+        this.course = course;
+        this.courseId = courseId;
+        this.weekMask = weekMask;
+    }
+
+    public static PendingEdit add(Course course) {
+        return new PendingEdit(Type.ADD, course, course.getId(), 0);
+    }
+
+    public static PendingEdit delete(int courseId, long weekMask) {
+        return new PendingEdit(Type.DELETE, null, courseId, weekMask);
+    }
+
+    public Type getType() { return type; }
+    public Course getCourse() { return course; }
+    public int getCourseId() { return courseId; }
+    public long getWeekMask() { return weekMask; }
+
+    @Override
+    public String toString() {
+        return type == Type.ADD
+                ? "添加 " + course.getName() + " 第" + course.getWeek() + "周 " + course.getDayOfWeek() + " " + course.getTimeSlot()
+                : "删除课程 " + courseId + " 周次掩码 " + Long.toHexString(weekMask);
+    }
+}
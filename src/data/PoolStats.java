@@ -0,0 +1,61 @@
+package data;
+
+/**
+ * 连接池运行时统计快照
+ */
+public class PoolStats {
+    private final int active;          // 借出中的连接数
+    private final int idle;            // 空闲连接数
+    private final int maxSize;         // 最大连接数
+    private final int waiting;         // 正在等待连接的线程数
+    private final long borrowCount;    // 累计借出次数
+    private final long totalWaitNanos; // 累计等待时间
+    private final long maxWaitNanos;   // 最长一次等待时间
+    private final long created;        // 累计创建的物理连接数
+    private final long evicted;        // 累计回收的连接数（空闲超时或校验失败）
+    private final long timeouts;       // 借出超时次数
+    private final long leaks;          // 检测到的疑似泄漏次数
+
+    public PoolStats(int active, int idle, int maxSize, int waiting, long borrowCount,
+                     long totalWaitNanos, long maxWaitNanos, long created, long evicted,
+                     long timeouts, long leaks) {
+        this.active = active;
+        this.idle = idle;
+        this.maxSize = maxSize;
+        this.waiting = waiting;
+        this.borrowCount = borrowCount;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.created = created;
+        this.evicted = evicted;
+        this.timeouts = timeouts;
+        this.leaks = leaks;
+    }
+
+    public int getActive() { return active; }
+    public int getIdle() { return idle; }
+    public int getMaxSize() { return maxSize; }
+    public int getWaiting() { return waiting; }
+    public long getBorrowCount() { return borrowCount; }
+    public long getCreated() { return created; }
+    public long getEvicted() { return evicted; }
+    public long getTimeouts() { return timeouts; }
+    public long getLeaks() { return leaks; }
+
+    // 平均等待时间（毫秒）
+    public double getAverageWaitMillis() {
+        return borrowCount == 0 ? 0 : totalWaitNanos / 1_000_000.0 / borrowCount;
+    }
+
+    // 最长等待时间（毫秒）
+    public double getMaxWaitMillis() {
+        return maxWaitNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PoolStats{active=%d, idle=%d, max=%d, waiting=%d, borrows=%d, avgWait=%.3fms, maxWait=%.3fms, created=%d, evicted=%d, timeouts=%d, leaks=%d}",
+                active, idle, maxSize, waiting, borrowCount, getAverageWaitMillis(), getMaxWaitMillis(),
+                created, evicted, timeouts, leaks);
+    }
+}
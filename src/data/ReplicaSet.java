@@ -0,0 +1,58 @@
+package data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个主库加若干只读副本，每个库一个连接池
+ * 写操作走主库；读操作在副本间轮询，副本不可用时依次尝试下一个，全部失败则回退到主库。
+ */
+public class ReplicaSet {
+    private final ConnectionPool primary;
+    private final List<ConnectionPool> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaSet(ConnectionPool primary, List<ConnectionPool> replicas) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+    }
+
+    public Connection primary() throws SQLException {
+        return primary.borrow();
+    }
+
+    /**
+     * 借出一个只读连接：副本轮询，没有副本或副本都不可用时使用主库
+     */
+    public Connection replica() throws SQLException {
+        int count = replicas.size();
+        if (count == 0) {
+            return primary.borrow();
+        }
+        int start = Math.floorMod(next.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            int index = (start + i) % count;
+            try {
+                return replicas.get(index).borrow();
+            } catch (SQLException e) {
+                System.err.println("只读副本 " + index + " 不可用，尝试下一个: " + e.getMessage());
+            }
+        }
+        return primary.borrow();
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    public PoolStats getPrimaryStats() {
+        return primary.getStats();
+    }
+
+    public PoolStats getReplicaStats(int index) {
+        return replicas.get(index).getStats();
+    }
+}
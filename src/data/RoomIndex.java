@@ -0,0 +1,269 @@
+package data;
+
+import model.Course;
+import model.OccupancyMatrix;
+import model.Timetable;
+import model.WeekMask;
+import model.WeekSlot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 全校教室占用索引：(地点, 周次, 星期, 节次) -> 预订了该教室的用户
+ *
+ * 启动时遍历一次所有用户的课程建立索引，之后订阅 CourseRepository 的变更事件增量维护，
+ * 查询"某教室是否空闲""某个时间段的所有空闲教室"都只读内存位图，不访问数据库。
+ * 变更事件只来自本进程内的写操作，因此只在服务端模式下建立：经过服务端 API 的预订立即可见，
+ * 桌面客户端直接写数据库的预订要等服务端定期全量重建（rebuild）后才会出现在索引中。
+ * 桌面客户端不建立该索引，否则每个客户端登录时都要全表扫描所有分片；桌面端添加课程时的撞教室提醒
+ * 改为按地点、时间直接查询数据库（CourseStore.findBookings）。
+ *
+ * 每个教室一张 OccupancyMatrix 用于快速判断空闲；预订按用户记录，同一用户重复添加、删除是幂等的，
+ * 多个用户预订同一格子（撞教室）时第一个以外的用户记在 clashes 中。
+ */
+public class RoomIndex {
+    private static volatile RoomIndex instance;
+
+    private final Map<String, Integer> roomIds = new HashMap<>();
+    private final List<String> rooms = new ArrayList<>();
+    private final List<OccupancyMatrix> occupancy = new ArrayList<>();
+    private final Map<Long, Integer> owners = new HashMap<>();       // 格子 -> 第一个预订的用户
+    private final Map<Long, Set<Integer>> clashes = new HashMap<>(); // 格子 -> 其他预订的用户
+    private final CourseChangeListener listener = this::onCourseChanged;
+
+    private RoomIndex() {}
+
+    /**
+     * 建立索引并订阅变更事件，已建立时直接返回（首次调用会遍历全部课程）
+     * 遍历失败时抛出 StoreException，索引保持未建立，下次调用重试
+     */
+    public static synchronized RoomIndex load() {
+        if (instance == null) {
+            instance = build(Stores.courseStore());
+        }
+        return instance;
+    }
+
+    /**
+     * 已建立的索引，尚未建立时返回 null（调用方此时跳过教室检查）
+     */
+    public static RoomIndex current() {
+        return instance;
+    }
+
+    /**
+     * 重新遍历全部课程，替换当前索引；遍历失败时抛出 StoreException 并保留原索引
+     */
+    public static RoomIndex rebuild() {
+        // 在类锁外建立新索引，建立期间 current() 仍返回旧索引，只在替换时短暂加锁
+        RoomIndex rebuilt = build(Stores.courseStore());
+        RoomIndex old;
+        synchronized (RoomIndex.class) {
+            old = instance;
+            instance = rebuilt;
+        }
+        if (old != null) {
+            CourseRepository.removeChangeListener(old.listener);
+        }
+        return rebuilt;
+    }
+
+    private static RoomIndex build(CourseStore store) {
+        long start = System.currentTimeMillis();
+        RoomIndex index = new RoomIndex();
+        // 先订阅再遍历，遍历期间的新增不会丢失（重复添加是幂等的）
+        CourseRepository.addChangeListener(index.listener);
+        int[] count = {0};
+        try {
+            store.forEachCourse((course, userId) -> {
+                index.book(course, userId);
+                count[0]++;
+            });
+        } catch (RuntimeException e) {
+            CourseRepository.removeChangeListener(index.listener);
+            throw e;
+        }
+        System.out.println("已建立教室占用索引：" + index.getRoomCount() + " 个教室，" + count[0] + " 个课时，耗时 "
+                + (System.currentTimeMillis() - start) + " ms");
+        return index;
+    }
+
+    // ===================== 查询 =====================
+
+    /**
+     * 教室在该时间段是否没有任何预订（未出现过的地点视为空闲）
+     */
+    public synchronized boolean isFree(String location, int week, String dayOfWeek, String timeSlot) {
+        Integer room = roomIds.get(normalize(location));
+        int day = Timetable.dayIndex(dayOfWeek);
+        int slot = Timetable.slotIndex(timeSlot);
+        return room == null || day < 0 || slot < 0 || !Timetable.isValidWeek(week)
+                || !occupancy.get(room).test(week, day, slot);
+    }
+
+    /**
+     * 该时间段所有空闲的教室，按地点排序
+     */
+    public synchronized List<String> findFreeRooms(int week, String dayOfWeek, String timeSlot) {
+        List<String> free = new ArrayList<>();
+        int day = Timetable.dayIndex(dayOfWeek);
+        int slot = Timetable.slotIndex(timeSlot);
+        if (day < 0 || slot < 0 || !Timetable.isValidWeek(week)) {
+            return free;
+        }
+        for (int room = 0; room < rooms.size(); room++) {
+            if (!occupancy.get(room).test(week, day, slot)) {
+                free.add(rooms.get(room));
+            }
+        }
+        free.sort(null);
+        return free;
+    }
+
+    /**
+     * 检查 userId 要在这些周次、节次使用该教室时，是否已被其他用户预订
+     * 返回被占用的 (周次, 节次)，按周次、节次排序
+     */
+    public synchronized List<WeekSlot> findClashes(String location, String dayOfWeek, Collection<String> timeSlots,
+                                                   Collection<Integer> weeks, int userId) {
+        List<WeekSlot> found = new ArrayList<>();
+        Integer room = roomIds.get(normalize(location));
+        int day = Timetable.dayIndex(dayOfWeek);
+        if (room == null || day < 0) {
+            return found;
+        }
+        OccupancyMatrix matrix = occupancy.get(room);
+        long weekMask = WeekMask.of(weeks);
+        for (int week : WeekMask.weeks(weekMask)) {
+            for (String timeSlot : Timetable.TIME_SLOTS) {
+                int slot = Timetable.slotIndex(timeSlot);
+                if (timeSlots.contains(timeSlot) && matrix.test(week, day, slot)
+                        && bookedByOthers(key(room, week, day, slot), userId)) {
+                    found.add(new WeekSlot(week, timeSlot));
+                }
+            }
+        }
+        return found;
+    }
+
+    public synchronized int getRoomCount() {
+        return rooms.size();
+    }
+
+    // ===================== 维护 =====================
+
+    private void onCourseChanged(CourseChangeEvent event) {
+        switch (event.getType()) {
+            case ADDED:
+                book(event.getCourse(), event.getUserId());
+                break;
+            case REMOVED:
+                release(event.getCourse(), event.getUserId());
+                break;
+            case UPDATED:
+                release(event.getPrevious(), event.getUserId());
+                book(event.getCourse(), event.getUserId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private synchronized void book(Course course, int userId) {
+        String location = normalize(course.getLocation());
+        int day = Timetable.dayIndex(course.getDayOfWeek());
+        int slot = Timetable.slotIndex(course.getTimeSlot());
+        if (location.isEmpty() || day < 0 || slot < 0 || !Timetable.isValidWeek(course.getWeek())) {
+            return;
+        }
+        Integer room = roomIds.get(location);
+        if (room == null) {
+            room = rooms.size();
+            roomIds.put(location, room);
+            rooms.add(location);
+            occupancy.add(new OccupancyMatrix());
+        }
+        long key = key(room, course.getWeek(), day, slot);
+        Integer owner = owners.putIfAbsent(key, userId);
+        if (owner == null) {
+            occupancy.get(room).set(course.getWeek(), day, slot);
+        } else if (owner != userId) {
+            clashes.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(userId);
+        }
+    }
+
+    private synchronized void release(Course course, int userId) {
+        int day = Timetable.dayIndex(course.getDayOfWeek());
+        int slot = Timetable.slotIndex(course.getTimeSlot());
+        if (day < 0 || slot < 0 || !Timetable.isValidWeek(course.getWeek())) {
+            return;
+        }
+        String location = normalize(course.getLocation());
+        if (!location.isEmpty()) {
+            Integer room = roomIds.get(location);
+            if (room != null) {
+                release(room, course.getWeek(), day, slot, userId);
+            }
+            return;
+        }
+        // 按名称删除时事件里没有地点：找出该用户在这个格子预订的教室
+        for (int room = 0; room < rooms.size(); room++) {
+            if (occupancy.get(room).test(course.getWeek(), day, slot)
+                    && release(room, course.getWeek(), day, slot, userId)) {
+                return;
+            }
+        }
+    }
+
+    private boolean release(int room, int week, int day, int slot, int userId) {
+        long key = key(room, week, day, slot);
+        Set<Integer> others = clashes.get(key);
+        if (others != null && others.remove(userId)) {
+            if (others.isEmpty()) {
+                clashes.remove(key);
+            }
+            return true;
+        }
+        Integer owner = owners.get(key);
+        if (owner == null || owner != userId) {
+            return false;
+        }
+        if (others != null) {
+            // 其他用户仍在使用，把其中一个提为第一个预订者
+            Integer next = others.iterator().next();
+            others.remove(next);
+            if (others.isEmpty()) {
+                clashes.remove(key);
+            }
+            owners.put(key, next);
+        } else {
+            owners.remove(key);
+            occupancy.get(room).clear(week, day, slot);
+        }
+        return true;
+    }
+
+    private boolean bookedByOthers(long key, int userId) {
+        Integer owner = owners.get(key);
+        if (owner != null && owner != userId) {
+            return true;
+        }
+        Set<Integer> others = clashes.get(key);
+        return others != null && !others.isEmpty();
+    }
+
+    // 教室编号、周次（6 位）、格子（6 位）拼成一个 long
+    private static long key(int room, int week, int day, int slot) {
+        return ((long) room << 12) | ((long) week << 6) | (day * Timetable.TIME_SLOTS.length + slot);
+    }
+
+    private static String normalize(String location) {
+        return location == null ? "" : location.trim();
+    }
+}
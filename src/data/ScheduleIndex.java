@@ -0,0 +1,302 @@
+package data;
+
+import model.Course;
+import model.OccupancyMatrix;
+import model.Timetable;
+import model.User;
+import model.WeekMask;
+import model.WeekSlot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 登录用户的整学期课表内存索引
+ * 登录时用一次查询加载所有周次，之后按 (周次, 星期, 节次) 以 O(1) 查找；
+ * CourseRepository 的添加、删除操作会同步更新已加载的索引；
+ * 其他客户端的修改通过 refresh 增量同步，只传输上次同步之后变更的课程，合并后按格子发布变更事件。
+ * 同时维护课程名、教师、地点的检索索引（CourseSearchIndex），写入格子时一并更新。
+ */
+public class ScheduleIndex {
+    // 已加载的索引，按用户ID登记
+    private static final Map<Integer, ScheduleIndex> LOADED = new ConcurrentHashMap<>();
+
+    private final int userId;
+    // cells[week][day * 5 + slot]，week 从 1 开始
+    private final Course[][] cells = new Course[Timetable.MAX_WEEK + 1][Timetable.CELLS_PER_WEEK];
+    // 占用位图，与 cells 同步维护，用于冲突检查等批量位运算
+    private final OccupancyMatrix occupancy = new OccupancyMatrix();
+    // 检索索引，与 cells 同步维护
+    private final CourseSearchIndex searchIndex = new CourseSearchIndex();
+    // 已合并到的变更版本号
+    private long version;
+
+    private ScheduleIndex(int userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * 用一次查询加载用户整学期的课程并登记索引（即从版本 0 开始的全量同步）
+     */
+    public static ScheduleIndex load(User user, CourseRepository repository) {
+        ScheduleIndex index = new ScheduleIndex(user.getId());
+        CourseDelta delta = repository.sync(user.getId(), 0);
+        index.apply(delta);
+        LOADED.put(user.getId(), index);
+        System.out.println("已加载用户 " + user.getId() + " 的整学期课表索引，共 " + delta.getCourses().size()
+                + " 条，版本 " + delta.getVersion());
+        return index;
+    }
+
+    /**
+     * 用本地缓存的课表登记索引，不访问数据库；cached 为 null 时登记空索引（版本 0，下次同步即全量加载）
+     */
+    public static ScheduleIndex restore(User user, CourseDelta cached) {
+        ScheduleIndex index = new ScheduleIndex(user.getId());
+        if (cached != null) {
+            index.apply(cached);
+        }
+        LOADED.put(user.getId(), index);
+        return index;
+    }
+
+    /**
+     * 获取已加载的索引，未加载返回 null
+     */
+    public static ScheduleIndex forUser(int userId) {
+        return LOADED.get(userId);
+    }
+
+    /**
+     * 注销用户的索引（退出登录时调用）
+     */
+    public static void unload(int userId) {
+        LOADED.remove(userId);
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * 拉取上次同步之后的变更并合并，返回本次的变更（无变更时为空）
+     * 合并后对内容实际改变的格子发布 ADDED / REMOVED / UPDATED 事件（本客户端自己的写入已在索引中，不会重复发布）
+     */
+    public CourseDelta refresh(CourseRepository repository) {
+        CourseDelta delta = repository.sync(userId, getVersion());
+        if (!delta.isEmpty()) {
+            System.out.println("同步用户 " + userId + " 的课表：" + delta);
+        }
+        List<CourseChangeEvent> events = new ArrayList<>();
+        apply(delta, events);
+        // 在索引锁外通知，监听器可以回读索引
+        for (CourseChangeEvent event : events) {
+            CourseRepository.publish(event);
+        }
+        return delta;
+    }
+
+    /**
+     * 合并一次同步结果：变更的课程ID先从索引中整体移除，再写入服务端的当前课程
+     * 与索引版本衔接不上（更旧的结果或中间缺了一段）的结果被忽略，返回 false
+     */
+    public synchronized boolean apply(CourseDelta delta) {
+        return apply(delta, null);
+    }
+
+    /**
+     * 合并同步结果；events 不为 null 时把合并前后内容不同的格子记为变更事件
+     */
+    private synchronized boolean apply(CourseDelta delta, List<CourseChangeEvent> events) {
+        if (delta.getSinceVersion() > version || delta.getVersion() < version) {
+            return false;
+        }
+        Course[][] before = null;
+        if (events != null) {
+            before = new Course[cells.length][];
+            for (int week = 1; week <= Timetable.MAX_WEEK; week++) {
+                before[week] = cells[week].clone();
+            }
+        }
+        Set<Integer> changed = delta.getChangedIds();
+        for (int week = 1; week <= Timetable.MAX_WEEK; week++) {
+            Course[] weekCells = cells[week];
+            for (int cell = 0; cell < weekCells.length; cell++) {
+                if (weekCells[cell] != null && (delta.isFull() || changed.contains(weekCells[cell].getId()))) {
+                    weekCells[cell] = null;
+                    searchIndex.remove(week, cell);
+                    occupancy.clear(week, cell / Timetable.TIME_SLOTS.length, cell % Timetable.TIME_SLOTS.length);
+                }
+            }
+        }
+        for (Course course : delta.getCourses()) {
+            put(course);
+        }
+        version = delta.getVersion();
+        if (events != null) {
+            for (int week = 1; week <= Timetable.MAX_WEEK; week++) {
+                for (int cell = 0; cell < cells[week].length; cell++) {
+                    Course old = before[week][cell];
+                    Course now = cells[week][cell];
+                    if (old == null && now != null) {
+                        events.add(new CourseChangeEvent(CourseChangeEvent.Type.ADDED, userId, now));
+                    } else if (old != null && now == null) {
+                        events.add(new CourseChangeEvent(CourseChangeEvent.Type.REMOVED, userId, old));
+                    } else if (old != null && !sameContent(old, now)) {
+                        events.add(new CourseChangeEvent(CourseChangeEvent.Type.UPDATED, userId, now, old));
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // 同一格子中的两门课是否相同（周次、星期、节次由格子决定）
+    private static boolean sameContent(Course a, Course b) {
+        return a.getId() == b.getId() && Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getTeacher(), b.getTeacher()) && Objects.equals(a.getLocation(), b.getLocation());
+    }
+
+    /**
+     * 查找指定格子的课程，无课返回 null
+     */
+    public synchronized Course get(int week, String dayOfWeek, String timeSlot) {
+        int cell = cellIndex(dayOfWeek, timeSlot);
+        if (cell < 0 || !Timetable.isValidWeek(week)) {
+            return null;
+        }
+        return cells[week][cell];
+    }
+
+    public boolean isOccupied(int week, String dayOfWeek, String timeSlot) {
+        return get(week, dayOfWeek, timeSlot) != null;
+    }
+
+    /**
+     * 获取某一周的所有课程（按星期、节次顺序）
+     */
+    public synchronized List<Course> getCoursesByWeek(int week) {
+        List<Course> courses = new ArrayList<>();
+        if (!Timetable.isValidWeek(week)) {
+            return courses;
+        }
+        for (Course course : cells[week]) {
+            if (course != null) {
+                courses.add(course);
+            }
+        }
+        return courses;
+    }
+
+    /**
+     * 获取整学期的所有课程（按周次、星期、节次顺序）
+     */
+    public synchronized List<Course> getAllCourses() {
+        List<Course> courses = new ArrayList<>();
+        for (int week = 1; week <= Timetable.MAX_WEEK; week++) {
+            for (Course course : cells[week]) {
+                if (course != null) {
+                    courses.add(course);
+                }
+            }
+        }
+        return courses;
+    }
+
+    /**
+     * 获取某个课程ID在 weekMask 周次中的所有每周课程
+     */
+    public synchronized List<Course> getCourses(int courseId, long weekMask) {
+        List<Course> courses = new ArrayList<>();
+        for (int week = 1; week <= Timetable.MAX_WEEK; week++) {
+            if (!WeekMask.contains(weekMask, week)) {
+                continue;
+            }
+            for (Course course : cells[week]) {
+                if (course != null && course.getId() == courseId) {
+                    courses.add(course);
+                }
+            }
+        }
+        return courses;
+    }
+
+    /**
+     * 在内存中检查冲突，语义与 CourseRepository.findConflicts 相同
+     * 节次、周次分别合并为位掩码后在占用位图上做按位与
+     */
+    public synchronized List<WeekSlot> findConflicts(String dayOfWeek, Set<String> timeSlots, Set<Integer> weeks) {
+        int day = Timetable.dayIndex(dayOfWeek);
+        if (day < 0) {
+            return new ArrayList<>();
+        }
+        return occupancy.conflicts(day, Timetable.slotMask(timeSlots), WeekMask.of(weeks));
+    }
+
+    /**
+     * 按课程名、教师或地点查找整学期的课程（子串匹配），见 CourseSearchIndex.search
+     */
+    public synchronized List<Course> search(String query) {
+        return searchIndex.search(query);
+    }
+
+    /**
+     * 按字段、前缀/子串和周次、星期过滤查找课程，参数含义见 CourseSearchIndex.search
+     */
+    public synchronized List<Course> search(String query, int fields, boolean prefix, long weekMask, int dayMask) {
+        return searchIndex.search(query, fields, prefix, weekMask, dayMask);
+    }
+
+    /**
+     * 获取占用位图的副本
+     */
+    public synchronized OccupancyMatrix getOccupancy() {
+        return occupancy.copy();
+    }
+
+    /**
+     * 写入一门课程，星期、节次或周次无法识别时忽略
+     */
+    public synchronized void put(Course course) {
+        int cell = cellIndex(course.getDayOfWeek(), course.getTimeSlot());
+        if (cell < 0 || !Timetable.isValidWeek(course.getWeek())) {
+            return;
+        }
+        cells[course.getWeek()][cell] = course;
+        searchIndex.put(course.getWeek(), cell, course);
+        occupancy.set(course.getWeek(), course.getDayOfWeek(), course.getTimeSlot());
+    }
+
+    /**
+     * 移除指定格子中名称匹配的课程
+     */
+    public synchronized void remove(String name, String dayOfWeek, String timeSlot, int week) {
+        int cell = cellIndex(dayOfWeek, timeSlot);
+        if (cell < 0 || !Timetable.isValidWeek(week)) {
+            return;
+        }
+        Course existing = cells[week][cell];
+        if (existing != null && existing.getName().equals(name)) {
+            cells[week][cell] = null;
+            searchIndex.remove(week, cell);
+            occupancy.clear(week, dayOfWeek, timeSlot);
+        }
+    }
+
+    private static int cellIndex(String dayOfWeek, String timeSlot) {
+        int day = Timetable.dayIndex(dayOfWeek);
+        int slot = Timetable.slotIndex(timeSlot);
+        if (day < 0 || slot < 0) {
+            return -1;
+        }
+        return day * Timetable.TIME_SLOTS.length + slot;
+    }
+}
@@ -0,0 +1,501 @@
+package data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 按用户分片：把每个用户路由到 N 个数据库中的一个，每个分片一个连接池
+ *
+ * 配置文件 shards.properties（可用 -Dcourse.shards 指定路径）：
+ *   shard.count=2
+ *   shard.0.url=jdbc:mysql://db0:3306/course_manager?...
+ *   shard.0.user=root
+ *   shard.0.password=...
+ *   shard.0.replicas=2                          可选：只读副本数量
+ *   shard.0.replica.0.url=jdbc:mysql://db0-r0:3306/course_manager?...
+ *   shard.0.replica.0.user / password           缺省与主库相同
+ * 没有配置文件时只有一个分片，即 DatabaseConnection 中的默认数据库，行为与未分片时相同。
+ *
+ * 读写分离：写操作（connectionForUser / connectionForUsername）走分片主库，并记下该用户的写入时间；
+ * 读操作（readConnectionFor...）在副本间轮询，但用户写入后 READ_YOUR_WRITES_MS 内仍走主库，
+ * 避免副本复制延迟导致刚添加、删除的课程看不到。
+ *
+ * 路由规则：
+ *   用户名 -> 分片：CRC32(用户名) % N，注册和登录时使用
+ *   用户ID -> 分片：各分片的连接设置 auto_increment_increment = 64、auto_increment_offset = 分片号 + 1，
+ *                  分片生成的用户ID满足 (id - 1) % 64 == 分片号，无需查表即可定位
+ *   被 util.ShardTool 迁移过的用户记录在分片 0 的 shard_overrides 表中，优先于上述规则
+ *   正在迁移的用户也记录在该表中，connectionForUser 拒绝这些用户的写入（抛出 SQLException），
+ *   桌面端据此转为离线并把修改留在本地队列，迁移完成后重放，不会写入即将删除的源分片
+ *
+ * 用户ID不按哈希路由：ID 由数据库在插入时生成，插入前已按用户名哈希选定了分片，对 ID 再取哈希得到的分片
+ * 一般与之不同，每个用户都要查表。让分片按自增偏移生成 ID，ID 本身就编码了所在分片，路由只需一次取模；
+ * 各分片生成的 ID 互不重叠，ShardTool 迁移用户时可以原样保留 ID。
+ * 启用分片之前注册的用户 ID 是连续的，不满足上述规则：首次配置分片后、启动任何进程之前须执行
+ * ShardTool adopt，为这些用户写入迁移记录（指向原数据库所在的分片 0），并把各分片的自增起点调到已有 ID 之上。
+ *
+ * 迁移记录在所有进程（服务端、各台桌面客户端、ShardTool）之间共享：每个路由器缓存整张表，
+ * 路由时若距上次检查超过 DIRECTORY_REFRESH_MS，先查一次表的行数和最大版本号，有变化才重新读取。
+ * 因此任何进程最多在 DIRECTORY_REFRESH_MS 之后看到新的迁移记录，ShardTool 据此等待后才删除源分片的数据。
+ */
+public class ShardRouter {
+    public static final int MAX_SHARDS = 64;
+
+    private static final String CONFIG_PATH = System.getProperty("course.shards", "shards.properties");
+    // 旧版本的本地迁移记录文件，仅供 importOverridesFile 导入
+    private static final String OVERRIDES_PATH = System.getProperty("course.shards.overrides", "shard-overrides.properties");
+    public static final long DIRECTORY_REFRESH_MS = Long.getLong("course.shards.refreshMs", 5_000);
+    private static final int DIRECTORY_SHARD = 0;          // 迁移记录表所在的分片
+    private static final int ER_NO_SUCH_TABLE = 1146;      // 尚未迁移过任何用户时表不存在
+    public static final String CREATE_DIRECTORY_TABLE = "CREATE TABLE IF NOT EXISTS shard_overrides ("
+            + " kind CHAR(1) NOT NULL,"             // u：用户ID，n：用户名，m：正在迁移的用户ID
+            + " user_key VARCHAR(50) NOT NULL,"
+            + " shard INT NOT NULL,"
+            + " version BIGINT NOT NULL,"
+            + " PRIMARY KEY (kind, user_key))";
+
+    private static volatile ShardRouter instance;
+
+    private final List<ReplicaSet> shards;
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>(); // "u:用户ID" / "n:用户名" -> 最近写入时间
+    // 迁移记录的缓存，刷新时整体替换
+    private volatile Map<Integer, Integer> userOverrides = new HashMap<>();  // 用户ID -> 分片
+    private volatile Map<String, Integer> nameOverrides = new HashMap<>();   // 用户名 -> 分片
+    private volatile Set<Integer> movingUsers = new HashSet<>();           // 正在迁移、禁止写入的用户ID
+    private volatile String directoryStamp = "";                            // 上次读取时表的 "行数:最大版本号"
+    private final AtomicLong nextRefresh = new AtomicLong();
+    private boolean refreshFailing; // 只在刷新失败状态变化时打印日志
+
+    private ShardRouter(List<ReplicaSet> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * 全局路由器，首次使用时读取配置
+     */
+    public static ShardRouter get() {
+        if (instance == null) {
+            synchronized (ShardRouter.class) {
+                if (instance == null) {
+                    instance = load(Paths.get(CONFIG_PATH));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static ShardRouter load(Path configFile) {
+        List<ReplicaSet> shards = new ArrayList<>();
+        if (!Files.exists(configFile)) {
+            shards.add(DatabaseConnection.defaultReplicaSet());
+            return new ShardRouter(shards);
+        }
+
+        Properties config = readProperties(configFile);
+        int count = Integer.parseInt(config.getProperty("shard.count", "1").trim());
+        if (count < 1 || count > MAX_SHARDS) {
+            throw new IllegalArgumentException("shard.count 应在 1-" + MAX_SHARDS + " 之间: " + count);
+        }
+        for (int shard = 0; shard < count; shard++) {
+            String url = config.getProperty("shard." + shard + ".url");
+            if (url == null) {
+                throw new IllegalArgumentException("缺少分片配置 shard." + shard + ".url");
+            }
+            String user = config.getProperty("shard." + shard + ".user", "root");
+            String password = config.getProperty("shard." + shard + ".password", "");
+            ConnectionPool primary = DatabaseConnection.createPool(url.trim(), user, password);
+            // 分片内生成的ID满足 (id - 1) % MAX_SHARDS == 分片号
+            primary.setInitSql("SET SESSION auto_increment_increment = " + MAX_SHARDS
+                    + ", auto_increment_offset = " + (shard + 1));
+
+            List<ConnectionPool> replicas = new ArrayList<>();
+            int replicaCount = Integer.parseInt(config.getProperty("shard." + shard + ".replicas", "0").trim());
+            for (int r = 0; r < replicaCount; r++) {
+                String prefix = "shard." + shard + ".replica." + r + ".";
+                String replicaUrl = config.getProperty(prefix + "url");
+                if (replicaUrl == null) {
+                    throw new IllegalArgumentException("缺少副本配置 " + prefix + "url");
+                }
+                replicas.add(DatabaseConnection.createPool(replicaUrl.trim(),
+                        config.getProperty(prefix + "user", user), config.getProperty(prefix + "password", password)));
+            }
+            shards.add(new ReplicaSet(primary, replicas));
+        }
+
+        ShardRouter router = new ShardRouter(shards);
+        router.refreshOverrides();
+        System.out.println("已加载 " + count + " 个数据库分片，迁移记录 " + router.userOverrides.size() + " 条");
+        return router;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * 用户名默认所在的分片（不考虑迁移记录）
+     */
+    public static int hashShard(String username, int shardCount) {
+        CRC32 crc = new CRC32();
+        crc.update(username.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    /**
+     * 用户ID按生成规则所在的分片（不考虑迁移记录）
+     */
+    public static int homeShard(int userId, int shardCount) {
+        int home = Math.floorMod(userId - 1, MAX_SHARDS);
+        return home < shardCount ? home : home % shardCount;
+    }
+
+    public int shardOfUser(int userId) {
+        refreshOverrides();
+        Integer shard = userOverrides.get(userId);
+        return shard != null ? shard : homeShard(userId, shards.size());
+    }
+
+    public int shardOfUsername(String username) {
+        refreshOverrides();
+        Integer shard = nameOverrides.get(username);
+        return shard != null ? shard : hashShard(username, shards.size());
+    }
+
+    /**
+     * 分片主库的连接
+     */
+    public Connection getConnection(int shard) throws SQLException {
+        return shards.get(shard).primary();
+    }
+
+    public Connection connectionForUser(int userId) throws SQLException {
+        if (isMoving(userId)) {
+            throw new SQLException("用户正在迁移分片，暂时不能修改: " + userId);
+        }
+        markWritten("u:" + userId);
+        return getConnection(shardOfUser(userId));
+    }
+
+    public Connection connectionForUsername(String username) throws SQLException {
+        markWritten("n:" + username);
+        return getConnection(shardOfUsername(username));
+    }
+
+    public Connection readConnectionForUser(int userId) throws SQLException {
+        ReplicaSet shard = shards.get(shardOfUser(userId));
+        return recentlyWritten("u:" + userId) ? shard.primary() : shard.replica();
+    }
+
+    public Connection readConnectionForUsername(String username) throws SQLException {
+        ReplicaSet shard = shards.get(shardOfUsername(username));
+        return recentlyWritten("n:" + username) ? shard.primary() : shard.replica();
+    }
+
+    public ReplicaSet getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    public PoolStats getStats(int shard) {
+        return shards.get(shard).getPrimaryStats();
+    }
+
+    private void markWritten(String key) {
+        long now = System.currentTimeMillis();
+        recentWrites.put(key, now);
+        if (recentWrites.size() > 10_000) {
+            // 清理已过期的记录，避免用户多时无限增长
+            Iterator<Long> it = recentWrites.values().iterator();
+            while (it.hasNext()) {
+                if (now - it.next() > DatabaseConnection.READ_YOUR_WRITES_MS) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private boolean recentlyWritten(String key) {
+        Long writtenAt = recentWrites.get(key);
+        if (writtenAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - writtenAt > DatabaseConnection.READ_YOUR_WRITES_MS) {
+            recentWrites.remove(key, writtenAt);
+            return false;
+        }
+        return true;
+    }
+
+    // ===================== 迁移记录 =====================
+
+    /**
+     * 距上次检查超过 DIRECTORY_REFRESH_MS 时检查迁移记录表是否变化，有变化则重新读取
+     * 同一时刻只有一个线程执行检查，其他线程继续使用当前缓存；读取失败时保留上次的记录
+     */
+    private void refreshOverrides() {
+        if (shards.size() == 1) {
+            return; // 只有一个分片时无需迁移记录
+        }
+        long now = System.currentTimeMillis();
+        long due = nextRefresh.get();
+        if (now < due || !nextRefresh.compareAndSet(due, now + DIRECTORY_REFRESH_MS)) {
+            return;
+        }
+        try (Connection conn = getConnection(DIRECTORY_SHARD);
+             Statement stmt = conn.createStatement()) {
+            String stamp;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*), COALESCE(MAX(version), 0) FROM shard_overrides")) {
+                rs.next();
+                stamp = rs.getLong(1) + ":" + rs.getLong(2);
+            }
+            if (!stamp.equals(directoryStamp)) {
+                Map<Integer, Integer> users = new HashMap<>();
+                Map<String, Integer> names = new HashMap<>();
+                Set<Integer> moving = new HashSet<>();
+                try (ResultSet rs = stmt.executeQuery("SELECT kind, user_key, shard FROM shard_overrides")) {
+                    while (rs.next()) {
+                        String kind = rs.getString("kind");
+                        if ("u".equals(kind)) {
+                            users.put(Integer.parseInt(rs.getString("user_key")), rs.getInt("shard"));
+                        } else if ("m".equals(kind)) {
+                            moving.add(Integer.parseInt(rs.getString("user_key")));
+                        } else {
+                            names.put(rs.getString("user_key"), rs.getInt("shard"));
+                        }
+                    }
+                }
+                userOverrides = users;
+                nameOverrides = names;
+                movingUsers = moving;
+                directoryStamp = stamp;
+            }
+            refreshFailed(null);
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ER_NO_SUCH_TABLE) {
+                refreshFailed(null);
+            } else {
+                refreshFailed(e);
+            }
+        }
+    }
+
+    private synchronized void refreshFailed(SQLException e) {
+        if (e != null && !refreshFailing) {
+            System.err.println("读取分片迁移记录失败，继续使用上次的记录: " + e.getMessage());
+        } else if (e == null && refreshFailing) {
+            System.out.println("分片迁移记录已恢复读取");
+        }
+        refreshFailing = e != null;
+    }
+
+    /**
+     * 记录用户已迁移到指定分片：写入分片 0 的迁移记录表并立即更新本进程的缓存，
+     * 其他进程在 DIRECTORY_REFRESH_MS 内看到；与默认规则一致的记录直接删除，避免表无限增长
+     */
+    public void recordMove(int userId, String username, int shard) throws SQLException {
+        recordMoves(Collections.singletonMap(userId, username), shard);
+    }
+
+    /**
+     * 批量记录一组用户（用户ID -> 用户名）位于指定分片，一个事务内写入，同时解除这些用户的迁移锁
+     */
+    public synchronized void recordMoves(Map<Integer, String> moved, int shard) throws SQLException {
+        long version = System.currentTimeMillis();
+        try (Connection conn = getConnection(DIRECTORY_SHARD)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(CREATE_DIRECTORY_TABLE);
+            }
+            conn.setAutoCommit(false);
+            try {
+                for (Map.Entry<Integer, String> user : moved.entrySet()) {
+                    int userId = user.getKey();
+                    String username = user.getValue();
+                    writeOverride(conn, "u", String.valueOf(userId), shard == homeShard(userId, shards.size()) ? -1 : shard, version);
+                    writeOverride(conn, "n", username, shard == hashShard(username, shards.size()) ? -1 : shard, version);
+                    writeOverride(conn, "m", String.valueOf(userId), -1, version);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        Set<Integer> moving = new HashSet<>(movingUsers);
+        moving.removeAll(moved.keySet());
+        movingUsers = moving;
+        Map<Integer, Integer> users = new HashMap<>(userOverrides);
+        Map<String, Integer> names = new HashMap<>(nameOverrides);
+        for (Map.Entry<Integer, String> user : moved.entrySet()) {
+            int userId = user.getKey();
+            String username = user.getValue();
+            if (shard == homeShard(userId, shards.size())) {
+                users.remove(userId);
+            } else {
+                users.put(userId, shard);
+            }
+            if (shard == hashShard(username, shards.size())) {
+                names.remove(username);
+            } else {
+                names.put(username, shard);
+            }
+        }
+        userOverrides = users;
+        nameOverrides = names;
+    }
+
+    /**
+     * 开始迁移一组用户：写入迁移锁，各进程在 DIRECTORY_REFRESH_MS 内开始拒绝这些用户的写入。
+     * 迁移锁由 recordMoves 在写入新分片的同一事务中解除，迁移放弃时调用 unlockMoves
+     */
+    public synchronized void lockMoves(Collection<Integer> userIds) throws SQLException {
+        writeMoveLocks(userIds, 0);
+        Set<Integer> moving = new HashSet<>(movingUsers);
+        moving.addAll(userIds);
+        movingUsers = moving;
+    }
+
+    public synchronized void unlockMoves(Collection<Integer> userIds) throws SQLException {
+        writeMoveLocks(userIds, -1);
+        Set<Integer> moving = new HashSet<>(movingUsers);
+        moving.removeAll(userIds);
+        movingUsers = moving;
+    }
+
+    private void writeMoveLocks(Collection<Integer> userIds, int shard) throws SQLException {
+        long version = System.currentTimeMillis();
+        try (Connection conn = getConnection(DIRECTORY_SHARD)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(CREATE_DIRECTORY_TABLE);
+            }
+            conn.setAutoCommit(false);
+            try {
+                for (int userId : userIds) {
+                    writeOverride(conn, "m", String.valueOf(userId), shard, version);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    public boolean isMoving(int userId) {
+        refreshOverrides();
+        return movingUsers.contains(userId);
+    }
+
+    /**
+     * 正在迁移的用户ID（迁移中途失败时会残留，重新执行迁移即可解除）
+     */
+    public Set<Integer> getMovingUsers() {
+        refreshOverrides();
+        return Collections.unmodifiableSet(movingUsers);
+    }
+
+    /**
+     * 用户ID是否有迁移记录（即不按生成规则路由）
+     */
+    public boolean hasOverride(int userId) {
+        refreshOverrides();
+        return userOverrides.containsKey(userId);
+    }
+
+    // shard 为 -1 时删除记录
+    private static void writeOverride(Connection conn, String kind, String key, int shard, long version) throws SQLException {
+        String sql = shard < 0
+                ? "DELETE FROM shard_overrides WHERE kind = ? AND user_key = ?"
+                : "INSERT INTO shard_overrides (kind, user_key, shard, version) VALUES (?, ?, ?, ?)"
+                + " ON DUPLICATE KEY UPDATE shard = VALUES(shard), version = VALUES(version)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, kind);
+            stmt.setString(2, key);
+            if (shard >= 0) {
+                stmt.setInt(3, shard);
+                stmt.setLong(4, version);
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * 把旧版本本地文件 shard-overrides.properties 中的迁移记录导入迁移记录表，导入后文件改名为 .imported
+     * 返回导入的条数，文件不存在时返回 0
+     */
+    public int importOverridesFile() throws SQLException {
+        Path file = Paths.get(OVERRIDES_PATH);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        Properties overrides = readProperties(file);
+        Map<Integer, Integer> users = new HashMap<>();
+        Map<String, Integer> names = new HashMap<>();
+        for (String key : overrides.stringPropertyNames()) {
+            int shard = Integer.parseInt(overrides.getProperty(key).trim());
+            if (key.startsWith("user.")) {
+                users.put(Integer.parseInt(key.substring(5)), shard);
+            } else if (key.startsWith("name.")) {
+                names.put(key.substring(5), shard);
+            }
+        }
+        long version = System.currentTimeMillis();
+        try (Connection conn = getConnection(DIRECTORY_SHARD)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(CREATE_DIRECTORY_TABLE);
+            }
+            conn.setAutoCommit(false);
+            try {
+                for (Map.Entry<Integer, Integer> entry : users.entrySet()) {
+                    writeOverride(conn, "u", String.valueOf(entry.getKey()), entry.getValue(), version);
+                }
+                for (Map.Entry<String, Integer> entry : names.entrySet()) {
+                    writeOverride(conn, "n", entry.getKey(), entry.getValue(), version);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        try {
+            Files.move(file, file.resolveSibling(file.getFileName() + ".imported"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("重命名迁移记录文件失败: " + file, e);
+        }
+        nextRefresh.set(0);
+        refreshOverrides();
+        return users.size() + names.size();
+    }
+
+    private static Properties readProperties(Path file) {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取配置失败: " + file, e);
+        }
+        return properties;
+    }
+}
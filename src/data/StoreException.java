@@ -0,0 +1,18 @@
+package data;
+
+/**
+ * 存储后端读取失败，且调用方不能把部分结果当作完整结果使用时抛出
+ * （例如批量读取占用位图、遍历全部课程建立全局索引时某个分片不可用），
+ * 或数据库状态不满足写操作的前提（例如用户行不存在，无法分配版本号）
+ */
+public class StoreException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public StoreException(String message) {
+        super(message);
+    }
+
+    public StoreException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
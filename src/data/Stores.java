@@ -0,0 +1,62 @@
+package data;
+
+/**
+ * 存储后端选择：启动时根据参数或系统属性 course.store 选择 mysql（默认）或 embedded
+ * 嵌入式后端的数据文件由系统属性 course.store.file 指定，默认为工作目录下的 course_manager.db
+ */
+public class Stores {
+    public static final String MYSQL = "mysql";
+    public static final String EMBEDDED = "embedded";
+
+    private static final String DEFAULT_EMBEDDED_FILE = "course_manager.db";
+
+    private static String backend;
+    private static CourseStore courseStore;
+    private static UserStore userStore;
+
+    private Stores() {}
+
+    /**
+     * 选择存储后端，需在第一次创建仓库对象之前调用
+     */
+    public static synchronized void init(String backendName) {
+        if (courseStore != null) {
+            if (!backend.equals(backendName)) {
+                System.err.println("存储后端已初始化为 " + backend + "，忽略切换到 " + backendName);
+            }
+            return;
+        }
+        if (EMBEDDED.equalsIgnoreCase(backendName)) {
+            EmbeddedDatabase db = EmbeddedDatabase.open(System.getProperty("course.store.file", DEFAULT_EMBEDDED_FILE));
+            courseStore = new EmbeddedCourseStore(db);
+            userStore = new EmbeddedUserStore(db);
+            backend = EMBEDDED;
+        } else {
+            courseStore = new MySqlCourseStore();
+            userStore = new MySqlUserStore();
+            backend = MYSQL;
+        }
+        System.out.println("使用存储后端: " + backend);
+    }
+
+    public static synchronized CourseStore courseStore() {
+        ensureInitialized();
+        return courseStore;
+    }
+
+    public static synchronized UserStore userStore() {
+        ensureInitialized();
+        return userStore;
+    }
+
+    public static synchronized String getBackend() {
+        ensureInitialized();
+        return backend;
+    }
+
+    private static void ensureInitialized() {
+        if (courseStore == null) {
+            init(System.getProperty("course.store", MYSQL));
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package data;
+
+import model.Course;
+import model.Timetable;
+import model.WeekMask;
+import model.WeekSlot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 全校教师时间线索引：(教师, 周次, 星期, 节次) -> 各上课地点的课程数
+ *
+ * 教师列是每个用户自己填写的文本，同一位老师会被成千上万个学生重复录入，写法也不完全一致。
+ * 教师名先规范化（全角转半角、去空白、去掉"老师""教授"等称谓、英文转小写）再分配整数编号，
+ * 同一教师在同一时间段只出现一个地点是正常的（很多学生上同一门课）；出现两个以上不同地点即为撞课。
+ * 每个时间段的查询只是一次哈希查找。
+ *
+ * 与 RoomIndex 一样订阅 CourseRepository 的变更事件增量维护，只能看到本进程内的写操作，只在服务端模式下建立；
+ * 桌面客户端直接写数据库的课程、离线重放等重复事件造成的偏差，由服务端定期全量重建（rebuild）纠正。
+ * 索引按教师分成若干条带，各自加锁；全量重建时多个线程并行写入不同条带。
+ */
+public class TeacherIndex {
+    private static final int STRIPES = 64;
+    private static final int BATCH_SIZE = 4096;
+    private static final int UNKNOWN_LOCATION = 0; // 未填写地点，不参与撞课判断
+    private static final String[] TITLES = {"副教授", "教授", "老师", "讲师", "助教"};
+
+    private static volatile TeacherIndex instance;
+
+    // 规范化后的名称 -> 编号；编号 -> 第一次出现时的写法（用于显示）
+    private final Map<String, Integer> teacherIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> teacherNames = new ConcurrentHashMap<>();
+    private final Map<String, Integer> locationIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> locationNames = new ConcurrentHashMap<>();
+    private final AtomicInteger nextTeacherId = new AtomicInteger();
+    private final AtomicInteger nextLocationId = new AtomicInteger(UNKNOWN_LOCATION + 1);
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final CourseChangeListener listener = this::onCourseChanged;
+
+    private TeacherIndex() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * 建立索引并订阅变更事件，已建立时直接返回（首次调用会遍历全部课程）
+     * 遍历失败时抛出异常，索引保持未建立，下次调用重试
+     */
+    public static synchronized TeacherIndex load() {
+        if (instance == null) {
+            instance = build(Stores.courseStore(), Runtime.getRuntime().availableProcessors());
+        }
+        return instance;
+    }
+
+    /**
+     * 已建立的索引，尚未建立时返回 null
+     */
+    public static TeacherIndex current() {
+        return instance;
+    }
+
+    /**
+     * 全量重建并替换当前索引（每晚定时执行），使用全部 CPU 核心并行写入；失败时抛出异常并保留原索引
+     */
+    public static TeacherIndex rebuild() {
+        // 在类锁外建立新索引，建立期间 current() 仍返回旧索引，只在替换时短暂加锁
+        TeacherIndex rebuilt = build(Stores.courseStore(), Runtime.getRuntime().availableProcessors());
+        TeacherIndex old;
+        synchronized (TeacherIndex.class) {
+            old = instance;
+            instance = rebuilt;
+        }
+        if (old != null) {
+            CourseRepository.removeChangeListener(old.listener);
+        }
+        return rebuilt;
+    }
+
+    /**
+     * 遍历线程把课程按批交给线程池，各线程规范化教师名并写入对应条带；
+     * 同时在途的批次有上限，内存占用与课程总数无关
+     */
+    static TeacherIndex build(CourseStore store, int threads) {
+        long start = System.currentTimeMillis();
+        TeacherIndex index = new TeacherIndex();
+        CourseRepository.addChangeListener(index.listener);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(threads * 2);
+        AtomicLong rows = new AtomicLong();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<List<Course>> pending = new ArrayList<>();
+        pending.add(new ArrayList<>(BATCH_SIZE));
+        // 遍历或任一批次失败时整个索引作废，不发布缺少部分课程的索引
+        try {
+            store.forEachCourse((course, userId) -> {
+                List<Course> batch = pending.get(0);
+                batch.add(course);
+                if (batch.size() == BATCH_SIZE) {
+                    submit(pool, inFlight, index, batch, rows, failure);
+                    pending.set(0, new ArrayList<>(BATCH_SIZE));
+                }
+            });
+            submit(pool, inFlight, index, pending.get(0), rows, failure);
+            pool.shutdown();
+            if (!pool.awaitTermination(1, TimeUnit.HOURS)) {
+                throw new IllegalStateException("建立教师时间线索引超时");
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+            CourseRepository.removeChangeListener(index.listener);
+            throw new IllegalStateException("建立教师时间线索引被中断", e);
+        } catch (RuntimeException e) {
+            pool.shutdownNow();
+            CourseRepository.removeChangeListener(index.listener);
+            throw e;
+        }
+        System.out.println("已建立教师时间线索引：" + index.getTeacherCount() + " 位教师，" + rows.get() + " 个课时，"
+                + index.findDoubleBookings().size() + " 处撞课，" + threads + " 个线程，耗时 "
+                + (System.currentTimeMillis() - start) + " ms");
+        return index;
+    }
+
+    private static void submit(ExecutorService pool, Semaphore inFlight, TeacherIndex index,
+                               List<Course> batch, AtomicLong rows, AtomicReference<RuntimeException> failure) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        inFlight.acquireUninterruptibly();
+        pool.execute(() -> {
+            try {
+                for (Course course : batch) {
+                    index.add(course, 1);
+                }
+                rows.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    // ===================== 查询 =====================
+
+    /**
+     * 该教师在这个时间段是否同时出现在两个以上不同地点
+     */
+    public boolean isDoubleBooked(String teacher, int week, String dayOfWeek, String timeSlot) {
+        Integer id = teacherIds.get(normalize(teacher));
+        int cell = cell(dayOfWeek, timeSlot);
+        if (id == null || cell < 0 || !Timetable.isValidWeek(week)) {
+            return false;
+        }
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            Slot slot = stripe.slots.get(key(id, week, cell));
+            return slot != null && slot.distinctLocations() > 1;
+        }
+    }
+
+    /**
+     * 该教师在这个时间段出现的地点（未填写地点的课程不计），没有记录时为空列表
+     */
+    public List<String> getLocations(String teacher, int week, String dayOfWeek, String timeSlot) {
+        List<String> locations = new ArrayList<>();
+        Integer id = teacherIds.get(normalize(teacher));
+        int cell = cell(dayOfWeek, timeSlot);
+        if (id == null || cell < 0 || !Timetable.isValidWeek(week)) {
+            return locations;
+        }
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            Slot slot = stripe.slots.get(key(id, week, cell));
+            if (slot != null) {
+                for (int i = 0; i < slot.size; i++) {
+                    if (slot.locations[i] != UNKNOWN_LOCATION) {
+                        locations.add(locationNames.get(slot.locations[i]));
+                    }
+                }
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * 检查教师在这些周次、节次到 location 上课时，是否已在其他地点有课
+     * 返回撞课的 (周次, 节次)；location 未填写时无法判断，返回空列表
+     */
+    public List<WeekSlot> findClashes(String teacher, String location, String dayOfWeek,
+                                      Collection<String> timeSlots, Collection<Integer> weeks) {
+        List<WeekSlot> found = new ArrayList<>();
+        Integer id = teacherIds.get(normalize(teacher));
+        String place = normalize(location);
+        int day = Timetable.dayIndex(dayOfWeek);
+        if (id == null || place.isEmpty() || day < 0) {
+            return found;
+        }
+        Integer locationId = locationIds.get(place);
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            for (int week : WeekMask.weeks(WeekMask.of(weeks))) {
+                for (String timeSlot : Timetable.TIME_SLOTS) {
+                    if (!timeSlots.contains(timeSlot)) {
+                        continue;
+                    }
+                    int cell = day * Timetable.TIME_SLOTS.length + Timetable.slotIndex(timeSlot);
+                    Slot slot = stripe.slots.get(key(id, week, cell));
+                    if (slot != null && slot.hasOtherLocation(locationId == null ? -1 : locationId)) {
+                        found.add(new WeekSlot(week, timeSlot));
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 当前所有撞课的时间段，按教师、周次、格子排序
+     */
+    public List<DoubleBooking> findDoubleBookings() {
+        List<DoubleBooking> result = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (long key : stripe.conflicts) {
+                    Slot slot = stripe.slots.get(key);
+                    List<String> locations = new ArrayList<>();
+                    for (int i = 0; i < slot.size; i++) {
+                        if (slot.locations[i] != UNKNOWN_LOCATION) {
+                            locations.add(locationNames.get(slot.locations[i]));
+                        }
+                    }
+                    int teacher = (int) (key >>> 12);
+                    int week = (int) (key >>> 6) & 0x3F;
+                    int cell = (int) key & 0x3F;
+                    result.add(new DoubleBooking(teacherNames.get(teacher), week,
+                            Timetable.DAYS[cell / Timetable.TIME_SLOTS.length],
+                            Timetable.TIME_SLOTS[cell % Timetable.TIME_SLOTS.length], locations, key));
+                }
+            }
+        }
+        result.sort((a, b) -> Long.compare(a.sortKey, b.sortKey));
+        return result;
+    }
+
+    public int getTeacherCount() {
+        return teacherIds.size();
+    }
+
+    /**
+     * 教师名规范化：全角转半角、去掉所有空白和常见称谓、英文转小写；空值返回空字符串
+     */
+    public static String normalize(String name) {
+        String normalized = CourseSearchIndex.normalize(name);
+        for (String title : TITLES) {
+            if (normalized.length() > title.length() && normalized.endsWith(title)) {
+                return normalized.substring(0, normalized.length() - title.length());
+            }
+        }
+        return normalized;
+    }
+
+    // ===================== 维护 =====================
+
+    private void onCourseChanged(CourseChangeEvent event) {
+        // 离线添加的临时课程在重放时会以正式ID再发布一次，只计正式ID
+        if (event.getCourse().getId() < 0) {
+            return;
+        }
+        if (event.getType() == CourseChangeEvent.Type.ADDED) {
+            add(event.getCourse(), 1);
+        } else if (event.getType() == CourseChangeEvent.Type.REMOVED) {
+            add(event.getCourse(), -1);
+        } else if (event.getType() == CourseChangeEvent.Type.UPDATED) {
+            if (event.getPrevious().getId() >= 0) {
+                add(event.getPrevious(), -1);
+            }
+            add(event.getCourse(), 1);
+        }
+    }
+
+    private void add(Course course, int delta) {
+        String teacher = normalize(course.getTeacher());
+        int cell = cell(course.getDayOfWeek(), course.getTimeSlot());
+        if (teacher.isEmpty() || cell < 0 || !Timetable.isValidWeek(course.getWeek())) {
+            return;
+        }
+        int id = teacherIds.computeIfAbsent(teacher, k -> {
+            int next = nextTeacherId.getAndIncrement();
+            teacherNames.put(next, course.getTeacher().trim());
+            return next;
+        });
+        String place = normalize(course.getLocation());
+        int location = place.isEmpty() ? UNKNOWN_LOCATION : locationIds.computeIfAbsent(place, k -> {
+            int next = nextLocationId.getAndIncrement();
+            locationNames.put(next, course.getLocation().trim());
+            return next;
+        });
+
+        long key = key(id, course.getWeek(), cell);
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            Slot slot = stripe.slots.get(key);
+            if (slot == null) {
+                if (delta < 0) {
+                    return;
+                }
+                slot = new Slot();
+                stripe.slots.put(key, slot);
+            }
+            slot.add(location, delta);
+            if (slot.size == 0) {
+                stripe.slots.remove(key);
+            }
+            if (slot.distinctLocations() > 1) {
+                stripe.conflicts.add(key);
+            } else {
+                stripe.conflicts.remove(key);
+            }
+        }
+    }
+
+    private Stripe stripe(int teacherId) {
+        return stripes[teacherId % STRIPES];
+    }
+
+    private static int cell(String dayOfWeek, String timeSlot) {
+        int day = Timetable.dayIndex(dayOfWeek);
+        int slot = Timetable.slotIndex(timeSlot);
+        return day < 0 || slot < 0 ? -1 : day * Timetable.TIME_SLOTS.length + slot;
+    }
+
+    // 教师编号、周次（6 位）、格子（6 位）拼成一个 long
+    private static long key(int teacher, int week, int cell) {
+        return ((long) teacher << 12) | ((long) week << 6) | cell;
+    }
+
+    private static final class Stripe {
+        final Map<Long, Slot> slots = new HashMap<>();
+        final Set<Long> conflicts = new HashSet<>(); // 有两个以上地点的格子
+    }
+
+    /**
+     * 一个 (教师, 周次, 格子) 中各地点的课程数；绝大多数只有一个地点，用小数组存放
+     */
+    private static final class Slot {
+        int[] locations = new int[1];
+        int[] counts = new int[1];
+        int size;
+
+        void add(int location, int delta) {
+            for (int i = 0; i < size; i++) {
+                if (locations[i] == location) {
+                    counts[i] += delta;
+                    if (counts[i] <= 0) {
+                        // 删除该地点：用最后一个元素填补
+                        size--;
+                        locations[i] = locations[size];
+                        counts[i] = counts[size];
+                    }
+                    return;
+                }
+            }
+            if (delta <= 0) {
+                return;
+            }
+            if (size == locations.length) {
+                locations = Arrays.copyOf(locations, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            locations[size] = location;
+            counts[size] = delta;
+            size++;
+        }
+
+        int distinctLocations() {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (locations[i] != UNKNOWN_LOCATION) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        boolean hasOtherLocation(int location) {
+            for (int i = 0; i < size; i++) {
+                if (locations[i] != UNKNOWN_LOCATION && locations[i] != location) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 一处撞课：某位教师在同一时间段出现在多个地点
+     */
+    public static class DoubleBooking {
+        private final String teacher;
+        private final int week;
+        private final String dayOfWeek;
+        private final String timeSlot;
+        private final List<String> locations;
+        private final long sortKey;
+
+        DoubleBooking(String teacher, int week, String dayOfWeek, String timeSlot, List<String> locations, long sortKey) {
+            this.teacher = teacher;
+            this.week = week;
+            this.dayOfWeek = dayOfWeek;
+            this.timeSlot = timeSlot;
+            this.locations = locations;
+            this.sortKey = sortKey;
+        }
+
+        public String getTeacher() { return teacher; }
+        public int getWeek() { return week; }
+        public String getDayOfWeek() { return dayOfWeek; }
+        public String getTimeSlot() { return timeSlot; }
+        public List<String> getLocations() { return locations; }
+
+        @Override
+        public String toString() {
+            return teacher + " 第" + week + "周 " + dayOfWeek + " " + timeSlot + "：" + String.join("、", locations);
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package data;
+
+import model.Course;
+import model.CourseRequirement;
+import model.OccupancyMatrix;
+import model.Timetable;
+import model.WeekMask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 自动排课：把一组课程需求安排进 7 × 5 的课表格子，不与用户已有课程、教室占用、教师其他课程冲突
+ *
+ * 每条需求的每一次课是一个变量，取值为一个格子或"不安排"。按可选格子最少的需求优先搜索（回溯），
+ * 每一步做前向检查：剩余需求的可选格子数给出能安排次数的上界，不可能超过当前最好结果的分支直接剪掉。
+ * 同一门课优先安排在不同的星期；安排在同一天的次数作为罚分，次数相同时罚分少的结果更好。
+ * 搜索树的前几层拆成 fork/join 子任务并行搜索，共享当前最好结果；
+ * 找到最优结果或超过时间预算时停止，返回目前为止最好的安排（可能只安排了部分需求）。
+ *
+ * 教室、教师冲突使用已建立的 RoomIndex / TeacherIndex，未建立时不检查。
+ */
+public class TimetableSolver {
+    public static final long DEFAULT_BUDGET_MILLIS = 500;
+
+    private static final int CELLS = Timetable.CELLS_PER_WEEK;
+    private static final int SLOTS = Timetable.TIME_SLOTS.length;
+    private static final int SKIP = -1;
+    private static final int FORK_DEPTH = 3;          // 前几个变量的每个取值一个子任务
+    private static final int CHECK_INTERVAL = 1024;   // 每搜索多少个节点检查一次时间
+
+    private final OccupancyMatrix existing;
+    private final int userId;
+    private long budgetMillis = DEFAULT_BUDGET_MILLIS;
+    private RoomIndex roomIndex = RoomIndex.current();
+    private TeacherIndex teacherIndex = TeacherIndex.current();
+
+    /**
+     * @param existing 用户已有课程的占用位图（不会被修改）
+     * @param userId   用户ID，检查教室占用时排除用户自己的预订
+     */
+    public TimetableSolver(OccupancyMatrix existing, int userId) {
+        this.existing = existing.copy();
+        this.userId = userId;
+    }
+
+    public void setBudgetMillis(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    // 指定教室、教师索引，传 null 表示不检查
+    public void setIndexes(RoomIndex roomIndex, TeacherIndex teacherIndex) {
+        this.roomIndex = roomIndex;
+        this.teacherIndex = teacherIndex;
+    }
+
+    public Solution solve(List<CourseRequirement> requirements) {
+        long start = System.nanoTime();
+        Search search = new Search(requirements, start + budgetMillis * 1_000_000);
+        if (search.varCount > 0) {
+            ForkJoinPool.commonPool().invoke(new SearchTask(search, search.newState(), 0));
+        }
+        Solution solution = search.toSolution((System.nanoTime() - start) / 1_000_000);
+        System.out.println("自动排课：" + solution);
+        return solution;
+    }
+
+    /**
+     * 需求 r 可以安排的格子（位 c 表示格子 c）：星期允许、整个周次范围内与已有课程、教室、教师都不冲突
+     */
+    private long candidateCells(CourseRequirement requirement) {
+        long weeks = requirement.getWeekMask();
+        List<Integer> weekList = WeekMask.weeks(weeks);
+        String location = requirement.getLocation() == null ? "" : requirement.getLocation().trim();
+        String teacher = requirement.getTeacher() == null ? "" : requirement.getTeacher().trim();
+        long cells = 0;
+        for (String dayOfWeek : requirement.getAllowedDays()) {
+            int day = Timetable.dayIndex(dayOfWeek);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (existing.occupiedWeeks(day, slot, weeks) != 0) {
+                    continue;
+                }
+                List<String> timeSlot = Collections.singletonList(Timetable.TIME_SLOTS[slot]);
+                if (roomIndex != null && !location.isEmpty()
+                        && !roomIndex.findClashes(location, dayOfWeek, timeSlot, weekList, userId).isEmpty()) {
+                    continue;
+                }
+                if (teacherIndex != null && !teacher.isEmpty()
+                        && !teacherIndex.findClashes(teacher, location, dayOfWeek, timeSlot, weekList).isEmpty()) {
+                    continue;
+                }
+                cells |= 1L << (day * SLOTS + slot);
+            }
+        }
+        return cells;
+    }
+
+    // ===================== 搜索 =====================
+
+    /**
+     * 一次求解共享的数据：变量定义、当前最好结果、停止标志
+     */
+    private final class Search {
+        final List<CourseRequirement> requirements;
+        final long[] weeks;        // 需求 -> 周次掩码
+        final long[] domain;       // 需求 -> 可选格子
+        final int[] varRequirement; // 变量 -> 需求
+        final boolean[] varFirst;  // 变量是否为该需求的第一次课
+        final int varCount;
+        final int[] probeWeeks;    // 逐周容量检查的周次：上课需求集合不同的每组周次各取一周
+        final int bestPossiblePenalty;
+        final long deadline;
+        final AtomicLong nodes = new AtomicLong();
+        volatile boolean stopped;
+        boolean timedOut;
+
+        // 当前最好结果（在 synchronized(this) 内更新）
+        int[] bestAssignment;
+        int bestPlaced = -1;
+        int bestPenalty;
+
+        Search(List<CourseRequirement> requirements, long deadline) {
+            this.requirements = requirements;
+            this.deadline = deadline;
+            int n = requirements.size();
+            weeks = new long[n];
+            domain = new long[n];
+            int total = 0;
+            int penalty = 0;
+            for (int r = 0; r < n; r++) {
+                CourseRequirement requirement = requirements.get(r);
+                weeks[r] = requirement.getWeekMask();
+                domain[r] = candidateCells(requirement);
+                total += requirement.getPeriodsPerWeek();
+                penalty += Math.max(0, requirement.getPeriodsPerWeek() - requirement.getAllowedDays().size());
+            }
+            bestPossiblePenalty = penalty;
+            probeWeeks = probeWeeks(weeks);
+
+            // 可选格子相对需要次数最少的需求先搜索
+            Integer[] order = new Integer[n];
+            for (int r = 0; r < n; r++) {
+                order[r] = r;
+            }
+            Arrays.sort(order, Comparator.comparingInt(
+                    r -> Long.bitCount(domain[r]) - requirements.get(r).getPeriodsPerWeek()));
+            varCount = total;
+            varRequirement = new int[total];
+            varFirst = new boolean[total];
+            int v = 0;
+            for (int r : order) {
+                for (int j = 0; j < requirements.get(r).getPeriodsPerWeek(); j++) {
+                    varRequirement[v] = r;
+                    varFirst[v] = j == 0;
+                    v++;
+                }
+            }
+        }
+
+        /**
+         * 覆盖的需求集合相同的周次只需检查其中一周
+         */
+        private int[] probeWeeks(long[] weeks) {
+            List<Integer> probes = new ArrayList<>();
+            List<String> seen = new ArrayList<>();
+            for (int week = 1; week <= WeekMask.MAX_WEEK; week++) {
+                long bit = WeekMask.of(week);
+                StringBuilder covering = new StringBuilder();
+                for (int r = 0; r < weeks.length; r++) {
+                    covering.append((weeks[r] & bit) != 0 ? '1' : '0');
+                }
+                if (covering.indexOf("1") >= 0 && !seen.contains(covering.toString())) {
+                    seen.add(covering.toString());
+                    probes.add(week);
+                }
+            }
+            int[] result = new int[probes.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = probes.get(i);
+            }
+            return result;
+        }
+
+        State newState() {
+            State state = new State(varCount, requirements.size());
+            Arrays.fill(state.assignment, SKIP);
+            return state;
+        }
+
+        /**
+         * 变量 v 的候选取值：可用的格子按（同一门课已用过该星期、当天已有课程数、格子）排序，最后是"不安排"
+         * 同一需求的各次课按格子递增取值，避免同一组格子以不同顺序重复搜索；前一次不安排时之后也都不安排
+         */
+        int[] candidates(State state, int v) {
+            int r = varRequirement[v];
+            if (!varFirst[v] && state.assignment[v - 1] == SKIP) {
+                return new int[]{SKIP};
+            }
+            int from = varFirst[v] ? 0 : state.assignment[v - 1] + 1;
+            long free = domain[r] & (-1L << from) & ((1L << CELLS) - 1);
+            long[] keys = new long[Long.bitCount(free)];
+            int count = 0;
+            for (long bits = free; bits != 0; bits &= bits - 1) {
+                int cell = Long.numberOfTrailingZeros(bits);
+                if ((state.cellWeeks[cell] & weeks[r]) != 0) {
+                    continue;
+                }
+                int day = cell / SLOTS;
+                int sameDay = (state.dayUse[r] >> day) & 1;
+                int load = 0;
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    if (((state.cellWeeks[day * SLOTS + slot] | existing.weeksAt(day, slot)) & weeks[r]) != 0) {
+                        load++;
+                    }
+                }
+                keys[count++] = ((long) sameDay << 16) | (load << 8) | cell;
+            }
+            Arrays.sort(keys, 0, count);
+            int[] values = new int[count + 1];
+            for (int i = 0; i < count; i++) {
+                values[i] = (int) (keys[i] & 0xFF);
+            }
+            values[count] = SKIP;
+            return values;
+        }
+
+        /**
+         * 从变量 v 开始最多还能安排多少次课（前向检查的上界）
+         * 先按每个需求各自的可用格子数估计；再逐周检查：同一周上课的需求共用这一周的空闲格子，
+         * 它们能安排的次数之和不超过这些格子数
+         */
+        int optimistic(State state, int v) {
+            int[] possible = new int[requirements.size()];
+            int total = 0;
+            while (v < varCount) {
+                int r = varRequirement[v];
+                int remaining = 0;
+                int first = v;
+                while (v < varCount && varRequirement[v] == r) {
+                    remaining++;
+                    v++;
+                }
+                if (!varFirst[first] && state.assignment[first - 1] == SKIP) {
+                    continue;
+                }
+                int from = varFirst[first] ? 0 : state.assignment[first - 1] + 1;
+                int live = 0;
+                for (long bits = domain[r] & (-1L << from) & ((1L << CELLS) - 1); bits != 0 && live < remaining; bits &= bits - 1) {
+                    if ((state.cellWeeks[Long.numberOfTrailingZeros(bits)] & weeks[r]) == 0) {
+                        live++;
+                    }
+                }
+                possible[r] = live;
+                total += live;
+            }
+            int bound = total;
+            for (int week : probeWeeks) {
+                long bit = WeekMask.of(week);
+                int demand = 0;
+                long cells = 0;
+                for (int r = 0; r < possible.length; r++) {
+                    if (possible[r] > 0 && (weeks[r] & bit) != 0) {
+                        demand += possible[r];
+                        cells |= domain[r];
+                    }
+                }
+                if (demand == 0) {
+                    continue;
+                }
+                int capacity = 0;
+                for (long bits = cells; bits != 0 && capacity < demand; bits &= bits - 1) {
+                    if ((state.cellWeeks[Long.numberOfTrailingZeros(bits)] & bit) == 0) {
+                        capacity++;
+                    }
+                }
+                bound = Math.min(bound, total - demand + capacity);
+            }
+            return bound;
+        }
+
+        synchronized boolean canImprove(int placed, int penalty) {
+            return placed > bestPlaced || (placed == bestPlaced && penalty < bestPenalty);
+        }
+
+        synchronized void offer(State state) {
+            if (!canImprove(state.placed, state.penalty)) {
+                return;
+            }
+            bestPlaced = state.placed;
+            bestPenalty = state.penalty;
+            bestAssignment = state.assignment.clone();
+            if (bestPlaced == varCount && bestPenalty == bestPossiblePenalty) {
+                stopped = true; // 已是最优
+            }
+        }
+
+        boolean shouldStop() {
+            if (stopped) {
+                return true;
+            }
+            if (nodes.incrementAndGet() % CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                synchronized (this) {
+                    timedOut = true;
+                }
+                stopped = true;
+            }
+            return stopped;
+        }
+
+        void assign(State state, int v, int cell) {
+            state.assignment[v] = cell;
+            if (cell == SKIP) {
+                return;
+            }
+            int r = varRequirement[v];
+            int dayBit = 1 << (cell / SLOTS);
+            if ((state.dayUse[r] & dayBit) != 0) {
+                state.penalty++;
+            }
+            state.dayUse[r] |= dayBit;
+            state.cellWeeks[cell] |= weeks[r];
+            state.placed++;
+        }
+
+        /**
+         * 撤销变量 v 的取值；dayUse 由同一需求之前各次课的取值重新计算
+         */
+        void unassign(State state, int v) {
+            int cell = state.assignment[v];
+            state.assignment[v] = SKIP;
+            if (cell == SKIP) {
+                return;
+            }
+            int r = varRequirement[v];
+            state.cellWeeks[cell] &= ~weeks[r];
+            state.placed--;
+            int days = 0;
+            for (int u = v - 1; u >= 0 && varRequirement[u] == r; u--) {
+                if (state.assignment[u] != SKIP) {
+                    days |= 1 << (state.assignment[u] / SLOTS);
+                }
+            }
+            if ((days & (1 << (cell / SLOTS))) != 0) {
+                state.penalty--;
+            }
+            state.dayUse[r] = days;
+        }
+
+        /**
+         * 顺序回溯搜索（子任务内部）
+         */
+        void search(State state, int v) {
+            if (shouldStop()) {
+                return;
+            }
+            if (v == varCount) {
+                offer(state);
+                return;
+            }
+            if (!canImprove(state.placed + optimistic(state, v), state.penalty)) {
+                return;
+            }
+            for (int cell : candidates(state, v)) {
+                assign(state, v, cell);
+                search(state, v + 1);
+                unassign(state, v);
+                if (stopped) {
+                    return;
+                }
+            }
+        }
+
+        Solution toSolution(long elapsedMillis) {
+            List<Course> courses = new ArrayList<>();
+            List<CourseRequirement> unplaced = new ArrayList<>();
+            int[] assignment = bestAssignment != null ? bestAssignment : newState().assignment;
+            for (int v = 0; v < varCount; v++) {
+                CourseRequirement requirement = requirements.get(varRequirement[v]);
+                int cell = assignment[v];
+                if (cell == SKIP) {
+                    if (!unplaced.contains(requirement)) {
+                        unplaced.add(requirement);
+                    }
+                    continue;
+                }
+                for (int week : WeekMask.weeks(requirement.getWeekMask())) {
+                    Course course = new Course(requirement.getName(), requirement.getTeacher(),
+                            Timetable.DAYS[cell / SLOTS], Timetable.TIME_SLOTS[cell % SLOTS], requirement.getLocation());
+                    course.setWeek(week);
+                    courses.add(course);
+                }
+            }
+            return new Solution(courses, unplaced, Math.max(bestPlaced, 0), varCount, Math.max(bestPenalty, 0),
+                    timedOut, nodes.get(), elapsedMillis);
+        }
+    }
+
+    /**
+     * 搜索状态：各格子已安排的周次、各变量的取值、各需求用过的星期
+     */
+    private static final class State {
+        final long[] cellWeeks = new long[CELLS];
+        final int[] assignment;
+        final int[] dayUse;
+        int placed;
+        int penalty;
+
+        State(int varCount, int requirementCount) {
+            assignment = new int[varCount];
+            dayUse = new int[requirementCount];
+        }
+
+        State copy() {
+            State copy = new State(assignment.length, dayUse.length);
+            System.arraycopy(cellWeeks, 0, copy.cellWeeks, 0, CELLS);
+            System.arraycopy(assignment, 0, copy.assignment, 0, assignment.length);
+            System.arraycopy(dayUse, 0, copy.dayUse, 0, dayUse.length);
+            copy.placed = placed;
+            copy.penalty = penalty;
+            return copy;
+        }
+    }
+
+    /**
+     * 前 FORK_DEPTH 个变量的每个取值拆成一个子任务，之后在子任务内顺序回溯
+     */
+    private static final class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final State state;
+        private final int v;
+
+        SearchTask(Search search, State state, int v) {
+            this.search = search;
+            this.state = state;
+            this.v = v;
+        }
+
+        @Override
+        protected void compute() {
+            if (v >= FORK_DEPTH || v >= search.varCount) {
+                search.search(state, v);
+                return;
+            }
+            if (search.shouldStop()
+                    || !search.canImprove(state.placed + search.optimistic(state, v), state.penalty)) {
+                return;
+            }
+            List<SearchTask> tasks = new ArrayList<>();
+            for (int cell : search.candidates(state, v)) {
+                State child = state.copy();
+                search.assign(child, v, cell);
+                tasks.add(new SearchTask(search, child, v + 1));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * 排课结果：安排好的每周课程（可直接交给 CourseRepository.addCourses）和未能完全安排的需求
+     */
+    public static class Solution {
+        private final List<Course> courses;
+        private final List<CourseRequirement> unplaced;
+        private final int placedPeriods;
+        private final int totalPeriods;
+        private final int penalty;
+        private final boolean timedOut;
+        private final long nodes;
+        private final long elapsedMillis;
+
+        Solution(List<Course> courses, List<CourseRequirement> unplaced, int placedPeriods, int totalPeriods,
+                 int penalty, boolean timedOut, long nodes, long elapsedMillis) {
+            this.courses = courses;
+            this.unplaced = unplaced;
+            this.placedPeriods = placedPeriods;
+            this.totalPeriods = totalPeriods;
+            this.penalty = penalty;
+            this.timedOut = timedOut;
+            this.nodes = nodes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public List<Course> getCourses() { return courses; }
+        public List<CourseRequirement> getUnplaced() { return unplaced; }
+        public int getPlacedPeriods() { return placedPeriods; }
+        public int getTotalPeriods() { return totalPeriods; }
+        public int getPenalty() { return penalty; }         // 同一门课安排在同一天的次数
+        public boolean isTimedOut() { return timedOut; }    // 超过时间预算，结果为目前为止最好的安排
+        public long getNodes() { return nodes; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        public boolean isComplete() {
+            return placedPeriods == totalPeriods;
+        }
+
+        @Override
+        public String toString() {
+            return "安排 " + placedPeriods + "/" + totalPeriods + " 次课，同日重复 " + penalty + " 次，搜索 " + nodes
+                    + " 个节点，耗时 " + elapsedMillis + " ms" + (timedOut ? "（超时，返回目前最好结果）" : "");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package data;
+
+import model.User;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 用户存储接口（SPI）
+ * 密码的加密与校验由 UserRepository 负责，存储层只保存哈希值。
+ */
+public interface UserStore {
+
+    // 根据用户名查找用户，不存在返回 null
+    User findByUsername(String username);
+
+    // 批量查找用户ID（用户名 -> ID），不存在的用户名不在结果中；存储不可访问时抛出 StoreException
+    Map<String, Integer> findIdsByUsernames(Collection<String> usernames);
+
+    // 插入新用户（user 中的密码已是哈希值），成功时回填 id
+    boolean insert(User user);
+
+    // 查询用户的密码哈希，不存在返回 null
+    String findPasswordHash(int userId);
+
+    // 更新用户的密码哈希
+    boolean updatePasswordHash(int userId, String passwordHash);
+
+    // 用户所在的存储当前能否访问（用于区分“用户不存在”与“数据库不可用”）
+    boolean isAvailable(String username);
+}
@@ -1,9 +1,21 @@
 package main;
 
+import data.AddResult;
+import data.LocalScheduleCache;
+import data.OfflineCourseRepository;
+import data.CourseChangeEvent;
+import data.CourseChangeListener;
+import data.CourseDelta;
 import data.CourseRepository;
+import data.CourseSearchIndex;
+import data.ScheduleIndex;
+import data.StoreException;
 import data.UserRepository;
 import model.Course;
+import model.Timetable;
 import model.User;
+import model.WeekMask;
+import model.WeekSlot;
 import ui.LoginFrame;
 import util.PasswordUtil;
 
@@ -13,8 +25,16 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.io.IOException;
 import java.io.File;
 import java.awt.image.BufferedImage;
@@ -27,7 +47,9 @@ import javax.swing.filechooser.FileNameExtensionFilter;
  * 展示课表、支持添加/删除课程、账户管理
  */
 public class MainFrame extends JFrame {
-    private CourseRepository repository;
+    private OfflineCourseRepository repository;
+    private LocalScheduleCache localCache; // 本地课表缓存与离线修改队列
+    private ScheduleIndex scheduleIndex; // 当前用户整学期课表索引
     private User currentUser;
     private JPanel courseGrid; // 动态课程展示面板
     private String[] days = {"星期一", "星期二", "星期三", "星期四", "星期五", "星期六", "星期日"};
@@ -41,10 +63,26 @@ public class MainFrame extends JFrame {
     private JComboBox<String> weekSelector; // 周选择器
     private JButton myBtn;       // 我的按钮
     private JLabel weekInfoLabel; // 周次信息标签（"第i周课程安排"）
+    private final JLabel[][] courseCells = new JLabel[5][7]; // 课程单元格 [节次][星期]
+    private int displayedWeek = 1; // 当前显示的教学周
+    private final CourseChangeListener changeListener = this::onCourseChanged;
+    private static final String CELL_COURSE = "course"; // 单元格 client property：当前显示的课程
+    private static final int SYNC_INTERVAL_MS = 30_000; // 后台增量同步间隔
+    private Timer syncTimer;
+    private boolean syncing; // 仅在 EDT 上读写
+    private final AtomicBoolean cacheDirty = new AtomicBoolean(); // 本地修改后尚未写入缓存文件
     
     public MainFrame(User user) {
         this.currentUser = user;
-        this.repository = new CourseRepository();
+        this.localCache = LocalScheduleCache.forUser(user);
+        this.repository = new OfflineCourseRepository(localCache);
+        // 先用本地缓存立即显示上次的课表，构造完成后在后台同步；之后切换周次和冲突检查都走内存索引
+        this.scheduleIndex = ScheduleIndex.restore(user, localCache.getSchedule());
+        // 增删课程后只刷新受影响的格子
+        CourseRepository.addChangeListener(changeListener);
+        // 定期增量同步其他设备上的修改，只传输上次同步之后变更的课程
+        syncTimer = new Timer(SYNC_INTERVAL_MS, e -> syncInBackground());
+        syncTimer.start();
         
         // 设置全局字体
         Font font = new Font("微软雅黑", Font.PLAIN, 13);
@@ -71,6 +109,12 @@ public class MainFrame extends JFrame {
         setTitle("课程表管理系统");
         setSize(1200, 750);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                saveLocalCache();
+            }
+        });
         setLocationRelativeTo(null);
         
         // 设置主背景色
@@ -92,6 +136,8 @@ public class MainFrame extends JFrame {
         // 显示主页面板
         showHomePanel();
         loadCourseSchedule();
+        // 缓存内容已显示，立即在后台同步一次最新课表
+        syncInBackground();
     }
     
 
@@ -157,6 +203,11 @@ public class MainFrame extends JFrame {
                 JOptionPane.showMessageDialog(this, "密码修改成功", "成功", JOptionPane.INFORMATION_MESSAGE);
                 // 更新当前用户对象中的密码哈希值
                 currentUser.setPassword(PasswordUtil.hashPassword(newPassword));
+                try {
+                    localCache.rememberPassword(newPassword);
+                } catch (Exception e) {
+                    System.err.println("保存离线登录信息失败: " + e.getMessage());
+                }
             } else {
                 JOptionPane.showMessageDialog(this, "旧密码错误或修改失败", "错误", JOptionPane.ERROR_MESSAGE);
             }
@@ -166,6 +217,10 @@ public class MainFrame extends JFrame {
     private void switchAccount() {
         int confirm = showSmallGlassConfirmDialog(this, "确定要切换账号吗？", "切换账号");
         if (confirm == JOptionPane.YES_OPTION) {
+            syncTimer.stop();
+            saveLocalCache();
+            ScheduleIndex.unload(currentUser.getId());
+            CourseRepository.removeChangeListener(changeListener);
             dispose(); // 关闭当前主界面
             new LoginFrame().setVisible(true); // 回到登录界面
         }
@@ -174,6 +229,10 @@ public class MainFrame extends JFrame {
     private void logout() {
         int confirm = showSmallGlassConfirmDialog(this, "确定退出登录？", "提示");
         if (confirm == JOptionPane.YES_OPTION) {
+            syncTimer.stop();
+            saveLocalCache();
+            ScheduleIndex.unload(currentUser.getId());
+            CourseRepository.removeChangeListener(changeListener);
             dispose(); // 关闭当前主界面
             new LoginFrame().setVisible(true);//回到登录页面
         }
@@ -640,6 +699,37 @@ public class MainFrame extends JFrame {
         JPanel toolBar = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
         toolBar.setOpaque(false);
         
+        // 课程检索：输入时即时在整学期索引中查找
+        JTextField searchField = new JTextField(14);
+        searchField.setToolTipText("按课程名、教师或地点搜索整学期课程");
+        JComboBox<String> searchDay = new JComboBox<>();
+        searchDay.addItem("全部星期");
+        for (String day : Timetable.DAYS) {
+            searchDay.addItem(day);
+        }
+        JCheckBox searchThisWeek = new JCheckBox("仅本周");
+        searchThisWeek.setOpaque(false);
+        JPopupMenu searchResults = new JPopupMenu();
+        searchResults.setFocusable(false);
+        Runnable search = () -> showSearchResults(searchField, searchResults, searchDay.getSelectedIndex() - 1,
+                searchThisWeek.isSelected());
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { search.run(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { search.run(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { search.run(); }
+        });
+        searchField.addActionListener(e -> search.run());
+        searchDay.addActionListener(e -> search.run());
+        searchThisWeek.addActionListener(e -> search.run());
+
+        JLabel searchLabel = new JLabel("搜索:");
+        searchLabel.setFont(new Font("微软雅黑", Font.PLAIN, 14));
+        searchLabel.setForeground(ModernColorScheme.TEXT_PRIMARY);
+        toolBar.add(searchLabel);
+        toolBar.add(searchField);
+        toolBar.add(searchDay);
+        toolBar.add(searchThisWeek);
+
         JLabel weekLabel = new JLabel("教学周:");
         weekLabel.setFont(new Font("微软雅黑", Font.PLAIN, 14));
         weekLabel.setForeground(ModernColorScheme.TEXT_PRIMARY);
@@ -664,6 +754,66 @@ public class MainFrame extends JFrame {
         return panel;
     }
     
+    /**
+     * 在整学期课表索引中检索，结果按课程和上课时间合并显示在输入框下方，点击跳到该课程最近的一周
+     *
+     * @param day      只显示该星期（Timetable.DAYS 下标），-1 表示不限
+     * @param thisWeek 只显示当前显示的教学周
+     */
+    private void showSearchResults(JTextField field, JPopupMenu popup, int day, boolean thisWeek) {
+        popup.setVisible(false);
+        popup.removeAll();
+        String query = field.getText();
+        if (query.trim().isEmpty()) {
+            return;
+        }
+        List<Course> found = scheduleIndex.search(query, CourseSearchIndex.ALL_FIELDS, false,
+                thisWeek ? WeekMask.of(displayedWeek) : WeekMask.ALL,
+                day < 0 ? CourseSearchIndex.ALL_DAYS : 1 << day);
+        // 同一课程同一时间的各周合并为一条，周次合并为区间
+        Map<String, Long> weeksByCourse = new LinkedHashMap<>();
+        for (Course course : found) {
+            String key = course.getName() + "  " + course.getTeacher() + "  " + course.getLocation() + "  "
+                    + course.getDayOfWeek() + " " + course.getTimeSlot();
+            weeksByCourse.merge(key, WeekMask.of(course.getWeek()), (a, b) -> a | b);
+        }
+        if (weeksByCourse.isEmpty()) {
+            JMenuItem none = new JMenuItem("没有找到相关课程");
+            none.setEnabled(false);
+            popup.add(none);
+        }
+        int shown = 0;
+        for (Map.Entry<String, Long> entry : weeksByCourse.entrySet()) {
+            if (++shown > 20) {
+                JMenuItem more = new JMenuItem("……共 " + weeksByCourse.size() + " 条，请输入更多文字缩小范围");
+                more.setEnabled(false);
+                popup.add(more);
+                break;
+            }
+            long weeks = entry.getValue();
+            JMenuItem item = new JMenuItem(entry.getKey() + "  第" + WeekMask.format(weeks) + "周");
+            item.addActionListener(e -> {
+                // 当前周或之后最近的一周，都已过去时取第一周
+                int week = Long.numberOfTrailingZeros(weeks) + 1;
+                for (int w : WeekMask.weeks(weeks)) {
+                    if (w >= displayedWeek) {
+                        week = w;
+                        break;
+                    }
+                }
+                if (week <= weekSelector.getItemCount()) {
+                    weekSelector.setSelectedIndex(week - 1);
+                }
+            });
+            popup.add(item);
+        }
+        if (field.isShowing()) {
+            popup.show(field, 0, field.getHeight());
+            field.requestFocusInWindow();
+        }
+        statusLabel.setText("  找到 " + found.size() + " 节课");
+    }
+
     /**
      * 创建课程表网格
      */
@@ -793,7 +943,7 @@ public class MainFrame extends JFrame {
     private JLabel statusLabel;
     
     private void loadCoursesForWeek(int week) {
-        courseGrid.removeAll(); // 清空旧内容
+        displayedWeek = week;
         // 更新周次提示标签 - 直接使用实例变量
         if (weekInfoLabel != null) {
             weekInfoLabel.setText("第" + week + "周课程安排");
@@ -804,6 +954,32 @@ public class MainFrame extends JFrame {
             statusLabel.setText(" 欢迎使用课程表管理系统 | 当前周: 第" + week + "周");
         }
 
+        // 网格只创建一次，切换周次时只更新单元格内容
+        if (courseCells[0][0] == null) {
+            buildCourseGrid();
+        }
+
+        // 从内存索引获取该周的所有课程，不访问数据库
+        List<Course> weeklyCourses = scheduleIndex.getCoursesByWeek(week);
+        System.out.println("加载第" + week + "周的课程，共 " + weeklyCourses.size() + " 门课程");
+        for (Course c : weeklyCourses) {
+            System.out.println("  课程: " + c.getName() + ", 星期: " + c.getDayOfWeek() + ", 节次: " + c.getTimeSlot() + ", 周次: " + c.getWeek());
+        }
+
+        for (int row = 0; row < timeSlots.length; row++) {
+            for (int col = 0; col < days.length; col++) {
+                // 按 (周次, 星期, 节次) 直接查找当前时间段的课程对象
+                renderCourseCell(row, col, scheduleIndex.get(week, days[col], timeSlots[row]));
+            }
+        }
+    }
+
+    /**
+     * 创建表头、时间列和 5 × 7 个课程单元格，之后只更新单元格内容
+     */
+    private void buildCourseGrid() {
+        courseGrid.removeAll();
+
         // 添加表头（节次/星期，然后是星期一到星期日）
         String[] weekLabels = {"节次\\星期", "星期一", "星期二", "星期三", "星期四", "星期五", "星期六", "星期日"};
         for (int i = 0; i < weekLabels.length; i++) {
@@ -817,13 +993,6 @@ public class MainFrame extends JFrame {
             courseGrid.add(label);
         }
 
-        // 先获取该周的所有课程（优化：避免在循环中重复查询）
-        List<Course> weeklyCourses = repository.getCoursesByWeek(currentUser.getId(), week);
-        System.out.println("加载第" + week + "周的课程，共 " + weeklyCourses.size() + " 门课程");
-        for (Course c : weeklyCourses) {
-            System.out.println("  课程: " + c.getName() + ", 星期: " + c.getDayOfWeek() + ", 节次: " + c.getTimeSlot() + ", 周次: " + c.getWeek());
-        }
-
         // 添加时间列和课程内容
         // 时间数组 - 节次和时间分开
         String[][] timeData = {
@@ -852,126 +1021,212 @@ public class MainFrame extends JFrame {
             courseGrid.add(timeLabel);
 
             // 每一天的课程（从星期一开始到星期日）
-            String[] daysOrder = {"星期一", "星期二", "星期三", "星期四", "星期五", "星期六", "星期日"};
-            for (String day : daysOrder) {
-                List<Course> dailyCourses = filterByDay(weeklyCourses, day);
-                
-                // 查找当前时间段的具体课程对象
-                Course currentCourse = null;
-                final String courseText; // 声明为final
-                String tempText = "";
-                for (Course course : dailyCourses) {
-                    if (course.getTimeSlot().equals(timeSlot)) {
-                        currentCourse = course;
-                        tempText = course.getName() + "\n" + course.getTeacher() + "\n" + course.getLocation();
-                        break;
-                    }
+            for (int j = 0; j < days.length; j++) {
+                JLabel courseLabel = createCourseCell();
+                courseCells[i][j] = courseLabel;
+                courseGrid.add(courseLabel);
+            }
+        }
+
+        courseGrid.revalidate();
+        courseGrid.repaint();
+    }
+
+    /**
+     * 创建一个课程单元格，显示的课程保存在 client property 中，点击删除、悬停效果都从中读取
+     */
+    private JLabel createCourseCell() {
+        JLabel courseLabel = new JLabel("");
+        courseLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        courseLabel.setVerticalAlignment(SwingConstants.CENTER);
+        courseLabel.setOpaque(true);
+        courseLabel.setBorder(BorderFactory.createEmptyBorder(10, 5, 10, 5));
+        courseLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                Course courseToDelete = (Course) courseLabel.getClientProperty(CELL_COURSE);
+                if (courseToDelete == null) {
+                    return;
                 }
-                courseText = tempText; // 赋值后不再改变
-                
-                // 创建课程单元格 - 使用JLabel和HTML实现居中对齐
-                JLabel courseLabel;
-                
-                if (!courseText.isEmpty() && currentCourse != null) {
-                    // 有课程时，使用HTML格式化文本，居中对齐
-                    String htmlText = "<html><div style='text-align:center;'>" +
-                        "<div style='font-size:12px; margin-bottom:4px; color:#333;'>" + 
-                        currentCourse.getName() + "</div>" +
-                        "<div style='font-size:12px; color:#555; margin-bottom:3px;'>" + 
-                        currentCourse.getTeacher() + "</div>" +
-                        "<div style='font-size:11px; color:#777;'>" + 
-                        currentCourse.getLocation() + "</div>" +
-                        "</div></html>";
-                    
-                    courseLabel = new JLabel(htmlText);
-                    courseLabel.setHorizontalAlignment(SwingConstants.CENTER);
-                    courseLabel.setVerticalAlignment(SwingConstants.CENTER);
-                    courseLabel.setBackground(ModernColorScheme.COURSE_CELL_BG);
-                    courseLabel.setOpaque(true);
-                    courseLabel.setBorder(BorderFactory.createEmptyBorder(10, 5, 10, 5));
-                    
-                    // 添加点击删除功能
-                    courseLabel.setToolTipText("点击删除此课程");
-                    courseLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
-                    
-                    // 直接使用找到的课程对象，包含完整信息
-                    final Course courseToDelete = currentCourse;
-                    courseLabel.addMouseListener(new MouseAdapter() {
-                        @Override
-                        public void mouseClicked(MouseEvent e) {
-                            int result = JOptionPane.showConfirmDialog(
-                                    MainFrame.this,
-                                    "确定要删除这门课吗？\n" + courseText,
-                                    "确认删除",
-                                    JOptionPane.YES_NO_OPTION);
-                            if (result == JOptionPane.YES_OPTION) {
-                                // 使用课程对象的所有属性来删除，确保准确性
-                                boolean deleted = repository.removeCourse(
-                                        courseToDelete.getName(), 
-                                        courseToDelete.getDayOfWeek(), 
-                                        courseToDelete.getTimeSlot(), 
-                                        currentUser, 
-                                        courseToDelete.getWeek());
-                                          
-                                if (deleted) {
-                                    loadCoursesForWeek(week); // 刷新界面
-                                    JOptionPane.showMessageDialog(MainFrame.this, "课程删除成功!");
-                                } else {
-                                    JOptionPane.showMessageDialog(MainFrame.this, "课程删除失败，请检查是否存在该课程", "错误", JOptionPane.ERROR_MESSAGE);
-                                }
-                            }
-                        }
-                        
-                        // 简单的鼠标悬停效果
-                        @Override
-                        public void mouseEntered(MouseEvent e) {
-                            courseLabel.setBackground(ModernColorScheme.COURSE_CELL_HOVER);
-                            // 更新HTML文本颜色为白色
-                            String hoverHtml = "<html><div style='text-align:center;'>" +
-                                "<div style='font-size:12px; margin-bottom:4px; color:#FFF;'>" + 
-                                courseToDelete.getName() + "</div>" +
-                                "<div style='font-size:12px; color:#FFF; margin-bottom:3px;'>" + 
-                                courseToDelete.getTeacher() + "</div>" +
-                                "<div style='font-size:11px; color:#FFF;'>" + 
-                                courseToDelete.getLocation() + "</div>" +
-                                "</div></html>";
-                            courseLabel.setText(hoverHtml);
-                        }
-                        
-                        @Override
-                        public void mouseExited(MouseEvent e) {
-                            courseLabel.setBackground(ModernColorScheme.COURSE_CELL_BG);
-                            // 恢复原始HTML文本颜色
-                            String normalHtml = "<html><div style='text-align:center;'>" +
-                                "<div style='font-size:12px; margin-bottom:4px; color:#333;'>" + 
-                                courseToDelete.getName() + "</div>" +
-                                "<div style='font-size:12px; color:#555; margin-bottom:3px;'>" + 
-                                courseToDelete.getTeacher() + "</div>" +
-                                "<div style='font-size:11px; color:#777;'>" + 
-                                courseToDelete.getLocation() + "</div>" +
-                                "</div></html>";
-                            courseLabel.setText(normalHtml);
-                        }
-                    });
+                String courseText = courseToDelete.getName() + "\n" + courseToDelete.getTeacher() + "\n" + courseToDelete.getLocation();
+                Object[] options = {"仅删除本周", "删除所有周", "删除指定周次...", "取消"};
+                int choice = JOptionPane.showOptionDialog(
+                        MainFrame.this,
+                        "确定要删除这门课吗？\n" + courseText + "\n\n请选择删除范围：",
+                        "确认删除",
+                        JOptionPane.DEFAULT_OPTION,
+                        JOptionPane.QUESTION_MESSAGE,
+                        null,
+                        options,
+                        options[0]);
+
+                long weekMask;
+                if (choice == 0) {
+                    weekMask = WeekMask.of(courseToDelete.getWeek());
+                } else if (choice == 1) {
+                    weekMask = WeekMask.ALL;
+                } else if (choice == 2) {
+                    weekMask = askWeekMask();
+                    if (weekMask == 0) {
+                        return;
+                    }
                 } else {
-                    // 无课时使用白色背景
-                    courseLabel = new JLabel("");
-                    courseLabel.setHorizontalAlignment(SwingConstants.CENTER);
-                    courseLabel.setVerticalAlignment(SwingConstants.CENTER);
-                    courseLabel.setBackground(Color.WHITE);
-                    courseLabel.setBackground(ModernColorScheme.EMPTY_CELL_BG);
-                    courseLabel.setOpaque(true);
-                    courseLabel.setBorder(BorderFactory.createEmptyBorder(10, 5, 10, 5));
+                    return;
                 }
 
-                courseGrid.add(courseLabel);
+                // 按主键删除，所选周次一次完成
+                List<Course> removed = repository.removeCourseFromWeeks(courseToDelete.getId(), weekMask, currentUser);
+                if (!removed.isEmpty()) {
+                    // 单元格由课程变更事件刷新，无需重新加载整张课表
+                    JOptionPane.showMessageDialog(MainFrame.this, "课程删除成功，共删除 " + removed.size() + " 个课时!");
+                } else {
+                    JOptionPane.showMessageDialog(MainFrame.this, "课程删除失败，请检查是否存在该课程", "错误", JOptionPane.ERROR_MESSAGE);
+                }
             }
+            
+            // 简单的鼠标悬停效果
+            @Override
+            public void mouseEntered(MouseEvent e) {
+                Course course = (Course) courseLabel.getClientProperty(CELL_COURSE);
+                if (course != null) {
+                    courseLabel.setBackground(ModernColorScheme.COURSE_CELL_HOVER);
+                    // 更新HTML文本颜色为白色
+                    courseLabel.setText(courseHtml(course, "#FFF", "#FFF", "#FFF"));
+                }
+            }
+            
+            @Override
+            public void mouseExited(MouseEvent e) {
+                Course course = (Course) courseLabel.getClientProperty(CELL_COURSE);
+                if (course != null) {
+                    courseLabel.setBackground(ModernColorScheme.COURSE_CELL_BG);
+                    // 恢复原始HTML文本颜色
+                    courseLabel.setText(courseHtml(course, "#333", "#555", "#777"));
+                }
+            }
+        });
+        return courseLabel;
+    }
+
+    /**
+     * 询问要删除的周次，支持 "1-8"、"3,5,7" 及其组合；取消或输入无效时返回 0
+     */
+    private long askWeekMask() {
+        String input = JOptionPane.showInputDialog(this, "请输入要删除的周次，例如 1-8 或 3,5,7：", "删除指定周次",
+                JOptionPane.QUESTION_MESSAGE);
+        if (input == null || input.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            return WeekMask.parse(input);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "周次格式不正确：" + input, "错误", JOptionPane.ERROR_MESSAGE);
+            return 0;
         }
+    }
 
-        courseGrid.revalidate();
-        courseGrid.repaint();
+    /**
+     * 刷新单个课程单元格，course 为 null 表示无课
+     */
+    private void renderCourseCell(int row, int col, Course course) {
+        JLabel courseLabel = courseCells[row][col];
+        courseLabel.putClientProperty(CELL_COURSE, course);
+        if (course != null) {
+            // 有课程时，使用HTML格式化文本，居中对齐
+            courseLabel.setText(courseHtml(course, "#333", "#555", "#777"));
+            courseLabel.setBackground(ModernColorScheme.COURSE_CELL_BG);
+            // 添加点击删除功能
+            courseLabel.setToolTipText("点击删除此课程");
+            courseLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        } else {
+            // 无课时使用空白背景
+            courseLabel.setText("");
+            courseLabel.setBackground(ModernColorScheme.EMPTY_CELL_BG);
+            courseLabel.setToolTipText(null);
+            courseLabel.setCursor(Cursor.getDefaultCursor());
+        }
+    }
+
+    private static String courseHtml(Course course, String nameColor, String teacherColor, String locationColor) {
+        return "<html><div style='text-align:center;'>" +
+            "<div style='font-size:12px; margin-bottom:4px; color:" + nameColor + ";'>" + 
+            course.getName() + "</div>" +
+            "<div style='font-size:12px; color:" + teacherColor + "; margin-bottom:3px;'>" + 
+            course.getTeacher() + "</div>" +
+            "<div style='font-size:11px; color:" + locationColor + ";'>" + 
+            course.getLocation() + "</div>" +
+            "</div></html>";
+    }
+
+    /**
+     * 课程变更事件：只刷新当前显示周中受影响的那个格子
+     * 事件发布前课表索引已更新，直接从索引读取该格子的最新内容
+     */
+    private void onCourseChanged(CourseChangeEvent event) {
+        if (event.getUserId() != currentUser.getId()) {
+            return;
+        }
+        cacheDirty.set(true);
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> onCourseChanged(event));
+            return;
+        }
+        int row = Timetable.slotIndex(event.getTimeSlot());
+        int col = Timetable.dayIndex(event.getDayOfWeek());
+        if (event.getWeek() != displayedWeek || row < 0 || col < 0 || courseCells[row][col] == null) {
+            return;
+        }
+        renderCourseCell(row, col, scheduleIndex.get(displayedWeek, event.getDayOfWeek(), event.getTimeSlot()));
     }
     
+    /**
+     * 在后台线程拉取增量变更并合并到课表索引，有变更时重绘当前周并写入本地缓存
+     * 数据库不可用时本次同步为空，离线修改留在队列中，恢复后下一次同步会重放并从上次的版本号继续
+     */
+    private void syncInBackground() {
+        if (syncing) {
+            return;
+        }
+        syncing = true;
+        new SwingWorker<CourseDelta, Void>() {
+            @Override
+            protected CourseDelta doInBackground() {
+                CourseDelta delta = scheduleIndex.refresh(repository);
+                if (!delta.isEmpty() || cacheDirty.getAndSet(false)) {
+                    localCache.save(scheduleIndex);
+                }
+                return delta;
+            }
+
+            @Override
+            protected void done() {
+                syncing = false;
+                try {
+                    if (!get().isEmpty()) {
+                        loadCoursesForWeek(displayedWeek);
+                    }
+                    if (repository.isOffline()) {
+                        statusLabel.setText("  离线模式：有 " + repository.getPendingCount() + " 项修改待同步");
+                    }
+                } catch (Exception e) {
+                    System.err.println("同步课表失败: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * 把当前课表索引写入本地缓存（退出登录、切换账号和关闭窗口时调用）
+     */
+    private void saveLocalCache() {
+        try {
+            localCache.save(scheduleIndex);
+            cacheDirty.set(false);
+        } catch (Exception e) {
+            System.err.println("保存本地课表缓存失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 加载并显示课程表（兼容旧方法）
      */
@@ -1004,6 +1259,61 @@ public class MainFrame extends JFrame {
     /**
      * 显示添加课程对话框
      */
+    /**
+     * 按地点、教师和时间直接查询数据库（只查这几个格子，不遍历全校课程），有撞教室或撞教师时请用户确认
+     * 离线或查询失败时跳过检查；返回 false 表示用户取消添加
+     */
+    private boolean confirmCampusClashes(JDialog dialog, String name, String teacher, String location, String day,
+                                         Set<String> slotSet, List<Integer> weeks) {
+        if (repository.isOffline()) {
+            return true;
+        }
+        List<Course> bookings;
+        try {
+            bookings = repository.findBookings(currentUser, location, teacher, day, slotSet, weeks);
+        } catch (StoreException e) {
+            System.err.println("查询教室、教师占用失败，跳过撞课检查: " + e.getMessage());
+            return true;
+        }
+        bookings.sort((a, b) -> a.getWeek() != b.getWeek() ? Integer.compare(a.getWeek(), b.getWeek())
+                : Integer.compare(Timetable.slotIndex(a.getTimeSlot()), Timetable.slotIndex(b.getTimeSlot())));
+
+        Set<String> roomClashes = new LinkedHashSet<>();
+        Map<String, Set<String>> teacherClashes = new LinkedHashMap<>(); // 时间段 -> 教师所在的其他地点
+        for (Course booking : bookings) {
+            String when = new WeekSlot(booking.getWeek(), booking.getTimeSlot()).toString();
+            String place = booking.getLocation() == null ? "" : booking.getLocation().trim();
+            if (place.equals(location)) {
+                // 同名同教师的课（同一门课的其他学生）是正常的，只有不同课程占用同一教室才提示
+                if (!name.equals(booking.getName()) || !teacher.equals(booking.getTeacher())) {
+                    roomClashes.add(when);
+                }
+            } else if (!place.isEmpty() && teacher.equals(booking.getTeacher() == null ? "" : booking.getTeacher().trim())) {
+                teacherClashes.computeIfAbsent(when, k -> new LinkedHashSet<>()).add(place);
+            }
+        }
+
+        if (!roomClashes.isEmpty()) {
+            int choice = JOptionPane.showConfirmDialog(dialog,
+                    "地点 " + location + " 在以下时间段已被其他课程占用：\n" + String.join("\n", roomClashes) + "\n是否仍然添加？",
+                    "教室冲突", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (choice != JOptionPane.YES_OPTION) {
+                return false;
+            }
+        }
+        if (!teacherClashes.isEmpty()) {
+            StringBuilder clashInfo = new StringBuilder();
+            for (Map.Entry<String, Set<String>> clash : teacherClashes.entrySet()) {
+                clashInfo.append(clash.getKey()).append("：").append(String.join("、", clash.getValue())).append("\n");
+            }
+            int choice = JOptionPane.showConfirmDialog(dialog,
+                    "教师 " + teacher + " 在以下时间段已在其他地点上课：\n" + clashInfo + "是否仍然添加？",
+                    "教师冲突", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            return choice == JOptionPane.YES_OPTION;
+        }
+        return true;
+    }
+
     private void showAddCourseDialog() {
         JDialog dialog = new JDialog(this, "添加课程", true);
         dialog.setSize(350, 450); // 增加高度以适应范围选择组件
@@ -1174,35 +1484,35 @@ public class MainFrame extends JFrame {
                     return;
                 }
 
-                // 检查每个时间段的课程冲突
-                boolean hasConflict = false;
+                // 在内存索引中检查所有周次、节次的课程冲突
+                Set<String> slotSet = new LinkedHashSet<>();
+                for (int[] period : selectedPeriods) {
+                    slotSet.add("第" + period[0] + "-" + period[1] + "节");
+                }
+                List<WeekSlot> conflicts = scheduleIndex.findConflicts(day, slotSet, new TreeSet<>(selectedWeeks));
                 StringBuilder conflictInfo = new StringBuilder();
-                
-                for (int week : selectedWeeks) {
-                    List<Course> weeklyCourses = repository.getCoursesByWeek(currentUser.getId(), week);
-                    for (int[] period : selectedPeriods) {
-                        String periodStr = "第" + period[0] + "-" + period[1] + "节";
-                        for (Course c : weeklyCourses) {
-                            if (c.getDayOfWeek().equals(day) && c.getTimeSlot().equals(periodStr)) {
-                                hasConflict = true;
-                                conflictInfo.append("第").append(week).append("周 ").append(periodStr).append("\n");
-                            }
-                        }
-                    }
+                for (WeekSlot conflict : conflicts) {
+                    conflictInfo.append(conflict).append("\n");
                 }
-                
-                if (hasConflict) {
+
+                if (!conflicts.isEmpty()) {
                     JOptionPane.showMessageDialog(dialog, "以下时间段已有课程，请选择其他时间：\n" + conflictInfo.toString(), "课程冲突", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
 
+                // 检查教室是否已被其他用户占用、教师是否同一时间在其他地点上课，只提示，由用户决定是否继续
+                if (!confirmCampusClashes(dialog, name, teacher, location, day, slotSet, selectedWeeks)) {
+                    return;
+                }
+
                 // 为每个周次和节次组合创建并保存课程
                 int successCount = 0;
                 int failCount = 0;
                 StringBuilder failInfo = new StringBuilder();
                 
                 System.out.println("开始添加课程，周次: " + selectedWeeks + ", 节次数量: " + selectedPeriods.size());
-                
+
+                List<Course> newCourses = new ArrayList<>();
                 for (int week : selectedWeeks) {
                     for (int[] period : selectedPeriods) {
                         Course newCourse = new Course();
@@ -1212,18 +1522,21 @@ public class MainFrame extends JFrame {
                         newCourse.setTimeSlot("第" + period[0] + "-" + period[1] + "节");
                         newCourse.setLocation(location);
                         newCourse.setWeek(week);
-                        
-                        System.out.println("添加课程: " + name + ", 第" + week + "周, " + day + ", " + newCourse.getTimeSlot());
-
-                        boolean success = repository.addCourse(newCourse, currentUser);
-                        if (success) {
-                            successCount++;
-                            System.out.println("  成功添加到第" + week + "周");
-                        } else {
-                            failCount++;
-                            failInfo.append("第").append(week).append("周 ").append(newCourse.getTimeSlot()).append("\n");
-                            System.out.println("  失败：第" + week + "周 " + newCourse.getTimeSlot());
-                        }
+                        newCourses.add(newCourse);
+                    }
+                }
+
+                // 所有周次和节次在一个事务内批量插入
+                List<AddResult> results = repository.addCourses(newCourses, currentUser);
+                for (int i = 0; i < newCourses.size(); i++) {
+                    Course newCourse = newCourses.get(i);
+                    if (results.get(i) == AddResult.SUCCESS) {
+                        successCount++;
+                    } else {
+                        failCount++;
+                        failInfo.append("第").append(newCourse.getWeek()).append("周 ").append(newCourse.getTimeSlot())
+                                .append(results.get(i) == AddResult.CONFLICT ? "（时间冲突）" : "").append("\n");
+                        System.out.println("  失败：第" + newCourse.getWeek() + "周 " + newCourse.getTimeSlot() + " " + results.get(i));
                     }
                 }
                 
@@ -1244,8 +1557,10 @@ public class MainFrame extends JFrame {
                 }
                 
                 dialog.dispose();
-                // 刷新界面，默认显示第一周
-                loadCoursesForWeek(selectedWeeks.get(0));
+                // 当前周的格子已由课程变更事件刷新；当前周不在所选周次中时切换到第一个所选周
+                if (!selectedWeeks.contains(displayedWeek)) {
+                    weekSelector.setSelectedIndex(selectedWeeks.get(0) - 1);
+                }
                 // 设置状态提示，提醒用户可以通过周选择器查看其他周的课程
                 if (selectedWeeks.size() > 1) {
                     statusLabel.setText("提示：课程已添加到多个周次，请使用上方的周选择器切换查看");
@@ -12,6 +12,7 @@ public class Course {
     private String timeSlot;    // 节次（如 "第1-2节"）
     private String location;    // 上课地点
     private int week;           // 教学周，默认1
+    private long version;       // 变更版本号，每次增删改递增，用于增量同步
 
     // 构造方法
     public Course(String name, String teacher, String dayOfWeek, String timeSlot, String location) {
@@ -85,6 +86,14 @@ public class Course {
         this.week = week;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
 //通过 toString() 方法便于日志打印和调试。
     @Override
     public String toString() {
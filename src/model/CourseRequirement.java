@@ -0,0 +1,70 @@
+package model;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 自动排课的一条需求：一门课每周上几次（每次占一个节次），在哪些周次、哪些星期可以安排
+ * 同一门课每周的上课时间相同，排课结果对周次范围内的每一周都生效。
+ */
+public class CourseRequirement {
+    private final String name;          // 课程名
+    private final String teacher;       // 授课教师
+    private final String location;      // 上课地点
+    private final int periodsPerWeek;   // 每周上课次数
+    private final long weekMask;        // 上课周次
+    private Set<String> allowedDays = new LinkedHashSet<>(Arrays.asList(Timetable.DAYS)); // 可以安排的星期，默认全部
+
+    public CourseRequirement(String name, String teacher, String location, int periodsPerWeek, long weekMask) {
+        if (periodsPerWeek < 1 || periodsPerWeek > Timetable.CELLS_PER_WEEK) {
+            throw new IllegalArgumentException("每周上课次数无效: " + periodsPerWeek);
+        }
+        if (weekMask == 0) {
+            throw new IllegalArgumentException("没有上课周次");
+        }
+        this.name = name;
+        this.teacher = teacher;
+        this.location = location;
+        this.periodsPerWeek = periodsPerWeek;
+        this.weekMask = weekMask;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTeacher() {
+        return teacher;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public int getPeriodsPerWeek() {
+        return periodsPerWeek;
+    }
+
+    public long getWeekMask() {
+        return weekMask;
+    }
+
+    public Set<String> getAllowedDays() {
+        return allowedDays;
+    }
+
+    public void setAllowedDays(Set<String> allowedDays) {
+        for (String day : allowedDays) {
+            if (Timetable.dayIndex(day) < 0) {
+                throw new IllegalArgumentException("星期无法识别: " + day);
+            }
+        }
+        this.allowedDays = allowedDays;
+    }
+
+    @Override
+    public String toString() {
+        return name + "（每周 " + periodsPerWeek + " 次）";
+    }
+}
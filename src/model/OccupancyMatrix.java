@@ -0,0 +1,189 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 课表占用位图：每个 (星期, 节次) 格子一个 long，其中第 n-1 位表示第 n 周是否有课
+ * 7 天 × 5 节共 35 个 long（280 字节）即可表示第 1-63 周的全部占用情况。
+ * 冲突检查、周次范围查询、多人/多周合并都只是按位与、按位或。
+ *
+ * 本类不是线程安全的，并发访问由调用方加锁。
+ */
+public class OccupancyMatrix {
+    private static final int SLOTS = Timetable.TIME_SLOTS.length;
+
+    private final long[] cells = new long[Timetable.CELLS_PER_WEEK];
+
+    public OccupancyMatrix() {}
+
+    private OccupancyMatrix(long[] source) {
+        System.arraycopy(source, 0, cells, 0, cells.length);
+    }
+
+    // ===================== 单格操作 =====================
+
+    public void set(int week, int day, int slot) {
+        cells[cell(day, slot)] |= WeekMask.of(week);
+    }
+
+    public void clear(int week, int day, int slot) {
+        cells[cell(day, slot)] &= ~WeekMask.of(week);
+    }
+
+    // 把一组周次合并进格子（从按规律行存储的 week_mask 直接构建位图）
+    public void setWeeks(int day, int slot, long weekMask) {
+        cells[cell(day, slot)] |= weekMask;
+    }
+
+    public boolean test(int week, int day, int slot) {
+        return (cells[cell(day, slot)] & WeekMask.of(week)) != 0;
+    }
+
+    /**
+     * 按星期、节次字符串设置占用，无法识别的星期或节次返回 false
+     */
+    public boolean set(int week, String dayOfWeek, String timeSlot) {
+        int day = Timetable.dayIndex(dayOfWeek);
+        int slot = Timetable.slotIndex(timeSlot);
+        if (day < 0 || slot < 0) {
+            return false;
+        }
+        set(week, day, slot);
+        return true;
+    }
+
+    public boolean clear(int week, String dayOfWeek, String timeSlot) {
+        int day = Timetable.dayIndex(dayOfWeek);
+        int slot = Timetable.slotIndex(timeSlot);
+        if (day < 0 || slot < 0) {
+            return false;
+        }
+        clear(week, day, slot);
+        return true;
+    }
+
+    // ===================== 周次范围查询 =====================
+
+    // 某个格子被占用的全部周次掩码
+    public long weeksAt(int day, int slot) {
+        return cells[cell(day, slot)];
+    }
+
+    // 某个格子在给定周次掩码内被占用的周次
+    public long occupiedWeeks(int day, int slot, long weekMask) {
+        return cells[cell(day, slot)] & weekMask;
+    }
+
+    // 某个格子在第 from 周到第 to 周之间是否完全空闲
+    public boolean isFree(int day, int slot, int fromWeek, int toWeek) {
+        return occupiedWeeks(day, slot, WeekMask.range(fromWeek, toWeek)) == 0;
+    }
+
+    /**
+     * 检查一组节次在给定周次内的冲突（slotMask 第 i 位表示第 i 个节次）
+     * 返回所有冲突的 (周次, 节次)，无冲突时返回空列表
+     */
+    public List<WeekSlot> conflicts(int day, int slotMask, long weekMask) {
+        List<WeekSlot> conflicts = new ArrayList<>();
+        long[] hits = new long[SLOTS];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if ((slotMask & (1 << slot)) != 0) {
+                hits[slot] = cells[cell(day, slot)] & weekMask;
+            }
+        }
+        // 按周次、节次顺序输出
+        for (int week : WeekMask.weeks(orAll(hits))) {
+            long bit = WeekMask.of(week);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if ((hits[slot] & bit) != 0) {
+                    conflicts.add(new WeekSlot(week, Timetable.TIME_SLOTS[slot]));
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    // 整张位图是否与给定周次有交集（用于快速判断某些周是否有任何课）
+    public boolean anyInWeeks(long weekMask) {
+        for (long cell : cells) {
+            if ((cell & weekMask) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ===================== 批量运算 =====================
+
+    // 按位或：合并两张课表的占用（例如多人、多门课叠加）
+    public OccupancyMatrix or(OccupancyMatrix other) {
+        OccupancyMatrix result = copy();
+        for (int i = 0; i < cells.length; i++) {
+            result.cells[i] |= other.cells[i];
+        }
+        return result;
+    }
+
+    // 按位与：两张课表同时占用的格子
+    public OccupancyMatrix and(OccupancyMatrix other) {
+        OccupancyMatrix result = copy();
+        for (int i = 0; i < cells.length; i++) {
+            result.cells[i] &= other.cells[i];
+        }
+        return result;
+    }
+
+    // 原地按位或，批量累加时避免产生中间对象
+    public void orInPlace(OccupancyMatrix other) {
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] |= other.cells[i];
+        }
+    }
+
+    // 两张课表是否有任何重叠的 (周次, 星期, 节次)
+    public boolean intersects(OccupancyMatrix other) {
+        for (int i = 0; i < cells.length; i++) {
+            if ((cells[i] & other.cells[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 被占用的 (周次, 星期, 节次) 总数
+    public int count() {
+        int total = 0;
+        for (long cell : cells) {
+            total += Long.bitCount(cell);
+        }
+        return total;
+    }
+
+    public OccupancyMatrix copy() {
+        return new OccupancyMatrix(cells);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof OccupancyMatrix && Arrays.equals(cells, ((OccupancyMatrix) o).cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(cells);
+    }
+
+    private static long orAll(long[] values) {
+        long result = 0;
+        for (long value : values) {
+            result |= value;
+        }
+        return result;
+    }
+
+    private static int cell(int day, int slot) {
+        return day * SLOTS + slot;
+    }
+}
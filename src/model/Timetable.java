@@ -0,0 +1,53 @@
+package model;
+
+import java.util.Collection;
+
+/**
+ * 课表网格常量：星期、节次与教学周范围
+ * 提供星期、节次字符串与数组下标之间的转换
+ */
+public class Timetable {
+    public static final String[] DAYS = {"星期一", "星期二", "星期三", "星期四", "星期五", "星期六", "星期日"};
+    public static final String[] TIME_SLOTS = {"第1-2节", "第3-4节", "第5-6节", "第7-8节", "第9-10节"};
+    public static final int MAX_WEEK = 20;                                    // 最大教学周
+    public static final int CELLS_PER_WEEK = DAYS.length * TIME_SLOTS.length; // 每周 7 × 5 个格子
+
+    private Timetable() {}
+
+    // 星期字符串转下标（0-6），无法识别返回 -1
+    public static int dayIndex(String dayOfWeek) {
+        for (int i = 0; i < DAYS.length; i++) {
+            if (DAYS[i].equals(dayOfWeek)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 节次字符串转下标（0-4），无法识别返回 -1
+    public static int slotIndex(String timeSlot) {
+        for (int i = 0; i < TIME_SLOTS.length; i++) {
+            if (TIME_SLOTS[i].equals(timeSlot)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 节次集合转位掩码：第 i 位表示第 i 个节次，无法识别的节次忽略
+    public static int slotMask(Collection<String> timeSlots) {
+        int mask = 0;
+        for (String timeSlot : timeSlots) {
+            int slot = slotIndex(timeSlot);
+            if (slot >= 0) {
+                mask |= 1 << slot;
+            }
+        }
+        return mask;
+    }
+
+    // 教学周是否在有效范围内
+    public static boolean isValidWeek(int week) {
+        return week >= 1 && week <= MAX_WEEK;
+    }
+}
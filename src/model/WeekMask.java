@@ -0,0 +1,99 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 教学周位掩码工具：第 n 周对应第 n-1 位，一个 long 可表示第 1-63 周
+ */
+public class WeekMask {
+    public static final int MAX_WEEK = 63;
+    public static final long ALL = Long.MAX_VALUE; // 第 1-63 周全部
+
+    private WeekMask() {}
+
+    // 单个周次对应的位
+    public static long of(int week) {
+        if (week < 1 || week > MAX_WEEK) {
+            throw new IllegalArgumentException("教学周超出范围: " + week);
+        }
+        return 1L << (week - 1);
+    }
+
+    // 多个周次合并为掩码
+    public static long of(Collection<Integer> weeks) {
+        long mask = 0;
+        for (int week : weeks) {
+            mask |= of(week);
+        }
+        return mask;
+    }
+
+    // 第 from 周到第 to 周（含）的连续掩码
+    public static long range(int from, int to) {
+        long mask = 0;
+        for (int week = from; week <= to; week++) {
+            mask |= of(week);
+        }
+        return mask;
+    }
+
+    public static boolean contains(long mask, int week) {
+        return week >= 1 && week <= MAX_WEEK && (mask & (1L << (week - 1))) != 0;
+    }
+
+    // 掩码中包含的周次，按升序排列
+    public static List<Integer> weeks(long mask) {
+        List<Integer> weeks = new ArrayList<>(Long.bitCount(mask));
+        while (mask != 0) {
+            weeks.add(Long.numberOfTrailingZeros(mask) + 1);
+            mask &= mask - 1; // 清除最低位的 1
+        }
+        return weeks;
+    }
+
+    public static int count(long mask) {
+        return Long.bitCount(mask);
+    }
+
+    // 周次格式化为文本，连续的周次合并为区间，如 "1-8,10,12-16"，与 parse 互逆
+    public static String format(long mask) {
+        StringBuilder text = new StringBuilder();
+        while (mask != 0) {
+            int from = Long.numberOfTrailingZeros(mask);
+            int to = from;
+            while (to + 1 < MAX_WEEK && (mask & (1L << (to + 1))) != 0) {
+                to++;
+            }
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            text.append(from + 1);
+            if (to > from) {
+                text.append('-').append(to + 1);
+            }
+            mask &= ~range(from + 1, to + 1);
+        }
+        return text.toString();
+    }
+
+    // 解析周次文本，支持 "1-8"、"3,5,7" 及其组合（中文逗号亦可），格式错误抛出 IllegalArgumentException
+    public static long parse(String text) {
+        long mask = 0;
+        for (String part : text.replace('，', ',').split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            int dash = part.indexOf('-');
+            if (dash > 0) {
+                mask |= range(Integer.parseInt(part.substring(0, dash).trim()),
+                        Integer.parseInt(part.substring(dash + 1).trim()));
+            } else {
+                mask |= of(Integer.parseInt(part));
+            }
+        }
+        return mask;
+    }
+}
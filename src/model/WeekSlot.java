@@ -0,0 +1,40 @@
+package model;
+
+/**
+ * 某一教学周中的一个节次，用于表示冲突的 (周次, 节次) 组合
+ */
+public class WeekSlot {
+    private final int week;         // 教学周
+    private final String timeSlot;  // 节次（如 "第1-2节"）
+
+    public WeekSlot(int week, String timeSlot) {
+        this.week = week;
+        this.timeSlot = timeSlot;
+    }
+
+    public int getWeek() {
+        return week;
+    }
+
+    public String getTimeSlot() {
+        return timeSlot;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WeekSlot)) return false;
+        WeekSlot other = (WeekSlot) o;
+        return week == other.week && timeSlot.equals(other.timeSlot);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * week + timeSlot.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "第" + week + "周 " + timeSlot;
+    }
+}
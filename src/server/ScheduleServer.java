@@ -0,0 +1,866 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import data.AddResult;
+import data.CacheStats;
+import data.CachedCourseRepository;
+import data.CourseDelta;
+import data.DatabaseConnection;
+import data.GroupAvailability;
+import data.RoomIndex;
+import data.StoreException;
+import data.Stores;
+import data.TeacherIndex;
+import data.TimetableSolver;
+import data.UserRepository;
+import model.Course;
+import model.CourseRequirement;
+import model.OccupancyMatrix;
+import model.Timetable;
+import model.User;
+import model.WeekMask;
+import model.WeekSlot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 无界面课表服务：把 CourseRepository、UserRepository 的操作以 JSON over HTTP 暴露出来
+ *
+ * 所有请求共用一个带缓存的课程仓库和同一个连接池，客户端不再各自直连数据库。
+ * 每个请求一个虚拟线程（JDK 21+）；运行在更早的 JDK 上时退回固定大小的线程池。
+ *
+ * 接口（除登录、注册外都需要请求头 Authorization: Bearer <token>）：
+ *   POST   /api/login              {username, password}          -> {token, user}
+ *   POST   /api/register           {username, password, name}    -> {user}
+ *   POST   /api/logout
+ *   PUT    /api/password           {oldPassword, newPassword}
+ *   GET    /api/courses?week=3                                   -> [course]，缺省 week 时返回整学期
+ *   POST   /api/courses            {name, teacher, dayOfWeek, timeSlot, location, weeks: [1, 2]}
+ *   DELETE /api/courses/{id}?weeks=1-8                            缺省 weeks 时删除所有周
+ *   POST   /api/courses/delete     {ids: [1, 2]}
+ *   GET    /api/conflicts?day=星期一&slots=第1-2节,第3-4节&weeks=1-16
+ *   GET    /api/sync?since=0                                     -> {version, full, courses, deleted}，增量同步，见 CourseDelta
+ *   GET    /api/rooms/free?week=3&day=星期一&slot=第1-2节            -> [地点]，该时间段空闲的教室
+ *   GET    /api/rooms/clashes?location=A栋101&day=星期一&slots=第1-2节&weeks=1-16
+ *                                                                -> [{week, timeSlot}]，已被其他用户占用的时间段
+ *   GET    /api/teachers/clashes?teacher=王老师&location=A栋101&day=星期一&slots=第1-2节&weeks=1-16
+ *                                                                -> [{week, timeSlot}]，该教师已在其他地点上课的时间段
+ *   GET    /api/teachers/double-bookings                         -> [{teacher, week, dayOfWeek, timeSlot, locations}]
+ *   POST   /api/solve              {requirements: [{name, teacher, location, periodsPerWeek, weeks: "1-16", days: [星期一]}],
+ *                                   budgetMillis, apply}             -> 自动排课结果，apply 为 true 时直接添加
+ *                                   budgetMillis 不超过 MAX_SOLVE_MILLIS，同时最多 MAX_CONCURRENT_SOLVES 个排课请求
+ *   POST   /api/groups/free        {members: [用户名], weeks: "1-16", minWeeks}
+ *                                   -> [{dayOfWeek, timeSlot, weeks, weekCount}]，当前用户与成员都空闲的时间，空闲周数多的在前
+ *                                   members 最多 MAX_GROUP_MEMBERS 个。任何登录用户都可以查询任意用户名，
+ *                                   结果会间接暴露成员的忙闲时间（不含课程内容），小组成员少时可反推出单个成员的课表
+ *   GET    /api/stats                                            缓存、连接池统计
+ */
+public class ScheduleServer {
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final int BACKLOG = 1024;
+    private static final int CACHE_ENTRIES = 10000;
+    private static final long CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final String BEARER = "Bearer ";
+    private static final LocalTime REBUILD_TIME = LocalTime.of(3, 0); // 每晚全量重建全校索引的时间
+    // 桌面客户端直接写数据库，服务端索引看不到这些写入，按此间隔全量重建（分钟，0 表示只在每晚重建）
+    private static final long INDEX_REFRESH_MINUTES = Long.getLong("course.index.refreshMinutes", 10);
+    private static final int INDEX_RETRY_SECONDS = 60;                // 启动时建立索引失败后的重试间隔
+    private static final long SESSION_IDLE_MILLIS = TimeUnit.HOURS.toMillis(2);      // 会话空闲超过此时间失效
+    private static final long SESSION_MAX_MILLIS = TimeUnit.DAYS.toMillis(7);        // 会话最长有效期（与是否活跃无关）
+    private static final int MAX_BODY_BYTES = 1 << 20;                               // 请求体上限 1 MB
+    private static final int MAX_SESSIONS = 100_000;                                 // 会话数上限，超出时淘汰最久未用的
+    private static final long MAX_SOLVE_MILLIS = 2_000;                              // 自动排课时间预算上限（求解会占满公共 ForkJoinPool）
+    private static final int MAX_CONCURRENT_SOLVES = 2;                              // 同时进行的自动排课请求数上限
+    private static final int MAX_GROUP_MEMBERS = 500;                                // 小组空闲时间查询的成员数上限
+
+    private final int port;
+    private final CachedCourseRepository courseRepository;
+    private final UserRepository userRepository;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>(); // token -> 登录会话
+    private final Semaphore solveSlots = new Semaphore(MAX_CONCURRENT_SOLVES);
+    private HttpServer server;
+    private ExecutorService executor;
+    private ScheduledExecutorService maintenance;
+
+    public ScheduleServer(int port) {
+        this(port, new CachedCourseRepository(CACHE_ENTRIES, CACHE_TTL_MILLIS), new UserRepository());
+    }
+
+    public ScheduleServer(int port, CachedCourseRepository courseRepository, UserRepository userRepository) {
+        this.port = port;
+        this.courseRepository = courseRepository;
+        this.userRepository = userRepository;
+    }
+
+    public synchronized void start() throws IOException {
+        // 响应头和响应体分两次写出，不关闭 Nagle 算法时会与客户端的延迟确认叠加，每个请求多等约 40ms
+        // 该属性在 HttpServer 首次创建时读取，必须在 create 之前设置
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        scheduleMaintenance();
+        loadIndexes();
+        server.createContext("/api/", this::handle);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.start();
+        System.out.println("课表服务已启动，端口 " + getPort() + "，存储后端 " + Stores.getBackend());
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(1);
+        executor.shutdown();
+        maintenance.shutdownNow();
+        server = null;
+        System.out.println("课表服务已停止");
+    }
+
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    /**
+     * 建立全校教室、教师索引；数据库暂时不可用时索引保持未建立（相关接口返回 503），
+     * 每隔 INDEX_RETRY_SECONDS 在后台重试直到成功
+     */
+    private void loadIndexes() {
+        try {
+            RoomIndex.load();
+            TeacherIndex.load();
+        } catch (RuntimeException e) {
+            System.err.println("建立全校索引失败，" + INDEX_RETRY_SECONDS + " 秒后重试: " + e.getMessage());
+            maintenance.schedule(this::loadIndexes, INDEX_RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 后台维护任务：每晚 REBUILD_TIME 及每隔 INDEX_REFRESH_MINUTES 全量重建教室、教师索引，
+     * 纳入桌面客户端直接写入数据库的课程并纠正增量维护累积的偏差；每 10 分钟清理过期会话
+     */
+    private void scheduleMaintenance() {
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "server-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = LocalDateTime.of(LocalDate.now(), REBUILD_TIME);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        maintenance.scheduleAtFixedRate(this::rebuildIndexes,
+                Duration.between(now, next).toMillis(), TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+        if (INDEX_REFRESH_MINUTES > 0) {
+            maintenance.scheduleAtFixedRate(this::rebuildIndexes,
+                    INDEX_REFRESH_MINUTES, INDEX_REFRESH_MINUTES, TimeUnit.MINUTES);
+        }
+        // 定期清理过期会话，不再访问的会话也不会一直占用内存
+        maintenance.scheduleAtFixedRate(this::purgeExpiredSessions, 10, 10, TimeUnit.MINUTES);
+    }
+
+    private void rebuildIndexes() {
+        try {
+            RoomIndex.rebuild();
+        } catch (RuntimeException e) {
+            System.err.println("重建教室占用索引失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+        try {
+            TeacherIndex.rebuild();
+        } catch (RuntimeException e) {
+            System.err.println("重建教师时间线索引失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 每个请求一个虚拟线程；JDK 21 之前没有该方法，退回固定线程池
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            ExecutorService virtual = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            System.out.println("请求处理使用虚拟线程");
+            return virtual;
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(16, Runtime.getRuntime().availableProcessors() * 8);
+            System.out.println("当前 JDK 不支持虚拟线程，使用 " + threads + " 个平台线程处理请求");
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    // ===================== 请求分发 =====================
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            if (path.equals("/api/login")) {
+                requireMethod(method, "POST");
+                send(exchange, 200, login(readBody(exchange)));
+                return;
+            }
+            if (path.equals("/api/register")) {
+                requireMethod(method, "POST");
+                send(exchange, 200, register(readBody(exchange)));
+                return;
+            }
+
+            User user = authenticate(exchange);
+            if (path.equals("/api/logout")) {
+                requireMethod(method, "POST");
+                sessions.remove(token(exchange));
+                send(exchange, 200, result(true));
+            } else if (path.equals("/api/password")) {
+                requireMethod(method, "PUT");
+                send(exchange, 200, updatePassword(user, token(exchange), readBody(exchange)));
+            } else if (path.equals("/api/courses")) {
+                if (method.equals("GET")) {
+                    send(exchange, 200, listCourses(user, query));
+                } else {
+                    requireMethod(method, "POST");
+                    send(exchange, 200, addCourses(user, readBody(exchange)));
+                }
+            } else if (path.equals("/api/courses/delete")) {
+                requireMethod(method, "POST");
+                send(exchange, 200, deleteCourses(user, readBody(exchange)));
+            } else if (path.startsWith("/api/courses/")) {
+                requireMethod(method, "DELETE");
+                int courseId = parseInt(path.substring("/api/courses/".length()), "课程ID");
+                long weekMask = query.containsKey("weeks") && !query.get("weeks").equals("all")
+                        ? WeekMask.parse(query.get("weeks")) : WeekMask.ALL;
+                send(exchange, 200, courseList(courseRepository.removeCourseFromWeeks(courseId, weekMask, user)));
+            } else if (path.equals("/api/conflicts")) {
+                requireMethod(method, "GET");
+                send(exchange, 200, findConflicts(user, query));
+            } else if (path.equals("/api/sync")) {
+                requireMethod(method, "GET");
+                send(exchange, 200, sync(user, query));
+            } else if (path.equals("/api/rooms/free")) {
+                requireMethod(method, "GET");
+                send(exchange, 200, findFreeRooms(query));
+            } else if (path.equals("/api/rooms/clashes")) {
+                requireMethod(method, "GET");
+                send(exchange, 200, findRoomClashes(user, query));
+            } else if (path.equals("/api/teachers/clashes")) {
+                requireMethod(method, "GET");
+                send(exchange, 200, findTeacherClashes(query));
+            } else if (path.equals("/api/teachers/double-bookings")) {
+                requireMethod(method, "GET");
+                send(exchange, 200, doubleBookings());
+            } else if (path.equals("/api/solve")) {
+                requireMethod(method, "POST");
+                send(exchange, 200, solve(user, readBody(exchange)));
+            } else if (path.equals("/api/groups/free")) {
+                requireMethod(method, "POST");
+                send(exchange, 200, groupFree(user, readBody(exchange)));
+            } else if (path.equals("/api/stats")) {
+                requireMethod(method, "GET");
+                send(exchange, 200, stats());
+            } else {
+                throw new ApiException(404, "接口不存在: " + path);
+            }
+        } catch (ApiException e) {
+            send(exchange, e.status, error(e.getMessage()));
+        } catch (IllegalArgumentException | ClassCastException e) {
+            send(exchange, 400, error("请求参数错误: " + e.getMessage()));
+        } catch (StoreException e) {
+            System.err.println("处理请求时数据库不可用: " + exchange.getRequestURI() + " " + e.getMessage());
+            send(exchange, 503, error("数据库暂时不可用，请稍后重试"));
+        } catch (RuntimeException e) {
+            System.err.println("处理请求出错: " + exchange.getRequestURI() + " " + e.getMessage());
+            e.printStackTrace();
+            send(exchange, 500, error("服务器内部错误"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // ===================== 用户 =====================
+
+    private Object login(Map<String, Object> body) {
+        User user = userRepository.authenticate(string(body, "username"), string(body, "password"));
+        if (user == null) {
+            throw new ApiException(401, "用户名或密码错误");
+        }
+        String token = UUID.randomUUID().toString();
+        if (sessions.size() >= MAX_SESSIONS) {
+            evictSessions();
+        }
+        sessions.put(token, new Session(user));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("token", token);
+        result.put("user", userJson(user));
+        return result;
+    }
+
+    private Object register(Map<String, Object> body) {
+        User user = new User(string(body, "username"), string(body, "password"), string(body, "name"));
+        if (user.getUsername().isEmpty() || user.getPassword().isEmpty()) {
+            throw new IllegalArgumentException("用户名和密码不能为空");
+        }
+        if (userRepository.findByUsername(user.getUsername()) != null) {
+            throw new ApiException(409, "用户名已存在");
+        }
+        if (!userRepository.register(user)) {
+            throw new ApiException(500, "注册失败");
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("user", userJson(user));
+        return result;
+    }
+
+    /**
+     * 修改密码成功后注销该用户的其他会话，只保留发起修改的这一个
+     */
+    private Object updatePassword(User user, String currentToken, Map<String, Object> body) {
+        boolean success = userRepository.updatePassword(user.getId(), string(body, "oldPassword"), string(body, "newPassword"));
+        if (!success) {
+            throw new ApiException(400, "旧密码不正确");
+        }
+        sessions.entrySet().removeIf(entry -> entry.getValue().user.getId() == user.getId()
+                && !entry.getKey().equals(currentToken));
+        return result(true);
+    }
+
+    private User authenticate(HttpExchange exchange) {
+        String token = token(exchange);
+        Session session = token == null ? null : sessions.get(token);
+        long now = System.currentTimeMillis();
+        if (session == null || session.isExpired(now)) {
+            if (session != null) {
+                sessions.remove(token, session);
+            }
+            throw new ApiException(401, "未登录或登录已过期");
+        }
+        session.lastUsedAt = now;
+        return session.user;
+    }
+
+    private void purgeExpiredSessions() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> session.isExpired(now));
+    }
+
+    /**
+     * 会话数达到上限：先清理过期会话，仍然超出时淘汰最久未使用的十分之一
+     */
+    private synchronized void evictSessions() {
+        purgeExpiredSessions();
+        if (sessions.size() < MAX_SESSIONS) {
+            return;
+        }
+        List<Map.Entry<String, Session>> entries = new ArrayList<>(sessions.entrySet());
+        entries.sort((a, b) -> Long.compare(a.getValue().lastUsedAt, b.getValue().lastUsedAt));
+        for (int i = 0; i < entries.size() / 10 + 1 && i < entries.size(); i++) {
+            sessions.remove(entries.get(i).getKey());
+        }
+    }
+
+    private static String token(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith(BEARER)) {
+            return null;
+        }
+        return header.substring(BEARER.length()).trim();
+    }
+
+    // ===================== 课程 =====================
+
+    private Object listCourses(User user, Map<String, String> query) {
+        if (!query.containsKey("week")) {
+            return courseList(courseRepository.getCoursesByUser(user));
+        }
+        int week = parseInt(query.get("week"), "周次");
+        if (!Timetable.isValidWeek(week)) {
+            throw new IllegalArgumentException("周次无效: " + week);
+        }
+        return courseList(courseRepository.getCoursesByWeek(user.getId(), week));
+    }
+
+    /**
+     * 一门课在多个周次上各占一行，批量写入；结果按周次逐一返回
+     */
+    private Object addCourses(User user, Map<String, Object> body) {
+        String dayOfWeek = string(body, "dayOfWeek");
+        String timeSlot = string(body, "timeSlot");
+        if (Timetable.dayIndex(dayOfWeek) < 0 || Timetable.slotIndex(timeSlot) < 0) {
+            throw new IllegalArgumentException("星期或节次无法识别");
+        }
+        List<Integer> weeks = new ArrayList<>();
+        Object rawWeeks = body.get("weeks");
+        if (rawWeeks == null) {
+            weeks.add(1);
+        } else {
+            for (Object week : (List<?>) rawWeeks) {
+                int value = ((Number) week).intValue();
+                if (!Timetable.isValidWeek(value)) {
+                    throw new IllegalArgumentException("周次无效: " + value);
+                }
+                weeks.add(value);
+            }
+        }
+
+        List<Course> courses = new ArrayList<>();
+        for (int week : weeks) {
+            Course course = new Course(string(body, "name"), string(body, "teacher"), dayOfWeek, timeSlot,
+                    string(body, "location"));
+            course.setWeek(week);
+            courses.add(course);
+        }
+        List<AddResult> results = courseRepository.addCourses(courses, user);
+
+        List<Object> items = new ArrayList<>();
+        for (int i = 0; i < courses.size(); i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("week", courses.get(i).getWeek());
+            item.put("result", results.get(i).name());
+            items.add(item);
+        }
+        return items;
+    }
+
+    private Object deleteCourses(User user, Map<String, Object> body) {
+        Object rawIds = body.get("ids");
+        if (rawIds == null) {
+            throw new IllegalArgumentException("缺少 ids");
+        }
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (Object id : (List<?>) rawIds) {
+            ids.add(((Number) id).intValue());
+        }
+        return courseList(courseRepository.removeCourses(ids, user));
+    }
+
+    private Object findConflicts(User user, Map<String, String> query) {
+        String day = query.get("day");
+        if (day == null) {
+            throw new IllegalArgumentException("缺少 day");
+        }
+        return weekSlotList(courseRepository.findConflicts(user, day, timeSlots(query), weeks(query)));
+    }
+
+    // ===================== 教室 =====================
+
+    private Object findFreeRooms(Map<String, String> query) {
+        String day = query.get("day");
+        String slot = query.get("slot");
+        if (day == null || slot == null || !query.containsKey("week")) {
+            throw new IllegalArgumentException("缺少 week、day 或 slot");
+        }
+        return roomIndex().findFreeRooms(parseInt(query.get("week"), "周次"), day, slot);
+    }
+
+    private Object findRoomClashes(User user, Map<String, String> query) {
+        String location = query.get("location");
+        String day = query.get("day");
+        if (location == null || day == null) {
+            throw new IllegalArgumentException("缺少 location 或 day");
+        }
+        return weekSlotList(roomIndex().findClashes(location, day, timeSlots(query), weeks(query), user.getId()));
+    }
+
+    // ===================== 自动排课 =====================
+
+    private Object solve(User user, Map<String, Object> body) {
+        List<CourseRequirement> requirements = new ArrayList<>();
+        Object rawRequirements = body.get("requirements");
+        if (rawRequirements == null) {
+            throw new IllegalArgumentException("缺少 requirements");
+        }
+        for (Object raw : (List<?>) rawRequirements) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> item = (Map<String, Object>) raw;
+            Object periods = item.get("periodsPerWeek");
+            CourseRequirement requirement = new CourseRequirement(string(item, "name"), string(item, "teacher"),
+                    string(item, "location"), periods == null ? 1 : ((Number) periods).intValue(),
+                    teachingWeeks(string(item, "weeks")));
+            if (item.get("days") != null) {
+                Set<String> days = new LinkedHashSet<>();
+                for (Object day : (List<?>) item.get("days")) {
+                    days.add(day.toString().trim());
+                }
+                requirement.setAllowedDays(days);
+            }
+            requirements.add(requirement);
+        }
+
+        OccupancyMatrix existing = new OccupancyMatrix();
+        for (Course course : courseRepository.getCoursesByUser(user)) {
+            existing.set(course.getWeek(), course.getDayOfWeek(), course.getTimeSlot());
+        }
+        TimetableSolver solver = new TimetableSolver(existing, user.getId());
+        if (body.get("budgetMillis") != null) {
+            long budget = ((Number) body.get("budgetMillis")).longValue();
+            solver.setBudgetMillis(Math.max(1, Math.min(budget, MAX_SOLVE_MILLIS)));
+        }
+        if (!solveSlots.tryAcquire()) {
+            throw new ApiException(503, "排课任务繁忙，请稍后重试");
+        }
+        TimetableSolver.Solution solution;
+        try {
+            solution = solver.solve(requirements);
+        } finally {
+            solveSlots.release();
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("complete", solution.isComplete());
+        result.put("placed", solution.getPlacedPeriods());
+        result.put("total", solution.getTotalPeriods());
+        result.put("sameDayPenalty", solution.getPenalty());
+        result.put("timedOut", solution.isTimedOut());
+        result.put("elapsedMillis", solution.getElapsedMillis());
+        List<Object> unplaced = new ArrayList<>();
+        for (CourseRequirement requirement : solution.getUnplaced()) {
+            unplaced.add(requirement.getName());
+        }
+        result.put("unplaced", unplaced);
+        result.put("courses", courseList(solution.getCourses()));
+        if (Boolean.TRUE.equals(body.get("apply")) && !solution.getCourses().isEmpty()) {
+            List<AddResult> results = courseRepository.addCourses(solution.getCourses(), user);
+            result.put("added", results.stream().filter(r -> r == AddResult.SUCCESS).count());
+        }
+        return result;
+    }
+
+    /**
+     * 请求路径只读取已发布的索引（volatile），不调用 load()：load、rebuild 持有类锁，
+     * 全量重建期间会阻塞所有请求。索引尚未建立（启动时数据库不可用）时返回 503
+     */
+    private static RoomIndex roomIndex() {
+        RoomIndex index = RoomIndex.current();
+        if (index == null) {
+            throw new ApiException(503, "教室索引尚未建立，请稍后重试");
+        }
+        return index;
+    }
+
+    private static TeacherIndex teacherIndex() {
+        TeacherIndex index = TeacherIndex.current();
+        if (index == null) {
+            throw new ApiException(503, "教师索引尚未建立，请稍后重试");
+        }
+        return index;
+    }
+
+    // ===================== 小组空闲时间 =====================
+
+    private Object groupFree(User user, Map<String, Object> body) {
+        Object rawMembers = body.get("members");
+        if (rawMembers == null) {
+            throw new IllegalArgumentException("缺少 members");
+        }
+        Set<String> usernames = new LinkedHashSet<>();
+        for (Object member : (List<?>) rawMembers) {
+            usernames.add(member.toString().trim());
+        }
+        if (usernames.size() > MAX_GROUP_MEMBERS) {
+            throw new IllegalArgumentException("小组成员不能超过 " + MAX_GROUP_MEMBERS + " 人");
+        }
+        Map<String, Integer> ids = userRepository.findIdsByUsernames(usernames);
+        Set<Integer> userIds = new LinkedHashSet<>();
+        userIds.add(user.getId());
+        List<String> unknown = new ArrayList<>();
+        for (String username : usernames) {
+            Integer id = ids.get(username);
+            if (id == null) {
+                unknown.add(username);
+            } else {
+                userIds.add(id);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new ApiException(404, "用户不存在: " + String.join("、", unknown));
+        }
+        String weeks = string(body, "weeks");
+        Object minWeeks = body.get("minWeeks");
+        GroupAvailability group = GroupAvailability.load(userIds);
+        List<Object> items = new ArrayList<>();
+        for (GroupAvailability.FreeSlot slot : group.findCommonFree(
+                weeks.isEmpty() ? WeekMask.range(1, Timetable.MAX_WEEK) : WeekMask.parse(weeks),
+                minWeeks == null ? 1 : ((Number) minWeeks).intValue())) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("dayOfWeek", slot.getDayOfWeek());
+            item.put("timeSlot", slot.getTimeSlot());
+            item.put("weeks", WeekMask.format(slot.getWeekMask()));
+            item.put("weekCount", slot.getWeekCount());
+            items.add(item);
+        }
+        return items;
+    }
+
+    // ===================== 教师 =====================
+
+    private Object findTeacherClashes(Map<String, String> query) {
+        String teacher = query.get("teacher");
+        String location = query.get("location");
+        String day = query.get("day");
+        if (teacher == null || location == null || day == null) {
+            throw new IllegalArgumentException("缺少 teacher、location 或 day");
+        }
+        return weekSlotList(teacherIndex().findClashes(teacher, location, day, timeSlots(query), weeks(query)));
+    }
+
+    private Object doubleBookings() {
+        List<Object> items = new ArrayList<>();
+        for (TeacherIndex.DoubleBooking booking : teacherIndex().findDoubleBookings()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("teacher", booking.getTeacher());
+            item.put("week", booking.getWeek());
+            item.put("dayOfWeek", booking.getDayOfWeek());
+            item.put("timeSlot", booking.getTimeSlot());
+            item.put("locations", booking.getLocations());
+            items.add(item);
+        }
+        return items;
+    }
+
+    // slots=第1-2节,第3-4节
+    private static Set<String> timeSlots(Map<String, String> query) {
+        String slots = query.get("slots");
+        if (slots == null) {
+            throw new IllegalArgumentException("缺少 slots");
+        }
+        Set<String> timeSlots = new LinkedHashSet<>();
+        for (String slot : slots.split(",")) {
+            timeSlots.add(slot.trim());
+        }
+        return timeSlots;
+    }
+
+    // 排课的周次文本，为空时为整个学期；与添加课程一样只接受第 1-MAX_WEEK 周，
+    // 否则求解器会把学期外的周次当作空闲排进去，apply 时再绕过添加课程的周次检查写入数据库
+    private static long teachingWeeks(String text) {
+        if (text.isEmpty()) {
+            return WeekMask.range(1, Timetable.MAX_WEEK);
+        }
+        long weekMask = WeekMask.parse(text);
+        if (weekMask == 0 || (weekMask & ~WeekMask.range(1, Timetable.MAX_WEEK)) != 0) {
+            throw new IllegalArgumentException("周次无效: " + text + "（应在第 1-" + Timetable.MAX_WEEK + " 周内）");
+        }
+        return weekMask;
+    }
+
+    // weeks=1-16，缺省为第 1 周
+    private static Set<Integer> weeks(Map<String, String> query) {
+        long weekMask = query.containsKey("weeks") ? WeekMask.parse(query.get("weeks")) : WeekMask.of(1);
+        return new LinkedHashSet<>(WeekMask.weeks(weekMask));
+    }
+
+    private Object sync(User user, Map<String, String> query) {
+        long since = query.containsKey("since") ? parseLong(query.get("since"), "版本号") : 0;
+        CourseDelta delta = courseRepository.sync(user.getId(), since);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("since", delta.getSinceVersion());
+        result.put("version", delta.getVersion());
+        result.put("full", delta.isFull()); // 为 true 时客户端应清空本地课表后整体替换
+        result.put("courses", courseList(delta.getCourses()));
+        result.put("deleted", delta.getDeletedIds());
+        return result;
+    }
+
+    private Object stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("backend", Stores.getBackend());
+        result.put("sessions", sessions.size());
+        CacheStats cache = courseRepository.getStats();
+        Map<String, Object> cacheJson = new LinkedHashMap<>();
+        cacheJson.put("size", cache.getSize());
+        cacheJson.put("hits", cache.getHits());
+        cacheJson.put("misses", cache.getMisses());
+        cacheJson.put("hitRate", cache.getHitRate());
+        result.put("cache", cacheJson);
+        RoomIndex rooms = RoomIndex.current();
+        if (rooms != null) {
+            result.put("rooms", rooms.getRoomCount());
+        }
+        TeacherIndex teachers = TeacherIndex.current();
+        if (teachers != null) {
+            result.put("teachers", teachers.getTeacherCount());
+        }
+        if (Stores.MYSQL.equals(Stores.getBackend())) {
+            result.put("pool", DatabaseConnection.getPoolStats().toString());
+        }
+        return result;
+    }
+
+    // ===================== JSON 转换 =====================
+
+    private static Object weekSlotList(List<WeekSlot> weekSlots) {
+        List<Object> items = new ArrayList<>(weekSlots.size());
+        for (WeekSlot weekSlot : weekSlots) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("week", weekSlot.getWeek());
+            item.put("timeSlot", weekSlot.getTimeSlot());
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static Object courseList(List<Course> courses) {
+        List<Object> items = new ArrayList<>(courses.size());
+        for (Course course : courses) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", course.getId());
+            item.put("name", course.getName());
+            item.put("teacher", course.getTeacher());
+            item.put("dayOfWeek", course.getDayOfWeek());
+            item.put("timeSlot", course.getTimeSlot());
+            item.put("location", course.getLocation());
+            item.put("week", course.getWeek());
+            item.put("version", course.getVersion());
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static Object userJson(User user) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("id", user.getId());
+        item.put("username", user.getUsername());
+        item.put("name", user.getName());
+        return item;
+    }
+
+    private static Object result(boolean success) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", success);
+        return result;
+    }
+
+    private static Object error(String message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("error", message);
+        return result;
+    }
+
+    // ===================== 工具方法 =====================
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) {
+            throw new ApiException(405, "不支持的请求方法: " + method);
+        }
+    }
+
+    /**
+     * 读取 JSON 请求体，超过 MAX_BODY_BYTES 时返回 413（登录接口无需认证，不能无限读取）
+     */
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "请求体超过 " + MAX_BODY_BYTES / 1024 + " KB");
+            }
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            return text.trim().isEmpty() ? new HashMap<>() : Json.parseObject(text);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static String string(Map<String, Object> body, String key) {
+        Object value = body.get(key);
+        return value == null ? "" : value.toString().trim();
+    }
+
+    private static long parseLong(String text, String what) {
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(what + "格式不正确: " + text);
+        }
+    }
+
+    private static int parseInt(String text, String what) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(what + "格式不正确: " + text);
+        }
+    }
+
+    /**
+     * 登录会话：空闲超过 SESSION_IDLE_MILLIS 或登录超过 SESSION_MAX_MILLIS 后失效
+     */
+    private static class Session {
+        final User user;
+        final long createdAt = System.currentTimeMillis();
+        volatile long lastUsedAt = createdAt;
+
+        Session(User user) {
+            this.user = user;
+        }
+
+        boolean isExpired(long now) {
+            return now - lastUsedAt > SESSION_IDLE_MILLIS || now - createdAt > SESSION_MAX_MILLIS;
+        }
+    }
+
+    /**
+     * 带 HTTP 状态码的业务错误
+     */
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
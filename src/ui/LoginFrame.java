@@ -303,8 +303,23 @@ public class LoginFrame extends JFrame {
 
         data.UserRepository repo = new data.UserRepository();
         model.User user = repo.findByUsername(username);
+        boolean valid = user != null && user.getPassword().equals(util.PasswordUtil.hashPassword(password));
+        if (valid) {
+            try {
+                data.LocalScheduleCache.forUser(user).rememberPassword(password);
+            } catch (Exception e) {
+                System.err.println("保存离线登录信息失败: " + e.getMessage());
+            }
+        } else if (user == null && !repo.isAvailable(username)) {
+            // 数据库不可用时使用本地缓存的账号离线登录，课表修改会在恢复后同步
+            user = data.LocalScheduleCache.verifyCachedUser(username, password);
+            valid = user != null;
+            if (valid) {
+                System.out.println("数据库不可用，用户 " + username + " 使用本地缓存离线登录");
+            }
+        }
 
-        if (user != null && user.getPassword().equals(util.PasswordUtil.hashPassword(password))) {
+        if (valid) {
             showCustomMessage("登录成功！", "消息");
             new main.MainFrame(user).setVisible(true);
             dispose();
@@ -0,0 +1,163 @@
+package util;
+
+import data.CourseSnapshotWriter;
+import data.CsvChannelWriter;
+import data.ShardRouter;
+import model.Course;
+import model.WeekMask;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 管理员全量导出：所有用户的全部课程（按周展开）写入 CSV 或二进制快照
+ * 用法：
+ *   java util.CourseExport <输出目录> [--format csv|snapshot] [--parallel N]
+ *
+ * 每个分片按用户ID区间切成 N 段并行导出，每段写一个文件（part-s<分片>-r<区间>.csv / .snap），
+ * 每个快照文件都可以单独用 CourseSnapshotReader 读取。
+ * 查询走只读副本，结果集逐行流式读取（不在客户端缓存整个结果集），每行展开后立即写出，
+ * 内存占用与总行数无关：几千万行的导出堆内存也不会增长。
+ */
+public class CourseExport {
+    private static final String SQL = "SELECT user_id, id, name, teacher, day_of_week, time_slot, location, week_mask"
+            + " FROM course_patterns WHERE user_id BETWEEN ? AND ? AND week_mask <> 0 ORDER BY user_id";
+    private static final long PROGRESS_ROWS = 1_000_000;
+
+    private static final AtomicLong peakHeap = new AtomicLong();
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("用法：java util.CourseExport <输出目录> [--format csv|snapshot] [--parallel N]");
+            return;
+        }
+        Path dir = Paths.get(args[0]);
+        boolean snapshot = false;
+        int parallel = 4;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--format")) {
+                snapshot = args[++i].equals("snapshot");
+            } else if (args[i].equals("--parallel")) {
+                parallel = Integer.parseInt(args[++i]);
+            }
+        }
+
+        ShardRouter router = ShardRouter.get();
+        ExecutorService executor = Executors.newFixedThreadPool(parallel);
+        try {
+            Files.createDirectories(dir);
+            long start = System.nanoTime();
+            List<Future<Long>> parts = new ArrayList<>();
+            for (int shard = 0; shard < router.getShardCount(); shard++) {
+                long[] range = userRange(router, shard);
+                if (range == null) {
+                    System.out.println("分片 " + shard + "：没有课程，跳过");
+                    continue;
+                }
+                long step = (range[1] - range[0]) / parallel + 1;
+                for (int r = 0; r < parallel && range[0] + r * step <= range[1]; r++) {
+                    long from = range[0] + r * step;
+                    long to = Math.min(range[1], from + step - 1);
+                    Path file = dir.resolve("part-s" + shard + "-r" + r + (snapshot ? ".snap" : ".csv"));
+                    int s = shard;
+                    boolean binary = snapshot;
+                    parts.add(executor.submit(() -> exportRange(router, s, from, to, file, binary)));
+                }
+            }
+
+            long total = 0;
+            for (Future<Long> part : parts) {
+                total += part.get();
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("✅ 导出完成：" + parts.size() + " 个文件，" + total + " 行，耗时 " + millis + " ms（"
+                    + (millis == 0 ? total : total * 1000 / millis) + " 行/秒），堆内存峰值约 "
+                    + peakHeap.get() / (1024 * 1024) + " MB");
+        } catch (Exception e) {
+            System.out.println("❌ 导出失败：" + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 分片中有课程的用户ID范围 [最小, 最大]，没有课程返回 null
+     */
+    private static long[] userRange(ShardRouter router, int shard) throws SQLException {
+        try (Connection conn = router.getShard(shard).replica();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(user_id), MAX(user_id) FROM course_patterns")) {
+            rs.next();
+            long min = rs.getLong(1);
+            return rs.wasNull() ? null : new long[]{min, rs.getLong(2)};
+        }
+    }
+
+    /**
+     * 导出一个分片中用户ID在 [from, to] 内的课程，返回写入的行数
+     */
+    private static long exportRange(ShardRouter router, int shard, long from, long to, Path file, boolean snapshot)
+            throws SQLException, IOException {
+        long rows = 0;
+        Course course = new Course(); // 逐行复用，写出后不再引用
+        try (Connection conn = router.getShard(shard).replica();
+             PreparedStatement stmt = conn.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             CsvChannelWriter csv = snapshot ? null : new CsvChannelWriter(file);
+             CourseSnapshotWriter snap = snapshot ? new CourseSnapshotWriter(file) : null) {
+            // MySQL 驱动的流式结果集：逐行从服务端读取，不把整个结果集读进内存
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            stmt.setLong(1, from);
+            stmt.setLong(2, to);
+            if (csv != null) {
+                csv.writeRow("用户ID", "课程ID", "周次", "课程名", "教师", "星期", "节次", "地点");
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int userId = rs.getInt(1);
+                    course.setId(rs.getInt(2));
+                    course.setName(rs.getString(3));
+                    course.setTeacher(rs.getString(4));
+                    course.setDayOfWeek(rs.getString(5));
+                    course.setTimeSlot(rs.getString(6));
+                    course.setLocation(rs.getString(7));
+                    for (int week : WeekMask.weeks(rs.getLong(8))) {
+                        course.setWeek(week);
+                        if (csv != null) {
+                            csv.writeRow(String.valueOf(userId), String.valueOf(course.getId()), String.valueOf(week),
+                                    course.getName(), course.getTeacher(), course.getDayOfWeek(),
+                                    course.getTimeSlot(), course.getLocation());
+                        } else {
+                            snap.write(course, userId);
+                        }
+                        if (++rows % PROGRESS_ROWS == 0) {
+                            recordHeap();
+                            System.out.println("  " + file.getFileName() + "：已导出 " + rows + " 行");
+                        }
+                    }
+                }
+            }
+        }
+        recordHeap();
+        System.out.println("分片 " + shard + " 用户 " + from + "-" + to + "：" + rows + " 行 -> " + file);
+        return rows;
+    }
+
+    private static void recordHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        peakHeap.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+    }
+}
@@ -0,0 +1,60 @@
+package util;
+
+import data.CourseImportPipeline;
+import data.CourseRepository;
+import data.ImportStats;
+import data.Stores;
+import data.UserRepository;
+import model.User;
+
+import java.nio.file.Paths;
+
+/**
+ * 批量导入课程 CSV（院系整体开课等场景）
+ * 用法：java util.CourseImporter <csv文件> [默认用户名] [--store=mysql|embedded] [--batch=500]
+ * CSV 格式：课程名,教师,星期,节次,地点[,周次[,用户名]]
+ */
+public class CourseImporter {
+
+    public static void main(String[] args) {
+        String file = null;
+        String defaultUsername = null;
+        int batchSize = 500;
+        for (String arg : args) {
+            if (arg.startsWith("--store=")) {
+                Stores.init(arg.substring("--store=".length()));
+            } else if (arg.startsWith("--batch=")) {
+                batchSize = Integer.parseInt(arg.substring("--batch=".length()));
+            } else if (file == null) {
+                file = arg;
+            } else {
+                defaultUsername = arg;
+            }
+        }
+        if (file == null) {
+            System.out.println("用法：java util.CourseImporter <csv文件> [默认用户名] [--store=mysql|embedded] [--batch=500]");
+            return;
+        }
+
+        System.out.println("=== 批量导入课程 ===");
+        UserRepository userRepository = new UserRepository();
+        User defaultUser = null;
+        if (defaultUsername != null) {
+            defaultUser = userRepository.findByUsername(defaultUsername);
+            if (defaultUser == null) {
+                System.out.println("❌ 默认用户不存在：" + defaultUsername);
+                return;
+            }
+        }
+
+        CourseImportPipeline pipeline = new CourseImportPipeline(new CourseRepository(), userRepository, batchSize);
+        pipeline.setProgressListener(stats -> System.out.println("  " + stats));
+        try {
+            ImportStats stats = pipeline.run(Paths.get(file), defaultUser);
+            System.out.println("✅ 导入完成：" + stats);
+        } catch (Exception e) {
+            System.out.println("❌ 导入失败：" + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package util;
+
+import data.CourseSnapshotReader;
+import data.CourseSnapshotWriter;
+import data.CsvChannelWriter;
+import data.CsvMappedReader;
+import model.Course;
+import model.Timetable;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV 读写性能对比：原 CourseFileUtil 实现（PrintWriter.printf / BufferedReader + splitCsvLine）
+ * 与 CsvChannelWriter / CsvMappedReader（单线程、并行），以及二进制快照 CourseSnapshotWriter / Reader
+ * 每项先预热若干轮再计时取平均，避免把 JIT 编译时间算进去。
+ * 用法：java util.CsvBenchmark [行数，默认 1000000]
+ */
+public class CsvBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURE_ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<String[]> data = generate(rows);
+        Path legacyFile = Files.createTempFile("csv-legacy", ".csv");
+        Path channelFile = Files.createTempFile("csv-channel", ".csv");
+        Path snapshotFile = Files.createTempFile("snapshot", ".bin");
+        List<Course> courses = toCourses(data);
+
+        System.out.println("=== CSV 读写性能对比（" + rows + " 行）===");
+        try {
+            report("写入：PrintWriter.printf", rows, () -> legacyWrite(legacyFile, data));
+            report("写入：CsvChannelWriter", rows, () -> channelWrite(channelFile, data));
+            System.out.println("  文件大小：" + Files.size(channelFile) / 1024 + " KB");
+
+            report("读取：BufferedReader + splitCsvLine", rows, () -> check(legacyRead(channelFile), rows));
+            report("读取：CsvMappedReader 单线程", rows,
+                    () -> check(CsvMappedReader.readAll(channelFile, true, 1), rows));
+            report("读取：CsvMappedReader 并行（" + Runtime.getRuntime().availableProcessors() + " 核）", rows,
+                    () -> check(CsvMappedReader.readAll(channelFile, true), rows));
+
+            report("写入：CourseSnapshotWriter", rows, () -> snapshotWrite(snapshotFile, courses));
+            System.out.println("  文件大小：" + Files.size(snapshotFile) / 1024 + " KB");
+            report("读取：CourseSnapshotReader", rows, () -> check(snapshotRead(snapshotFile), rows));
+        } finally {
+            Files.deleteIfExists(legacyFile);
+            Files.deleteIfExists(channelFile);
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    private static void report(String name, int rows, Task task) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            task.run();
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / MEASURE_ROUNDS;
+        System.out.printf("%-45s %8.1f ms  %10.0f 行/秒%n", name, millis, rows * 1000.0 / millis);
+    }
+
+    private static List<String[]> generate(int rows) {
+        List<String[]> data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            data.add(new String[] {
+                    "课程" + (i % 500),
+                    "教师" + (i % 120),
+                    Timetable.DAYS[i % Timetable.DAYS.length],
+                    Timetable.TIME_SLOTS[i % Timetable.TIME_SLOTS.length],
+                    i % 10 == 0 ? "实验楼,B" + (i % 300) : "教学楼A" + (i % 300)
+            });
+        }
+        return data;
+    }
+
+    private static List<Course> toCourses(List<String[]> data) {
+        List<Course> courses = new ArrayList<>(data.size());
+        for (int i = 0; i < data.size(); i++) {
+            String[] row = data.get(i);
+            Course course = new Course(row[0], row[1], row[2], row[3], row[4]);
+            course.setId(i + 1);
+            course.setWeek(i % 18 + 1);
+            courses.add(course);
+        }
+        return courses;
+    }
+
+    private static void check(List<?> parsed, int rows) {
+        if (parsed.size() != rows) {
+            throw new IllegalStateException("解析行数不符：" + parsed.size() + " != " + rows);
+        }
+    }
+
+    private static void channelWrite(Path file, List<String[]> data) throws IOException {
+        try (CsvChannelWriter writer = new CsvChannelWriter(file)) {
+            writer.writeRow("课程名", "教师", "星期", "节次", "地点");
+            for (String[] row : data) {
+                writer.writeRow(row);
+            }
+        }
+    }
+
+    private static void snapshotWrite(Path file, List<Course> courses) throws IOException {
+        try (CourseSnapshotWriter writer = new CourseSnapshotWriter(file)) {
+            for (int i = 0; i < courses.size(); i++) {
+                writer.write(courses.get(i), i / 100);
+            }
+        }
+    }
+
+    private static List<Course> snapshotRead(Path file) throws IOException {
+        List<Course> courses = new ArrayList<>();
+        try (CourseSnapshotReader reader = new CourseSnapshotReader(file)) {
+            while (reader.next()) {
+                courses.add(reader.getCourse());
+            }
+        }
+        return courses;
+    }
+
+    // ===================== 原实现（对照组） =====================
+
+    private static void legacyWrite(Path file, List<String[]> data) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file.toFile()))) {
+            writer.println("课程名,教师,星期,节次,地点");
+            for (String[] row : data) {
+                writer.printf("%s,%s,%s,%s,%s%n",
+                        escapeCsv(row[0]), escapeCsv(row[1]), escapeCsv(row[2]), escapeCsv(row[3]), escapeCsv(row[4]));
+            }
+        }
+    }
+
+    private static List<String[]> legacyRead(Path file) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            String line;
+            reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                rows.add(splitCsvLine(line));
+            }
+        }
+        return rows;
+    }
+
+    private static String escapeCsv(String field) {
+        if (field.contains(",") || field.contains("\"")) {
+            return "\"" + field.replace("\"", "\"\"") + "\"";
+        }
+        return field;
+    }
+
+    private static String[] splitCsvLine(String line) {
+        List<String> result = new ArrayList<>();
+        boolean inQuotes = false;
+        StringBuilder current = new StringBuilder();
+        for (char c : line.toCharArray()) {
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == ',' && !inQuotes) {
+                result.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        result.add(current.toString().trim());
+        return result.toArray(new String[0]);
+    }
+}
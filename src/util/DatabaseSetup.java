@@ -67,15 +67,16 @@ public class DatabaseSetup {
                     student_id VARCHAR(20) UNIQUE NOT NULL,
                     password VARCHAR(64) NOT NULL,
                     name VARCHAR(50) DEFAULT '学生',
+                    course_version BIGINT NOT NULL DEFAULT 0,
                     created_at DATETIME DEFAULT CURRENT_TIMESTAMP
                 )
                 """;
             stmt.executeUpdate(createUsersTable);
             System.out.println("✅ 用户表 users 创建成功");
             
-            // 创建课程表
+            // 创建课程表：一行表示一门课的上课规律，上课周次存为位掩码（第 n 周对应第 n-1 位）
             String createCoursesTable = """
-                CREATE TABLE IF NOT EXISTS courses (
+                CREATE TABLE IF NOT EXISTS course_patterns (
                     id INT AUTO_INCREMENT PRIMARY KEY,
                     user_id INT NOT NULL,
                     name VARCHAR(100) NOT NULL,
@@ -83,12 +84,17 @@ public class DatabaseSetup {
                     day_of_week VARCHAR(10) NOT NULL,
                     time_slot VARCHAR(20) NOT NULL,
                     location VARCHAR(100),
+                    week_mask BIGINT NOT NULL DEFAULT 0,
+                    version BIGINT NOT NULL DEFAULT 0,
                     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
-                    UNIQUE KEY unique_course (user_id, day_of_week, time_slot)
+                    KEY idx_user_day_slot (user_id, day_of_week, time_slot),
+                    KEY idx_user_version (user_id, version),
+                    KEY idx_location_slot (location, day_of_week, time_slot),
+                    KEY idx_teacher_slot (teacher, day_of_week, time_slot)
                 )
                 """;
             stmt.executeUpdate(createCoursesTable);
-            System.out.println("✅ 课程表 courses 创建成功");
+            System.out.println("✅ 课程表 course_patterns 创建成功");
             
         }
     }
@@ -111,13 +117,13 @@ public class DatabaseSetup {
             int userCount = stmt.executeUpdate(insertUser);
             System.out.println("✅ 插入了 " + userCount + " 个测试用户");
             
-            // 插入测试课程（假设用户ID为1）
+            // 插入测试课程（假设用户ID为1，第1-18周，week_mask = 2^18 - 1）
             String insertCourses = """
-                INSERT IGNORE INTO courses (user_id, name, teacher, day_of_week, time_slot, location) VALUES 
-                (1, '高等数学', '张教授', '星期一', '第1-2节', 'A栋101'),
-                (1, '大学英语', '李老师', '星期二', '第3-4节', 'B栋205'),
-                (1, 'Java程序设计', '王老师', '星期三', '第5-6节', '实验楼301'),
-                (1, '体育', '刘教练', '星期五', '第7-8节', '体育馆')
+                INSERT IGNORE INTO course_patterns (user_id, name, teacher, day_of_week, time_slot, location, week_mask) VALUES 
+                (1, '高等数学', '张教授', '星期一', '第1-2节', 'A栋101', 262143),
+                (1, '大学英语', '李老师', '星期二', '第3-4节', 'B栋205', 262143),
+                (1, 'Java程序设计', '王老师', '星期三', '第5-6节', '实验楼301', 262143),
+                (1, '体育', '刘教练', '星期五', '第7-8节', '体育馆', 262143)
                 """;
             int courseCount = stmt.executeUpdate(insertCourses);
             System.out.println("插入了 " + courseCount + " 门测试课程"); // 移除emoji图标
@@ -0,0 +1,192 @@
+package util;
+
+import server.Json;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 课表服务压测：先注册、登录一批测试用户并写入课程，然后并发读取周课表
+ * 用法：java util.LoadTest [服务地址] [--seconds=30] [--concurrency=64] [--users=100] [--target=5000]
+ * 服务地址默认 http://localhost:8080，服务端用 java Main --server --store=embedded 启动
+ *
+ * 服务端的设计目标是笔记本上（嵌入式存储）每秒 5000 个请求，尚未验证：目前只在单核环境中测过，
+ * 压测进程与服务端共用一个核，约 1200 请求/秒（p50 48ms，p99 162ms）。需要在多核机器上把压测进程
+ * 与服务端分开运行后再确认；未达到目标时以错误状态退出，便于脚本判断。
+ */
+public class LoadTest {
+    private static final int WEEKS = 18;
+    private static final int DEFAULT_TARGET_RPS = 5000;
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = "http://localhost:8080";
+        int seconds = 30;
+        int concurrency = 64;
+        int userCount = 100;
+        int targetRps = DEFAULT_TARGET_RPS;
+        for (String arg : args) {
+            if (arg.startsWith("--seconds=")) {
+                seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            } else if (arg.startsWith("--concurrency=")) {
+                concurrency = Integer.parseInt(arg.substring("--concurrency=".length()));
+            } else if (arg.startsWith("--users=")) {
+                userCount = Integer.parseInt(arg.substring("--users=".length()));
+            } else if (arg.startsWith("--target=")) {
+                targetRps = Integer.parseInt(arg.substring("--target=".length()));
+            } else {
+                baseUrl = arg.endsWith("/") ? arg.substring(0, arg.length() - 1) : arg;
+            }
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        System.out.println("=== 课表服务压测 " + baseUrl + " ===");
+        System.out.println("准备 " + userCount + " 个测试用户...");
+        String[] tokens = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            tokens[i] = prepareUser(client, baseUrl, "loadtest_" + i);
+        }
+
+        System.out.println("并发 " + concurrency + "，持续 " + seconds + " 秒，读取周课表...");
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long[][] latencies = new long[concurrency][];
+        Thread[] workers = new Thread[concurrency];
+        String url = baseUrl;
+        for (int t = 0; t < concurrency; t++) {
+            int index = t;
+            workers[t] = new Thread(() -> latencies[index] = runWorker(client, url, tokens, deadline, errors), "load-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        int total = 0;
+        for (long[] l : latencies) {
+            total += l.length;
+        }
+        long[] all = new long[total];
+        int pos = 0;
+        for (long[] l : latencies) {
+            System.arraycopy(l, 0, all, pos, l.length);
+            pos += l.length;
+        }
+        Arrays.sort(all);
+
+        System.out.println("请求数: " + total + "，错误: " + errors.get());
+        double rps = total / (double) seconds;
+        System.out.printf("吞吐量: %.0f 请求/秒%n", rps);
+        if (total > 0) {
+            System.out.printf("延迟: p50 %.2fms, p99 %.2fms, 最大 %.2fms%n",
+                    percentile(all, 0.50), percentile(all, 0.99), all[total - 1] / 1_000_000.0);
+        }
+        System.out.println("服务端统计: " + send(client, baseUrl, "GET", "/api/stats", tokens[0], null).body());
+        boolean passed = rps >= targetRps && errors.get() == 0;
+        System.out.println((passed ? "✅ 达到" : "❌ 未达到") + "目标 " + targetRps + " 请求/秒（CPU 核数 "
+                + Runtime.getRuntime().availableProcessors() + "）");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 注册（已存在则忽略）、登录并写入一门 1-18 周的课程，返回 token
+     */
+    private static String prepareUser(HttpClient client, String baseUrl, String username) throws Exception {
+        Map<String, Object> account = new LinkedHashMap<>();
+        account.put("username", username);
+        account.put("password", "password");
+        account.put("name", username);
+        send(client, baseUrl, "POST", "/api/register", null, account);
+        HttpResponse<String> login = send(client, baseUrl, "POST", "/api/login", null, account);
+        if (login.statusCode() != 200) {
+            throw new IllegalStateException("登录失败: " + login.body());
+        }
+        String token = (String) Json.parseObject(login.body()).get("token");
+
+        List<Object> weeks = new ArrayList<>();
+        for (int week = 1; week <= WEEKS; week++) {
+            weeks.add(week);
+        }
+        Map<String, Object> course = new LinkedHashMap<>();
+        course.put("name", "压测课程");
+        course.put("teacher", "教师");
+        course.put("dayOfWeek", "星期一");
+        course.put("timeSlot", "第1-2节");
+        course.put("location", "教室");
+        course.put("weeks", weeks);
+        send(client, baseUrl, "POST", "/api/courses", token, course);
+        return token;
+    }
+
+    private static long[] runWorker(HttpClient client, String baseUrl, String[] tokens, long deadline, AtomicLong errors) {
+        long[] latencies = new long[1024];
+        int count = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            String token = tokens[random.nextInt(tokens.length)];
+            int week = 1 + random.nextInt(WEEKS);
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = send(client, baseUrl, "GET", "/api/courses?week=" + week, token, null);
+                if (response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                    continue;
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+                continue;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static HttpResponse<String> send(HttpClient client, String baseUrl, String method, String path,
+                                             String token, Object body) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + encodePath(path)))
+                .timeout(Duration.ofSeconds(10))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(Json.write(body), StandardCharsets.UTF_8));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    // 查询参数中可能有中文，需要编码
+    private static String encodePath(String path) {
+        int q = path.indexOf('?');
+        if (q < 0) {
+            return path;
+        }
+        StringBuilder sb = new StringBuilder(path.substring(0, q + 1));
+        for (String pair : path.substring(q + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            if (sb.length() > q + 1) {
+                sb.append('&');
+            }
+            sb.append(pair, 0, eq + 1).append(URLEncoder.encode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))] / 1_000_000.0;
+    }
+}
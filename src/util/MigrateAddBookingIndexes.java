@@ -0,0 +1,67 @@
+package util;
+
+import data.ShardRouter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 为添加课程时的撞教室、撞教师提醒添加索引：course_patterns 的 (location, day_of_week, time_slot)
+ * 与 (teacher, day_of_week, time_slot)，使 CourseStore.findBookings 不必遍历全表
+ * 配置了分片时在每个分片上执行，可重复执行
+ */
+public class MigrateAddBookingIndexes {
+
+    public static void main(String[] args) {
+        System.out.println("=== 添加教室、教师占用查询索引 ===");
+
+        ShardRouter router = ShardRouter.get();
+        for (int shard = 0; shard < router.getShardCount(); shard++) {
+            System.out.println("--- 分片 " + shard + " ---");
+            try {
+                migrate(router.getConnection(shard));
+            } catch (Exception e) {
+                System.out.println("❌ 分片 " + shard + " 迁移失败: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void migrate(Connection connection) throws SQLException {
+        try (Connection conn = connection;
+             Statement stmt = conn.createStatement()) {
+
+            System.out.println("1. 添加 (location, day_of_week, time_slot) 索引...");
+            if (!hasIndex(conn, "course_patterns", "idx_location_slot")) {
+                stmt.executeUpdate("ALTER TABLE course_patterns ADD KEY idx_location_slot (location, day_of_week, time_slot)");
+                System.out.println("✅ 已添加");
+            } else {
+                System.out.println("   已存在，跳过");
+            }
+
+            System.out.println("2. 添加 (teacher, day_of_week, time_slot) 索引...");
+            if (!hasIndex(conn, "course_patterns", "idx_teacher_slot")) {
+                stmt.executeUpdate("ALTER TABLE course_patterns ADD KEY idx_teacher_slot (teacher, day_of_week, time_slot)");
+                System.out.println("✅ 已添加");
+            } else {
+                System.out.println("   已存在，跳过");
+            }
+
+            System.out.println("✅ 迁移完成");
+        }
+    }
+
+    private static boolean hasIndex(Connection conn, String table, String index) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            stmt.setString(2, index);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+}
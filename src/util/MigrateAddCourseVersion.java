@@ -0,0 +1,67 @@
+package util;
+
+import data.ShardRouter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 为增量同步添加版本号列：users.course_version（每个用户的变更计数器）与 course_patterns.version
+ * 已有的规律行版本号为 0，客户端第一次同步（版本号 0）时全量获取；配置了分片时在每个分片上执行，可重复执行
+ */
+public class MigrateAddCourseVersion {
+
+    public static void main(String[] args) {
+        System.out.println("=== 添加课程变更版本号 ===");
+
+        ShardRouter router = ShardRouter.get();
+        for (int shard = 0; shard < router.getShardCount(); shard++) {
+            System.out.println("--- 分片 " + shard + " ---");
+            try {
+                migrate(router.getConnection(shard));
+            } catch (Exception e) {
+                System.out.println("❌ 分片 " + shard + " 迁移失败: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void migrate(Connection connection) throws SQLException {
+        try (Connection conn = connection;
+             Statement stmt = conn.createStatement()) {
+
+            System.out.println("1. users 表添加 course_version 列...");
+            if (!hasColumn(conn, "users", "course_version")) {
+                stmt.executeUpdate("ALTER TABLE users ADD COLUMN course_version BIGINT NOT NULL DEFAULT 0");
+                System.out.println("✅ 已添加");
+            } else {
+                System.out.println("   已存在，跳过");
+            }
+
+            System.out.println("2. course_patterns 表添加 version 列与 (user_id, version) 索引...");
+            if (!hasColumn(conn, "course_patterns", "version")) {
+                stmt.executeUpdate("ALTER TABLE course_patterns ADD COLUMN version BIGINT NOT NULL DEFAULT 0, "
+                        + "ADD KEY idx_user_version (user_id, version)");
+                System.out.println("✅ 已添加");
+            } else {
+                System.out.println("   已存在，跳过");
+            }
+
+            System.out.println("✅ 迁移完成。注意：此后掩码为 0 的规律行是删除墓碑，不要手动清理");
+        }
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package util;
+
+import data.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * 把旧的 courses 表（每周每节一行）迁移到 course_patterns 表（每门课一行 + 周次位掩码）
+ * 同一用户下名称、教师、星期、节次、地点都相同的行合并为一行，week_mask 为各行周次对应位的按位或
+ */
+public class MigrateToWeekMask {
+
+    public static void main(String[] args) {
+        System.out.println("=== 迁移课程表到周次位掩码存储 ===");
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+
+            // 1. 创建新表
+            System.out.println("1. 创建 course_patterns 表...");
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS course_patterns (
+                    id INT AUTO_INCREMENT PRIMARY KEY,
+                    user_id INT NOT NULL,
+                    name VARCHAR(100) NOT NULL,
+                    teacher VARCHAR(50),
+                    day_of_week VARCHAR(10) NOT NULL,
+                    time_slot VARCHAR(20) NOT NULL,
+                    location VARCHAR(100),
+                    week_mask BIGINT NOT NULL DEFAULT 0,
+                    version BIGINT NOT NULL DEFAULT 0,
+                    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+                    KEY idx_user_day_slot (user_id, day_of_week, time_slot),
+                    KEY idx_user_version (user_id, version),
+                    KEY idx_location_slot (location, day_of_week, time_slot),
+                    KEY idx_teacher_slot (teacher, day_of_week, time_slot)
+                )
+                """);
+
+            // 2. 按课程分组，在数据库内完成位掩码聚合（只迁移第 1-63 周的数据）
+            System.out.println("2. 合并旧数据...");
+            int migrated = stmt.executeUpdate("""
+                INSERT INTO course_patterns (user_id, name, teacher, day_of_week, time_slot, location, week_mask)
+                SELECT user_id, name, teacher, day_of_week, time_slot, location, BIT_OR(1 << (week - 1))
+                FROM courses
+                WHERE week BETWEEN 1 AND 63
+                GROUP BY user_id, name, teacher, day_of_week, time_slot, location
+                """);
+
+            // 3. 统计压缩效果
+            int oldRows = 0;
+            try (PreparedStatement count = conn.prepareStatement("SELECT COUNT(*) FROM courses");
+                 ResultSet rs = count.executeQuery()) {
+                if (rs.next()) {
+                    oldRows = rs.getInt(1);
+                }
+            }
+            conn.commit();
+
+            System.out.println("✅ 迁移完成：courses 表 " + oldRows + " 行 -> course_patterns 表 " + migrated + " 行");
+            System.out.println("   确认数据无误后可手动删除旧表：DROP TABLE courses");
+
+        } catch (Exception e) {
+            System.out.println("❌ 迁移失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,10 +1,22 @@
 package util;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 import java.math.BigInteger;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
 
 public class PasswordUtil {
+    // 离线登录校验值：PBKDF2 加随机盐，格式 "pbkdf2$迭代次数$盐$哈希"（Base64）
+    private static final String OFFLINE_PREFIX = "pbkdf2";
+    private static final int OFFLINE_ITERATIONS = 120_000;
+    private static final int OFFLINE_SALT_BYTES = 16;
+    private static final int OFFLINE_HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     public static String hashPassword(String password) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
@@ -14,4 +26,47 @@ public class PasswordUtil {
             throw new RuntimeException("SHA-256 不可用", e);
         }
     }
+
+    /**
+     * 生成保存在本机的离线登录校验值：加盐且计算缓慢，缓存文件泄露后无法用查表或快速穷举还原密码
+     */
+    public static String offlineVerifier(String password) {
+        byte[] salt = new byte[OFFLINE_SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return OFFLINE_PREFIX + "$" + OFFLINE_ITERATIONS + "$" + base64.encodeToString(salt)
+                + "$" + base64.encodeToString(pbkdf2(password, salt, OFFLINE_ITERATIONS));
+    }
+
+    /**
+     * 校验密码与 offlineVerifier 生成的校验值是否匹配，校验值格式不对时返回 false
+     */
+    public static boolean matchesOfflineVerifier(String password, String verifier) {
+        if (verifier == null) {
+            return false;
+        }
+        String[] parts = verifier.split("\\$");
+        if (parts.length != 4 || !parts[0].equals(OFFLINE_PREFIX)) {
+            return false;
+        }
+        try {
+            Base64.Decoder base64 = Base64.getDecoder();
+            byte[] expected = base64.decode(parts[3]);
+            byte[] actual = pbkdf2(password, base64.decode(parts[2]), Integer.parseInt(parts[1]));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, OFFLINE_HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("PBKDF2 不可用", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
 }
@@ -0,0 +1,404 @@
+package util;
+
+import data.ShardRouter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分片运维工具
+ * 用法：
+ *   java util.ShardTool status                 各分片的用户数、课程规律行数
+ *   java util.ShardTool adopt                  首次启用分片时执行（部署 shards.properties 之后、启动服务端和客户端之前）：
+ *                                             为原数据库（分片 0）中的已有用户写入迁移记录，并把各分片的自增起点调到已有ID之上
+ *   java util.ShardTool rebalance [--dry-run]  把每个用户迁移到 CRC32(用户名) % N 对应的分片（增减分片后执行）
+ *   java util.ShardTool move <用户名> <分片号>   把单个用户迁移到指定分片
+ *
+ * 迁移步骤：写入迁移锁 → 等待所有进程的路由器刷新（两个 ShardRouter.DIRECTORY_REFRESH_MS），之后各进程拒绝该用户的写入
+ * → 目标分片写入用户和课程（一个事务）→ 写入迁移记录并解除迁移锁（一个事务）→ 再次等待路由器刷新 → 源分片删除（一个事务）。
+ * 迁移锁生效期间用户仍可读取课表，桌面端的修改先保存在本地离线队列，迁移完成后重放到新分片。
+ * rebalance 每 MOVE_BATCH_SIZE 个用户锁定一次，删除源分片数据前只等待一次。
+ * 中途失败时重新执行即可：目标分片的写入是覆盖式的，源分片残留的数据会在下次迁移时清理，残留的迁移锁（status 中列出）随之解除。
+ * 旧版本写在本地 shard-overrides.properties 中的迁移记录会在每次运行时先导入迁移记录表。
+ */
+public class ShardTool {
+    private static final int ADOPT_BATCH_SIZE = 1000; // 每个事务写入的迁移记录数
+    private static final int MOVE_BATCH_SIZE = 500;   // rebalance 每次锁定迁移的用户数
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("用法：java util.ShardTool status | adopt | rebalance [--dry-run] | move <用户名> <分片号>");
+            return;
+        }
+        ShardRouter router = ShardRouter.get();
+        try {
+            int imported = router.importOverridesFile();
+            if (imported > 0) {
+                System.out.println("已把本地文件中的 " + imported + " 条迁移记录导入迁移记录表");
+            }
+            switch (args[0]) {
+                case "status":
+                    status(router);
+                    break;
+                case "adopt":
+                    adopt(router);
+                    break;
+                case "rebalance":
+                    rebalance(router, args.length > 1 && args[1].equals("--dry-run"));
+                    break;
+                case "move":
+                    moveByName(router, args[1], Integer.parseInt(args[2]));
+                    break;
+                default:
+                    System.out.println("未知命令：" + args[0]);
+            }
+        } catch (Exception e) {
+            System.out.println("❌ 执行失败：" + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static void status(ShardRouter router) throws SQLException {
+        System.out.println("=== 分片状态（共 " + router.getShardCount() + " 个）===");
+        for (int shard = 0; shard < router.getShardCount(); shard++) {
+            try (Connection conn = router.getConnection(shard);
+                 Statement stmt = conn.createStatement()) {
+                long users = count(stmt, "SELECT COUNT(*) FROM users");
+                long patterns = count(stmt, "SELECT COUNT(*) FROM course_patterns");
+                System.out.println("分片 " + shard + "：用户 " + users + "，课程规律 " + patterns + "，连接池 " + router.getStats(shard));
+            }
+            for (int replica = 0; replica < router.getShard(shard).getReplicaCount(); replica++) {
+                System.out.println("  只读副本 " + replica + "：连接池 " + router.getShard(shard).getReplicaStats(replica));
+            }
+        }
+        if (!router.getMovingUsers().isEmpty()) {
+            System.out.println("⚠️ 以下用户的迁移未完成，仍被禁止写入（重新执行 rebalance 或 move 即可）：" + router.getMovingUsers());
+        }
+    }
+
+    /**
+     * 启用分片前注册的用户都在原数据库（分片 0）中，ID 是连续生成的，按 ID 或用户名路由大多会落到其他分片。
+     * 为这些用户写入指向分片 0 的迁移记录，之后可用 rebalance 按用户名哈希逐步迁出；
+     * 并把每个分片的自增起点调到分片 0 的最大ID之上，新分片生成的ID不会与已有用户重复。
+     * 已有迁移记录的用户（已经迁移过）不受影响，可重复执行。
+     */
+    private static void adopt(ShardRouter router) throws SQLException {
+        int shards = router.getShardCount();
+        Map<Integer, String> adopted = new LinkedHashMap<>();
+        long maxUserId;
+        long maxPatternId;
+        try (Connection conn = router.getConnection(0);
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT id, username FROM users")) {
+                while (rs.next()) {
+                    int userId = rs.getInt("id");
+                    String username = rs.getString("username");
+                    boolean misrouted = ShardRouter.homeShard(userId, shards) != 0
+                            || router.shardOfUsername(username) != 0;
+                    if (misrouted && !router.hasOverride(userId)) {
+                        adopted.put(userId, username);
+                    }
+                }
+            }
+            maxUserId = count(stmt, "SELECT COALESCE(MAX(id), 0) FROM users");
+            maxPatternId = count(stmt, "SELECT COALESCE(MAX(id), 0) FROM course_patterns");
+        }
+
+        Map<Integer, String> batch = new LinkedHashMap<>();
+        for (Map.Entry<Integer, String> user : adopted.entrySet()) {
+            batch.put(user.getKey(), user.getValue());
+            if (batch.size() == ADOPT_BATCH_SIZE) {
+                router.recordMoves(batch, 0);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            router.recordMoves(batch, 0);
+        }
+        System.out.println("已为 " + adopted.size() + " 个已有用户写入迁移记录（分片 0）");
+
+        for (int shard = 0; shard < shards; shard++) {
+            try (Connection conn = router.getConnection(shard);
+                 Statement stmt = conn.createStatement()) {
+                raiseAutoIncrement(stmt, "users", maxUserId + 1);
+                raiseAutoIncrement(stmt, "course_patterns", maxPatternId + 1);
+            }
+        }
+        System.out.println("✅ 各分片的用户ID从 " + (maxUserId + 1) + " 之后开始生成，课程规律ID从 " + (maxPatternId + 1) + " 之后开始生成");
+    }
+
+    /**
+     * 把表的自增起点提高到至少 floor；只升不降，已经更高的起点若被调低，迁出用户留下的ID可能被重新分配
+     */
+    private static void raiseAutoIncrement(Statement stmt, String table, long floor) throws SQLException {
+        try {
+            // MySQL 8 默认缓存 information_schema 中的表统计信息，关闭缓存以读到当前的自增值
+            stmt.execute("SET SESSION information_schema_stats_expiry = 0");
+        } catch (SQLException e) {
+            // MySQL 5.7 没有该变量，统计信息本来就是实时的
+        }
+        long current;
+        try (ResultSet rs = stmt.executeQuery("SELECT AUTO_INCREMENT FROM information_schema.TABLES"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "'")) {
+            current = rs.next() ? rs.getLong(1) : 0;
+        }
+        if (current < floor) {
+            stmt.executeUpdate("ALTER TABLE " + table + " AUTO_INCREMENT = " + floor);
+        }
+    }
+
+    private static void rebalance(ShardRouter router, boolean dryRun) throws SQLException {
+        int shards = router.getShardCount();
+        int moved = 0;
+        List<int[]> copied = new ArrayList<>(); // {用户ID, 源分片}，等待路由器刷新后再删除
+        for (int source = 0; source < shards; source++) {
+            List<Object[]> users = new ArrayList<>();
+            try (Connection conn = router.getConnection(source);
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT id, username FROM users")) {
+                while (rs.next()) {
+                    users.add(new Object[]{rs.getInt("id"), rs.getString("username")});
+                }
+            }
+            List<Object[]> batch = new ArrayList<>(); // {用户ID, 用户名, 目标分片}
+            for (Object[] user : users) {
+                int userId = (Integer) user[0];
+                String username = (String) user[1];
+                int target = ShardRouter.hashShard(username, shards);
+                if (target == source) {
+                    continue;
+                }
+                System.out.println((dryRun ? "[预览] " : "") + "迁移用户 " + username + "（ID " + userId + "）：分片 " + source + " -> " + target);
+                moved++;
+                if (dryRun) {
+                    continue;
+                }
+                batch.add(new Object[]{userId, username, target});
+                if (batch.size() == MOVE_BATCH_SIZE) {
+                    moveBatch(router, source, batch, copied);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                moveBatch(router, source, batch, copied);
+            }
+        }
+        if (!copied.isEmpty()) {
+            awaitRouterRefresh();
+            for (int[] user : copied) {
+                deleteFromSource(router, user[0], user[1]);
+            }
+        }
+        System.out.println("✅ 重新均衡完成，" + (dryRun ? "需要" : "已") + "迁移 " + moved + " 个用户");
+    }
+
+    private static void moveByName(ShardRouter router, String username, int target) throws SQLException {
+        if (target < 0 || target >= router.getShardCount()) {
+            throw new IllegalArgumentException("分片号超出范围：" + target);
+        }
+        int source = router.shardOfUsername(username);
+        int userId;
+        try (Connection conn = router.getConnection(source);
+             PreparedStatement stmt = conn.prepareStatement("SELECT id FROM users WHERE username = ?")) {
+            stmt.setString(1, username);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalArgumentException("分片 " + source + " 中没有用户：" + username);
+                }
+                userId = rs.getInt("id");
+            }
+        }
+        if (source == target) {
+            System.out.println("用户已在分片 " + target + " 中");
+            return;
+        }
+        List<int[]> copied = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+        batch.add(new Object[]{userId, username, target});
+        moveBatch(router, source, batch, copied);
+        if (!copied.isEmpty()) {
+            awaitRouterRefresh();
+            deleteFromSource(router, userId, source);
+        }
+        System.out.println("✅ 已将用户 " + username + " 迁移到分片 " + target);
+    }
+
+    /**
+     * 锁定一批同一源分片的用户（{用户ID, 用户名, 目标分片}），等各进程停止写入后逐个复制到目标分片；
+     * 复制成功的用户加入 copied，等待删除源分片数据。复制失败时解除其余用户的迁移锁后抛出
+     */
+    private static void moveBatch(ShardRouter router, int source, List<Object[]> batch, List<int[]> copied) throws SQLException {
+        List<Integer> pending = new ArrayList<>();
+        for (Object[] user : batch) {
+            pending.add((Integer) user[0]);
+        }
+        router.lockMoves(pending);
+        awaitRouterRefresh("停止这些用户的写入");
+        for (Object[] user : batch) {
+            int userId = (Integer) user[0];
+            boolean done;
+            try {
+                done = copy(router, userId, (String) user[1], source, (Integer) user[2]);
+            } catch (SQLException e) {
+                try {
+                    router.unlockMoves(pending);
+                } catch (SQLException unlock) {
+                    e.addSuppressed(unlock);
+                }
+                throw e;
+            }
+            pending.remove((Integer) userId);
+            if (done) {
+                copied.add(new int[]{userId, source});
+            } else {
+                router.unlockMoves(Collections.singletonList(userId));
+            }
+        }
+    }
+
+    /**
+     * 把一个用户及其全部课程复制到目标分片并写入迁移记录，源分片的数据由 deleteFromSource 删除
+     * 调用前该用户应已被锁定（moveBatch），源分片中没有该用户时返回 false
+     */
+    private static boolean copy(ShardRouter router, int userId, String username, int source, int target) throws SQLException {
+        List<Object[]> userRows;
+        List<String> userColumns = new ArrayList<>();
+        List<Object[]> patternRows;
+        List<String> patternColumns = new ArrayList<>();
+        try (Connection conn = router.getConnection(source)) {
+            userRows = select(conn, "SELECT * FROM users WHERE id = ?", userId, userColumns);
+            patternRows = select(conn, "SELECT * FROM course_patterns WHERE user_id = ?", userId, patternColumns);
+        }
+        if (userRows.isEmpty()) {
+            return false;
+        }
+
+        // 1. 写入目标分片：用户和课程规律行都保留原ID（各分片生成的ID互不重叠），
+        //    连同版本号一起迁移，客户端的增量同步版本号在迁移后仍然有效
+        try (Connection conn = router.getConnection(target)) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM course_patterns WHERE user_id = ?")) {
+                    stmt.setInt(1, userId);
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM users WHERE id = ?")) {
+                    stmt.setInt(1, userId);
+                    stmt.executeUpdate();
+                }
+                insert(conn, "users", userColumns, userRows);
+                insert(conn, "course_patterns", patternColumns, patternRows);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+
+        // 2. 之后的读写都路由到目标分片并解除迁移锁（其他进程在 DIRECTORY_REFRESH_MS 内生效）
+        router.recordMove(userId, username, target);
+        return true;
+    }
+
+    /**
+     * 等待所有进程的路由器都读到新的迁移记录：每个路由器最多 DIRECTORY_REFRESH_MS 检查一次，
+     * 再留一个周期的余量给正在进行中的请求
+     */
+    private static void awaitRouterRefresh() {
+        awaitRouterRefresh("删除源分片数据");
+    }
+
+    private static void awaitRouterRefresh(String next) {
+        long wait = 2 * ShardRouter.DIRECTORY_REFRESH_MS;
+        System.out.println("等待 " + wait + " ms，让所有进程刷新迁移记录后再" + next + "...");
+        try {
+            Thread.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待路由器刷新时被中断，迁移未完成，重新执行即可");
+        }
+    }
+
+    /**
+     * 3. 删除源分片中的用户和课程
+     */
+    private static void deleteFromSource(ShardRouter router, int userId, int source) throws SQLException {
+        try (Connection conn = router.getConnection(source)) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM course_patterns WHERE user_id = ?")) {
+                    stmt.setInt(1, userId);
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM users WHERE id = ?")) {
+                    stmt.setInt(1, userId);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static List<Object[]> select(Connection conn, String sql, int userId, List<String> columns) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    columns.add(meta.getColumnName(i));
+                }
+                while (rs.next()) {
+                    Object[] row = new Object[columns.size()];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    // 按列名批量插入，所有列原样写入
+    private static void insert(Connection conn, String table, List<String> columns, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        StringBuilder names = new StringBuilder();
+        StringBuilder marks = new StringBuilder();
+        for (String column : columns) {
+            names.append(names.length() == 0 ? "" : ", ").append(column);
+            marks.append(marks.length() == 0 ? "?" : ", ?");
+        }
+        String sql = "INSERT INTO " + table + " (" + names + ") VALUES (" + marks + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Object[] row : rows) {
+                for (int i = 0; i < columns.size(); i++) {
+                    stmt.setObject(i + 1, row[i]);
+                }
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static long count(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
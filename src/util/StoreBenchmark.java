@@ -0,0 +1,128 @@
+package util;
+
+import data.AddResult;
+import data.CourseRepository;
+import data.EmbeddedCourseStore;
+import data.EmbeddedDatabase;
+import data.EmbeddedUserStore;
+import data.MySqlCourseStore;
+import data.MySqlUserStore;
+import data.UserRepository;
+import model.Course;
+import model.Timetable;
+import model.User;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 存储后端性能对比：在 MySQL 与嵌入式后端上运行同一组操作
+ * 用法：java util.StoreBenchmark [mysql] [embedded]（不带参数时两个都跑）
+ */
+public class StoreBenchmark {
+    private static final int WEEKS = 18;
+    private static final int READ_ROUNDS = 20; // 每周读取轮数
+
+    public static void main(String[] args) {
+        Set<String> backends = new LinkedHashSet<>();
+        for (String arg : args) {
+            backends.add(arg.toLowerCase());
+        }
+        if (backends.isEmpty()) {
+            backends.add("mysql");
+            backends.add("embedded");
+        }
+
+        System.out.println("=== 存储后端性能对比 ===");
+        for (String backend : backends) {
+            try {
+                if ("embedded".equals(backend)) {
+                    File file = File.createTempFile("course_bench", ".db");
+                    file.deleteOnExit();
+                    EmbeddedDatabase db = EmbeddedDatabase.open(file.getPath());
+                    run("embedded", new UserRepository(new EmbeddedUserStore(db)),
+                            new CourseRepository(new EmbeddedCourseStore(db)));
+                    db.close();
+                } else {
+                    run("mysql", new UserRepository(new MySqlUserStore()),
+                            new CourseRepository(new MySqlCourseStore()));
+                }
+            } catch (Exception e) {
+                System.out.println("❌ " + backend + " 测试失败：" + e.getMessage());
+            }
+        }
+    }
+
+    private static void run(String backend, UserRepository users, CourseRepository courses) {
+        System.out.println("\n--- " + backend + " ---");
+
+        // 1. 注册并登录测试用户
+        User user = new User("bench_" + System.currentTimeMillis(), "123456", "压测用户");
+        if (!users.register(user)) {
+            throw new IllegalStateException("注册测试用户失败");
+        }
+        long start = System.nanoTime();
+        user = users.findByUsername(user.getUsername());
+        report("登录查询", 1, start);
+
+        // 2. 整学期课程：每周 7 天 × 5 节，一次批量插入
+        List<Course> semester = new ArrayList<>();
+        for (int week = 1; week <= WEEKS; week++) {
+            for (String day : Timetable.DAYS) {
+                for (String slot : Timetable.TIME_SLOTS) {
+                    Course course = new Course("课程" + day + slot, "教师", day, slot, "A栋101");
+                    course.setWeek(week);
+                    semester.add(course);
+                }
+            }
+        }
+        start = System.nanoTime();
+        List<AddResult> results = courses.addCourses(semester, user);
+        report("批量插入 " + semester.size() + " 行", 1, start);
+        long inserted = results.stream().filter(r -> r == AddResult.SUCCESS).count();
+        System.out.println("  成功 " + inserted + " 行");
+
+        // 3. 按周读取（模拟反复切换周次）
+        start = System.nanoTime();
+        int rows = 0;
+        for (int round = 0; round < READ_ROUNDS; round++) {
+            for (int week = 1; week <= WEEKS; week++) {
+                rows += courses.getCoursesByWeek(user.getId(), week).size();
+            }
+        }
+        report("按周读取（共 " + rows + " 行）", READ_ROUNDS * WEEKS, start);
+
+        // 4. 全学期冲突检查
+        Set<String> slots = new LinkedHashSet<>(List.of(Timetable.TIME_SLOTS));
+        Set<Integer> weeks = new TreeSet<>();
+        for (int week = 1; week <= WEEKS; week++) {
+            weeks.add(week);
+        }
+        start = System.nanoTime();
+        for (String day : Timetable.DAYS) {
+            courses.findConflicts(user, day, slots, weeks);
+        }
+        report("冲突检查", Timetable.DAYS.length, start);
+
+        // 5. 逐条删除一周的课程
+        start = System.nanoTime();
+        int deleted = 0;
+        for (String day : Timetable.DAYS) {
+            for (String slot : Timetable.TIME_SLOTS) {
+                if (courses.removeCourse("课程" + day + slot, day, slot, user, 1)) {
+                    deleted++;
+                }
+            }
+        }
+        report("逐条删除 " + deleted + " 行", Timetable.CELLS_PER_WEEK, start);
+    }
+
+    private static void report(String name, int ops, long startNanos) {
+        double millis = (System.nanoTime() - startNanos) / 1_000_000.0;
+        System.out.printf("  %-24s 总耗时 %10.2f ms，平均 %8.3f ms/次%n", name, millis, millis / ops);
+    }
+}
@@ -22,6 +22,7 @@ public class UpdateDatabaseSchema {
             
             // 2. 删除旧表
             System.out.println("2. 删除旧表结构...");
+            stmt.executeUpdate("DROP TABLE IF EXISTS course_patterns");
             stmt.executeUpdate("DROP TABLE IF EXISTS courses");
             stmt.executeUpdate("DROP TABLE IF EXISTS users");
             
@@ -33,25 +34,31 @@ public class UpdateDatabaseSchema {
                     username VARCHAR(50) UNIQUE NOT NULL,
                     password VARCHAR(64) NOT NULL,
                     name VARCHAR(50) DEFAULT '学生',
+                    course_version BIGINT NOT NULL DEFAULT 0,
                     created_at DATETIME DEFAULT CURRENT_TIMESTAMP
                 )
                 """;
             stmt.executeUpdate(createUsersTable);
             System.out.println("✅ 用户表创建成功");
             
-            // 4. 创建新的课程表
+            // 4. 创建新的课程表：一行表示一门课的上课规律，上课周次存为位掩码（第 n 周对应第 n-1 位）
             System.out.println("4. 创建新的课程表...");
             String createCoursesTable = """
-                CREATE TABLE courses (
+                CREATE TABLE course_patterns (
                     id INT AUTO_INCREMENT PRIMARY KEY,
                     user_id INT NOT NULL,
                     name VARCHAR(100) NOT NULL,
                     teacher VARCHAR(50),
-                    day_of_week VARCHAR(10),
-                    time_slot VARCHAR(20),
+                    day_of_week VARCHAR(10) NOT NULL,
+                    time_slot VARCHAR(20) NOT NULL,
                     location VARCHAR(100),
+                    week_mask BIGINT NOT NULL DEFAULT 0,
+                    version BIGINT NOT NULL DEFAULT 0,
                     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
-                    UNIQUE KEY unique_course (user_id, day_of_week, time_slot)
+                    KEY idx_user_day_slot (user_id, day_of_week, time_slot),
+                    KEY idx_user_version (user_id, version),
+                    KEY idx_location_slot (location, day_of_week, time_slot),
+                    KEY idx_teacher_slot (teacher, day_of_week, time_slot)
                 )
                 """;
             stmt.executeUpdate(createCoursesTable);
@@ -68,13 +75,13 @@ public class UpdateDatabaseSchema {
             int userCount = stmt.executeUpdate(insertTestUsers);
             System.out.println("✅ 插入了 " + userCount + " 个测试用户");
             
-            // 6. 插入测试课程（分配给用户ID=2，即student1）
+            // 6. 插入测试课程（分配给用户ID=2，即student1，第1-18周，week_mask = 2^18 - 1）
             String insertTestCourses = """
-                INSERT INTO courses (user_id, name, teacher, day_of_week, time_slot, location) VALUES 
-                (2, '高等数学', '张教授', '星期一', '第1-2节', 'A栋101'),
-                (2, '大学英语', '李老师', '星期二', '第3-4节', 'B栋205'),
-                (2, 'Java程序设计', '王老师', '星期三', '第5-6节', '实验楼301'),
-                (2, '体育', '刘教练', '星期五', '第7-8节', '体育馆')
+                INSERT INTO course_patterns (user_id, name, teacher, day_of_week, time_slot, location, week_mask) VALUES 
+                (2, '高等数学', '张教授', '星期一', '第1-2节', 'A栋101', 262143),
+                (2, '大学英语', '李老师', '星期二', '第3-4节', 'B栋205', 262143),
+                (2, 'Java程序设计', '王老师', '星期三', '第5-6节', '实验楼301', 262143),
+                (2, '体育', '刘教练', '星期五', '第7-8节', '体育馆', 262143)
                 """;
             int courseCount = stmt.executeUpdate(insertTestCourses);
             System.out.println("插入了 " + courseCount + " 门测试课程");